@@ -0,0 +1,76 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * highlightLogs 的 unicode 路径与 ascii 快速路径在不同消息长度下的对比
+ * <p>
+ * 运行方式: mvn -P benchmark test-compile exec:exec -Djmh.args="HighlightBenchmark -prof gc"
+ * <p>
+ * toUpperCase 模拟快速路径之前的处理: 按照字符集解码 payload ，调用 {@link String#toUpperCase()} ，再将结果编码回 byte[] ，
+ * scalar 与 vector 分别为 {@link AsciiCase} 逐字节的版本以及 Vector API 的版本，
+ * highlightLogs 为实际的函数，包括判断是否可以使用快速路径以及创建 {@link LogMessage} 的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HighlightBenchmark {
+
+    @Param({"16", "128", "1024", "16384"})
+    private int payloadLength;
+
+    private byte[] payload;
+
+    private LogMessage message;
+
+    private Function<LogMessage, LogMessage> highlightLogs;
+
+    @Setup
+    public void setup() {
+        StringBuilder log = new StringBuilder(payloadLength);
+        while (log.length() < payloadLength) {
+            log.append("2024-12-01 12:00:00.000 INFO  [main] c.j.t.LogEnricher - processing log message ");
+        }
+        payload = log.substring(0, payloadLength).getBytes(StandardCharsets.UTF_8);
+        message = LogMessage.ofBytes(payload, StandardCharsets.UTF_8);
+        highlightLogs = new LogEnricherApplication().highlightLogs();
+    }
+
+    @Benchmark
+    public byte[] toUpperCase() {
+        return new String(payload, StandardCharsets.UTF_8).toUpperCase().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] scalar() {
+        return AsciiCase.toUpperCaseScalar(payload);
+    }
+
+    @Benchmark
+    public byte[] vector() {
+        return AsciiCaseVector.toUpperCase(payload);
+    }
+
+    @Benchmark
+    public byte[] highlightLogs() {
+        return highlightLogs.apply(message).bytes(StandardCharsets.UTF_8);
+    }
+
+}
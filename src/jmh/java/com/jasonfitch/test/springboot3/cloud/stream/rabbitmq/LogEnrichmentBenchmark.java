@@ -0,0 +1,106 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * enrichLogMessage 的 String 路径与字节路径的对比，配合 gc profiler 查看每条消息的分配量 gc.alloc.rate.norm
+ * <p>
+ * 运行方式: mvn -P benchmark test-compile exec:exec -Djmh.args="LogEnrichmentBenchmark -prof gc"
+ * <p>
+ * stringPath 模拟 binder 对 {@code Function<String, String>} 的处理: 按照字符集解码 payload ，调用函数，再将结果编码回 byte[] ，
+ * 以 *Message 结尾的基准测试额外包括了构建输出消息的开销，即 binder 实际调用函数时的完整路径
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogEnrichmentBenchmark {
+
+    @Param({"64", "1024"})
+    private int payloadLength;
+
+    private byte[] payload;
+
+    private Message<byte[]> message;
+
+    private Function<String, String> enrichLogMessage;
+
+    private Function<Message<byte[]>, Message<byte[]>> enrichLogMessageBytes;
+
+    private ByteBuffer source;
+
+    private ByteBuffer target;
+
+    @Setup
+    public void setup() {
+        StringBuilder log = new StringBuilder(payloadLength);
+        while (log.length() < payloadLength) {
+            log.append("2024-12-01 12:00:00.000 INFO  [main] c.j.t.LogEnricher - processing log message ");
+        }
+        payload = log.substring(0, payloadLength).getBytes(StandardCharsets.UTF_8);
+        message = MessageBuilder.withPayload(payload)
+                .setHeader(MessageHeaders.CONTENT_TYPE, LogPrefix.DEFAULT_CONTENT_TYPE)
+                .build();
+
+        LogEnricherApplication application = new LogEnricherApplication();
+        enrichLogMessage = application.enrichLogMessage();
+        enrichLogMessageBytes = application.enrichLogMessageBytes();
+
+        source = ByteBuffer.wrap(payload);
+        target = ByteBuffer.allocateDirect(LogPrefix.encodedLength(payloadLength));
+    }
+
+    @Benchmark
+    public byte[] stringPath() {
+        String text = new String(payload, StandardCharsets.UTF_8);
+        return enrichLogMessage.apply(text).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Message<byte[]> stringPathMessage() {
+        String text = new String(message.getPayload(), StandardCharsets.UTF_8);
+        byte[] enriched = enrichLogMessage.apply(text).getBytes(StandardCharsets.UTF_8);
+        return MessageBuilder.withPayload(enriched).copyHeaders(message.getHeaders()).build();
+    }
+
+    @Benchmark
+    public byte[] bytePath() {
+        return LogPrefix.prepend(payload, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Message<byte[]> bytePathMessage() {
+        return enrichLogMessageBytes.apply(message);
+    }
+
+    /**
+     * 写入复用的缓冲区，不分配任何对象
+     */
+    @Benchmark
+    public ByteBuffer byteBufferPathReused() {
+        target.clear();
+        source.rewind();
+        return LogPrefix.prepend(source, target, StandardCharsets.UTF_8).flip();
+    }
+
+}
@@ -0,0 +1,221 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 各个函数以及 processLogs 两个路由分支在 test binder 上的负载测试，每次调用发送一条消息并接收其最终的输出
+ * <p>
+ * 运行方式: mvn -P benchmark test-compile exec:exec -Djmh.args="LogFunctionLoadBenchmark -prof gc"
+ * <p>
+ * 同时输出两种结果:
+ * <ul>
+ * <li>thrpt: 每毫秒处理的消息数</li>
+ * <li>sample: 每条消息从发送到收到输出的耗时分布，包括 p50 ，p90 ，p99 ，p99.9 等百分位，-rf json 的结果中还有完整的直方图</li>
+ * </ul>
+ * -prof gc 输出的 gc.alloc.rate.norm 为每条消息的分配字节数
+ * <p>
+ * path 为被测试的路径:
+ * <ul>
+ * <li>enrichLogMessage: queue.log.messages 到 queue.pretty.log.messages</li>
+ * <li>processLogsPretty: INFO 级别的日志，由 processLogs 直接发送到 queue.pretty.log.messages</li>
+ * <li>processLogsEnrich: WARN 级别的日志，由 processLogs 路由给 enrichLogMessage 再发送到 queue.pretty.log.messages</li>
+ * <li>highlightLogs: highlightLogs-in-0 到 highlightLogs-out-0</li>
+ * </ul>
+ * ratePerSecond 大于 0 时每个线程按照固定的发送计划限速，为 0 时不限速，例如 -p ratePerSecond=0,1000,10000 -p payloadLength=64,4096
+ * <p>
+ * 限速时 sample 只包含处理一条消息本身的耗时，处理跟不上速率时消息在发送之前的等待不会体现在其中 (coordinated omission) ，
+ * 所以每次迭代结束时另外输出从计划的发送时间到收到输出的响应时间的百分位，落后于计划时不会重新对齐，而是尽快发送，等待的时间计入响应时间
+ * <p>
+ * 使用默认绑定的 enrichLogMessage ，processLogs 以及 highlightLogs ，processLogs 开启了按照级别的路由，
+ * test binder 是同步的，所以测量的是 binder 的转换，路由以及函数本身的开销，不包括网络
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogFunctionLoadBenchmark {
+
+    private static final String PRETTY_LOG = "2024-12-01 12:00:00.000 INFO  [main] c.j.t.LogEnricher - processing log message ";
+
+    private static final String ENRICH_LOG = "2024-12-01 12:00:00.000 WARN  [main] c.j.t.LogEnricher - processing log message ";
+
+    @Param({"enrichLogMessage", "processLogsPretty", "processLogsEnrich", "highlightLogs"})
+    private String path;
+
+    @Param({"64", "1024"})
+    private int payloadLength;
+
+    @Param({"0"})
+    private int ratePerSecond;
+
+    private ConfigurableApplicationContext context;
+
+    private InputDestination input;
+
+    private OutputDestination output;
+
+    private Message<byte[]> message;
+
+    private String inputDestination;
+
+    private String outputDestination;
+
+    /**
+     * 从计划的发送时间开始计算的响应时间，每次迭代重新创建，只在限速时记录
+     */
+    private Timer responseTime;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(TestChannelBinderConfiguration.getCompleteConfiguration(LogEnricherApplication.class))
+                .web(WebApplicationType.NONE)
+                .run("--log.routing.enrich-levels=WARN,ERROR,FATAL", "--logging.level.root=WARN");
+        input = context.getBean(InputDestination.class);
+        output = context.getBean(OutputDestination.class);
+
+        String template;
+        switch (path) {
+            case "enrichLogMessage" -> {
+                template = PRETTY_LOG;
+                inputDestination = "queue.log.messages";
+                outputDestination = LogEnricherApplication.PRETTY_DESTINATION;
+            }
+            case "processLogsPretty", "processLogsEnrich" -> {
+                template = path.equals("processLogsPretty") ? PRETTY_LOG : ENRICH_LOG;
+                inputDestination = "processLogs-in-0";
+                outputDestination = LogEnricherApplication.PRETTY_DESTINATION;
+            }
+            case "highlightLogs" -> {
+                template = PRETTY_LOG;
+                inputDestination = "highlightLogs-in-0";
+                outputDestination = "highlightLogs-out-0";
+            }
+            default -> throw new IllegalArgumentException("Unknown path: " + path);
+        }
+
+        StringBuilder log = new StringBuilder(payloadLength);
+        while (log.length() < payloadLength) {
+            log.append(template);
+        }
+        message = MessageBuilder.withPayload(log.substring(0, payloadLength).getBytes(StandardCharsets.UTF_8))
+                .setHeader(MessageHeaders.CONTENT_TYPE, LogPrefix.DEFAULT_CONTENT_TYPE)
+                .build();
+
+        // 确认路径是通的，否则每次调用都会等待 receive 超时
+        input.send(message, inputDestination);
+        if (output.receive(1000L, outputDestination) == null) {
+            throw new IllegalStateException("No output received from " + outputDestination + " for path " + path);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetResponseTime() {
+        responseTime = Timer.builder("log.function.response.time")
+                .publishPercentiles(0.5, 0.9, 0.99, 0.999)
+                .percentilePrecision(2)
+                .distributionStatisticExpiry(Duration.ofHours(1))
+                .register(new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportResponseTime() {
+        if (ratePerSecond == 0) {
+            return;
+        }
+        HistogramSnapshot snapshot = responseTime.takeSnapshot();
+        StringBuilder report = new StringBuilder("Response time from intended send (us): count=").append(snapshot.count());
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            report.append(", p").append(value.percentile() * 100).append('=').append(Math.round(value.value(TimeUnit.MICROSECONDS)));
+        }
+        report.append(", max=").append(Math.round(snapshot.max(TimeUnit.MICROSECONDS)));
+        System.out.println(report);
+    }
+
+    @Benchmark
+    public Message<byte[]> sendAndReceive(Pacer pacer) {
+        input.send(message, inputDestination);
+        Message<byte[]> received = output.receive(1000L, outputDestination);
+        if (received == null) {
+            throw new IllegalStateException("No output received from " + outputDestination + " within 1000 ms for path " + path);
+        }
+        pacer.record(responseTime);
+        return received;
+    }
+
+    /**
+     * 每个线程各自限速，在每次调用之前等待到计划的发送时间，{@link Level#Invocation} 的 setup 不计入 sample 的耗时
+     */
+    @State(Scope.Thread)
+    public static class Pacer {
+
+        private long intervalNanos;
+
+        private long nextSendNanos;
+
+        private long intendedSendNanos;
+
+        @Setup(Level.Iteration)
+        public void reset(LogFunctionLoadBenchmark benchmark) {
+            intervalNanos = benchmark.ratePerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / benchmark.ratePerSecond : 0;
+            nextSendNanos = System.nanoTime();
+        }
+
+        @Setup(Level.Invocation)
+        public void awaitNextSend() {
+            if (intervalNanos == 0) {
+                return;
+            }
+            long now;
+            while ((now = System.nanoTime()) < nextSendNanos) {
+                LockSupport.parkNanos(nextSendNanos - now);
+            }
+            // 处理跟不上设定的速率时不重新对齐，之后的消息立即发送，直到追上计划为止
+            intendedSendNanos = nextSendNanos;
+            nextSendNanos += intervalNanos;
+        }
+
+        void record(Timer responseTime) {
+            if (intervalNanos > 0) {
+                responseTime.record(System.nanoTime() - intendedSendNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+}
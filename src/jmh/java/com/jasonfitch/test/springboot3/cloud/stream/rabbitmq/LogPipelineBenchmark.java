@@ -0,0 +1,79 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.cloud.stream.binder.test.TestChannelBinderConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * processLogs 将需要添加前缀的消息（这里为 WARN 级别）路由给 enrichLogMessage 时，经过 binder 再发送一次与进程内直接调用的吞吐量对比
+ * <p>
+ * 运行方式: mvn -P benchmark test-compile exec:exec -Djmh.args="LogPipelineBenchmark"
+ * <p>
+ * 使用 test binder ，消息在同一个线程中同步地经过所有的函数，所以每次调用 receive 时结果已经在输出队列中，
+ * 测量的是 binder 的转换，路由以及函数调用本身的开销，不包括网络，真实的 broker 上每少一次经过 binder 还会少一次网络往返
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogPipelineBenchmark {
+
+    @Param({"false", "true"})
+    private boolean fused;
+
+    private ConfigurableApplicationContext context;
+
+    private InputDestination input;
+
+    private OutputDestination output;
+
+    private Message<byte[]> message;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(TestChannelBinderConfiguration.getCompleteConfiguration(LogEnricherApplication.class))
+                .web(WebApplicationType.NONE)
+                .run("--log.pipeline.fused=" + fused, "--logging.level.root=WARN");
+        input = context.getBean(InputDestination.class);
+        output = context.getBean(OutputDestination.class);
+
+        message = MessageBuilder.withPayload("2024-12-01 12:00:00.000 WARN  [main] c.j.t.LogEnricher - processing log message".getBytes(StandardCharsets.UTF_8))
+                .setHeader(MessageHeaders.CONTENT_TYPE, LogPrefix.DEFAULT_CONTENT_TYPE)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Message<byte[]> processLongLog() {
+        input.send(message, "processLogs-in-0");
+        return output.receive(1000L, LogEnricherApplication.PRETTY_DESTINATION);
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * rabbit profile 下 queue.log.messages 经过 enrichLogMessage 到 queue.pretty.log.messages 的端到端吞吐量，
+ * broker 为进程内的 {@link AmqpStubBroker} ，不需要真实的 rabbitmq
+ * <p>
+ * 运行方式: mvn -P benchmark test-compile exec:exec -Djmh.args="RabbitBinderPipelineBenchmark"
+ * <p>
+ * 每次调用发送 {@link #MESSAGES} 条消息，等待全部从 queue.pretty.log.messages 收到之后返回，结果为每秒处理的消息数，
+ * 可以通过参数对比 rabbit profile 中的各项配置，例如 -p producerBatching=true,false -p concurrency=1,4 -p prefetch=1,250
+ * <p>
+ * 替身 broker 与应用在同一个进程中，结果只用于对比 binder 配置，不代表真实 rabbitmq 的吞吐量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RabbitBinderPipelineBenchmark {
+
+    private static final int MESSAGES = 1000;
+
+    @Param({"true", "false"})
+    private boolean producerBatching;
+
+    @Param({"4"})
+    private int concurrency;
+
+    @Param({"250"})
+    private int prefetch;
+
+    private AmqpStubBroker broker;
+
+    private ConfigurableApplicationContext context;
+
+    private RabbitTemplate rabbitTemplate;
+
+    private SimpleMessageListenerContainer receiver;
+
+    private final AtomicLong received = new AtomicLong();
+
+    private Message message;
+
+    @Setup
+    public void setup() throws Exception {
+        broker = new AmqpStubBroker();
+        context = new SpringApplicationBuilder(LogEnricherApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("rabbit")
+                .run("--spring.rabbitmq.host=" + broker.getHost(),
+                        "--spring.rabbitmq.port=" + broker.getPort(),
+                        "--spring.rabbitmq.requested-heartbeat=0",
+                        "--spring.cloud.function.definition=enrichLogMessage",
+                        "--spring.cloud.stream.default.consumer.concurrency=" + concurrency,
+                        "--spring.cloud.stream.rabbit.default.consumer.prefetch=" + prefetch,
+                        "--spring.cloud.stream.rabbit.default.producer.batching-enabled=" + producerBatching,
+                        "--logging.level.root=WARN");
+        rabbitTemplate = context.getBean(RabbitTemplate.class);
+
+        // binder 为输出的目的地声明了 topic exchange ，这里再绑定一个队列用于接收
+        AmqpAdmin amqpAdmin = context.getBean(AmqpAdmin.class);
+        Queue pretty = new Queue(LogEnricherApplication.PRETTY_DESTINATION + ".benchmark", false, false, true);
+        amqpAdmin.declareQueue(pretty);
+        TopicExchange prettyExchange = new TopicExchange(LogEnricherApplication.PRETTY_DESTINATION);
+        amqpAdmin.declareExchange(prettyExchange);
+        amqpAdmin.declareBinding(BindingBuilder.bind(pretty).to(prettyExchange).with("#"));
+
+        // 默认开启 deBatchingEnabled ，合并发送的消息拆分之后逐条回调
+        receiver = new SimpleMessageListenerContainer(context.getBean(ConnectionFactory.class));
+        receiver.setQueueNames(pretty.getName());
+        receiver.setPrefetchCount(prefetch);
+        receiver.setMessageListener(m -> received.incrementAndGet());
+        receiver.start();
+
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType("text/plain");
+        message = new Message("2024-12-01 12:00:00.000 WARN  [main] c.j.t.LogEnricher - processing log message"
+                .getBytes(StandardCharsets.UTF_8), properties);
+
+        // 确认路径是通的，否则第一次调用会一直等待
+        pipeline();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        receiver.stop();
+        context.close();
+        broker.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public long pipeline() {
+        long target = received.get() + MESSAGES;
+        for (int i = 0; i < MESSAGES; i++) {
+            rabbitTemplate.send("queue.log.messages", "queue.log.messages", message);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        long current;
+        while ((current = received.get()) < target) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Received " + (MESSAGES - (target - current)) + " of " + MESSAGES + " messages");
+            }
+            LockSupport.parkNanos(100_000);
+        }
+        return current;
+    }
+
+}
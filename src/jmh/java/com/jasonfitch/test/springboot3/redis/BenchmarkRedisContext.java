@@ -0,0 +1,44 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.actuate.autoconfigure.metrics.MetricsAutoConfiguration;
+import org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试使用的 spring 上下文，只加载 redis 相关的 bean ，避免启动 web 容器以及 cloud stream 的 binder
+ */
+final class BenchmarkRedisContext {
+
+    private BenchmarkRedisContext() {
+    }
+
+    /**
+     * @param args 额外的配置，格式为 --key=value ，以命令行参数的形式传入，才能覆盖 application.yml 中的配置
+     */
+    static ConfigurableApplicationContext start(RespStubServer server, String... args) {
+        List<String> arguments = new ArrayList<>(List.of(
+                "--spring.data.redis.host=" + server.getHost(),
+                "--spring.data.redis.port=" + server.getPort(),
+                "--spring.data.redis.native-jedis.pool.leak-detection-threshold=0s"));
+        arguments.addAll(List.of(args));
+        return new SpringApplicationBuilder(Configuration.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments.toArray(new String[0]));
+    }
+
+    @org.springframework.context.annotation.Configuration(proxyBeanMethods = false)
+    @ImportAutoConfiguration({RedisAutoConfiguration.class, MetricsAutoConfiguration.class, SimpleMetricsExportAutoConfiguration.class})
+    @Import({RedisMetrics.class, RedisReadRouter.class, RedisScriptRegistry.class, NativeJedisClient.class, SimpleRedisClient.class})
+    static class Configuration {
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Response;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * redis 各个访问路径的基准测试，运行在 {@link RespStubServer} 之上，不依赖真实的 redis
+ * <p>
+ * 运行方式: mvn -P benchmark test-compile exec:exec -Djmh.args="RedisAccessPathBenchmark -p latencyMicros=0,200"
+ * <p>
+ * Throughput 模式给出吞吐量，SampleTime 模式给出 p50 / p90 / p99 / p99.9 等延迟分位数，
+ * latencyMicros 为替身服务器在每次网络往返时注入的延迟，用于放大往返次数的差异
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisAccessPathBenchmark {
+
+    private static final String KEY_PREFIX = "benchmark-key-";
+
+    private static final String COUNTER_KEY = "benchmark-counter";
+
+    @Param({"0", "200"})
+    private long latencyMicros;
+
+    @Param({"100"})
+    private int batchSize;
+
+    private RespStubServer server;
+
+    private ConfigurableApplicationContext context;
+
+    private NativeJedisClient nativeJedisClient;
+
+    private SimpleRedisClient simpleRedisClient;
+
+    private StringRedisTemplate template;
+
+    private List<String> keys;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = new RespStubServer(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros)));
+        context = BenchmarkRedisContext.start(server,
+                "--spring.data.redis.jedis.pool.max-active=64",
+                "--spring.data.redis.jedis.pool.max-idle=64",
+                "--spring.data.redis.native-jedis.pool.max-active=64",
+                "--spring.data.redis.native-jedis.pool.max-idle=64");
+        nativeJedisClient = context.getBean(NativeJedisClient.class);
+        simpleRedisClient = context.getBean(SimpleRedisClient.class);
+        template = context.getBean(StringRedisTemplate.class);
+
+        keys = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            String key = KEY_PREFIX + i;
+            keys.add(key);
+            template.opsForValue().set(key, "value-" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        context.close();
+        server.close();
+    }
+
+    /**
+     * 每次都新建连接，包括 tcp 握手以及 AUTH 和 SELECT 的往返
+     */
+    @Benchmark
+    public String newConnectionGet() {
+        try (Jedis jedis = nativeJedisClient.newJedis()) {
+            return jedis.get(keys.get(0));
+        }
+    }
+
+    @Benchmark
+    public String pooledConnectionGet() {
+        try (Jedis jedis = nativeJedisClient.getJedis()) {
+            return jedis.get(keys.get(0));
+        }
+    }
+
+    @Benchmark
+    public String templateGet() {
+        return template.opsForValue().get(keys.get(0));
+    }
+
+    /**
+     * 作为 pipeline 的对照组，batchSize 个命令需要 batchSize 次往返
+     */
+    @Benchmark
+    public void templateSequentialGets(Blackhole blackhole) {
+        for (String key : keys) {
+            blackhole.consume(template.opsForValue().get(key));
+        }
+    }
+
+    @Benchmark
+    public List<String> pipelinedMultiGet() {
+        return simpleRedisClient.multiGet(keys);
+    }
+
+    @Benchmark
+    public List<Boolean> pipelinedHasKeys() {
+        return simpleRedisClient.hasKeys(keys);
+    }
+
+    /**
+     * SessionCallbackGenericTypeTest 中的事务写法，MULTI ，每个命令以及 EXEC 各需要一次往返
+     */
+    @Benchmark
+    public List<Object> sessionCallbackTransaction() {
+        return template.execute(new SessionCallback<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> List<Object> execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> stringOperations = (RedisOperations<String, String>) operations;
+                stringOperations.multi();
+                stringOperations.opsForValue().increment(COUNTER_KEY);
+                stringOperations.opsForValue().set(keys.get(0), "value-0");
+                stringOperations.opsForValue().get(keys.get(0));
+                return stringOperations.exec();
+            }
+        });
+    }
+
+    /**
+     * 与 sessionCallbackTransaction 相同的命令，通过 {@link RedisTransaction} 在一次往返中完成
+     */
+    @Benchmark
+    public Long pipelinedTransaction() {
+        return simpleRedisClient.transaction(transaction -> {
+            Response<Long> counter = transaction.incr(COUNTER_KEY);
+            transaction.set(keys.get(0), "value-0");
+            transaction.get(keys.get(0));
+            return counter::get;
+        });
+    }
+
+}
@@ -0,0 +1,106 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比 jedis 与 lettuce 两种驱动下 {@link SimpleRedisClient} 在不同并发调用数时的吞吐量
+ * <p>
+ * 运行方式: mvn -P benchmark test-compile exec:exec -Djmh.args="RedisDriverConcurrencyBenchmark"
+ * <p>
+ * 每次调用会让 callers 个虚拟线程同时执行一次 GET ，并等待全部完成，
+ * 结果中的 commands 为每毫秒完成的 GET 数，两种驱动的连接池大小相同
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisDriverConcurrencyBenchmark {
+
+    private static final String KEY = "benchmark-driver-key";
+
+    @Param({"jedis", "lettuce"})
+    private String driver;
+
+    @Param({"1", "64", "1024"})
+    private int callers;
+
+    @Param({"200"})
+    private long latencyMicros;
+
+    private RespStubServer server;
+
+    private ConfigurableApplicationContext context;
+
+    private SimpleRedisClient simpleRedisClient;
+
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = new RespStubServer(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros)));
+        // 连接池耗尽时一直等待，而不是抛出异常
+        context = BenchmarkRedisContext.start(server,
+                "--spring.data.redis.client-type=" + driver,
+                "--spring.data.redis.jedis.pool.max-wait=-1ms",
+                "--spring.data.redis.lettuce.pool.max-wait=-1ms");
+        simpleRedisClient = context.getBean(SimpleRedisClient.class);
+        simpleRedisClient.set(KEY, "value");
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        context.close();
+        server.close();
+    }
+
+    @Benchmark
+    public void concurrentGets(Commands commands) throws Exception {
+        List<Future<String>> futures = new ArrayList<>(callers);
+        for (int i = 0; i < callers; i++) {
+            futures.add(executor.submit(() -> simpleRedisClient.get(KEY)));
+        }
+        for (Future<String> future : futures) {
+            future.get();
+        }
+        commands.commands += callers;
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Commands {
+
+        public long commands;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            commands = 0;
+        }
+    }
+
+}
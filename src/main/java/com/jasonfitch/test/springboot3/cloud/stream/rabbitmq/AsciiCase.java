@@ -0,0 +1,72 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * highlightLogs 的 ascii 快速路径，直接在未解码的字节上将 a-z 转换为 A-Z ，不经过 String 以及 unicode 的大小写映射
+ * <p>
+ * 只有在全部字节都是 ascii 时才会转换，遇到任何不小于 0x80 的字节都返回 null ，由调用方退回到 {@link String#toUpperCase()} ，
+ * 所以两条路径的结果完全相同，另外需要满足以下两个条件，参见 {@link #isApplicable(Charset)}:
+ * <ul>
+ * <li>字符集中小于 0x80 的字节必须都直接表示对应的 ascii 字符，ISO-2022-JP 这类用 ascii 范围的字节编码其他字符的字符集不满足</li>
+ * <li>默认 locale 不是 tr 或者 az ，这两种语言中 i 的大写为 U+0130 ，不在 ascii 范围内</li>
+ * </ul>
+ * 启动时添加了 --add-modules jdk.incubator.vector 的情况下使用 {@link AsciiCaseVector} 按照向量宽度批量比较以及转换，
+ * 否则使用逐字节的版本，两者的结果相同
+ */
+final class AsciiCase {
+
+    static final boolean VECTOR_AVAILABLE = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private static final Set<Charset> ASCII_TRANSPARENT = Set.of(StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1, StandardCharsets.UTF_8);
+
+    private static final byte CASE_DIFFERENCE = 'a' - 'A';
+
+    private AsciiCase() {
+    }
+
+    static boolean isApplicable(Charset charset) {
+        if (!ASCII_TRANSPARENT.contains(charset)) {
+            return false;
+        }
+        String language = Locale.getDefault().getLanguage();
+        return !"tr".equals(language) && !"az".equals(language);
+    }
+
+    /**
+     * @return 包含非 ascii 字节时返回 null ，没有小写字母时返回 bytes 本身，否则返回转换后的新数组，不会修改 bytes
+     */
+    static byte[] toUpperCase(byte[] bytes) {
+        return VECTOR_AVAILABLE ? AsciiCaseVector.toUpperCase(bytes) : toUpperCaseScalar(bytes, null, 0);
+    }
+
+    static byte[] toUpperCaseScalar(byte[] bytes) {
+        return toUpperCaseScalar(bytes, null, 0);
+    }
+
+    /**
+     * 从 from 开始逐字节转换，也用于处理向量版本剩余的不足一个向量宽度的部分
+     *
+     * @param upper from 之前已经转换的结果，from 之前没有小写字母时为 null ，第一次遇到小写字母时才复制 bytes
+     */
+    static byte[] toUpperCaseScalar(byte[] bytes, byte[] upper, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            byte b = bytes[i];
+            if (b < 0) {
+                return null;
+            }
+            if (b >= 'a' && b <= 'z') {
+                if (upper == null) {
+                    upper = Arrays.copyOf(bytes, bytes.length);
+                }
+                upper[i] = (byte) (b - CASE_DIFFERENCE);
+            }
+        }
+        return upper == null ? bytes : upper;
+    }
+
+}
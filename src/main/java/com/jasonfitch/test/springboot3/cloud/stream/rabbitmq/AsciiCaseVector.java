@@ -0,0 +1,46 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * {@link AsciiCase} 的向量版本，每次比较以及转换一个向量宽度的字节，剩余的部分交给逐字节的版本
+ * <p>
+ * 依赖孵化中的 jdk.incubator.vector 模块，只有在 {@link AsciiCase#VECTOR_AVAILABLE} 为 true 时才会被加载
+ */
+final class AsciiCaseVector {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private static final byte CASE_DIFFERENCE = 'a' - 'A';
+
+    private AsciiCaseVector() {
+    }
+
+    static byte[] toUpperCase(byte[] bytes) {
+        byte[] upper = null;
+        int bound = SPECIES.loopBound(bytes.length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            ByteVector vector = ByteVector.fromArray(SPECIES, bytes, i);
+            // byte 是有符号的，不小于 0x80 的字节为负数
+            if (vector.compare(VectorOperators.LT, (byte) 0).anyTrue()) {
+                return null;
+            }
+            VectorMask<Byte> lowerCase = vector.compare(VectorOperators.GE, (byte) 'a')
+                    .and(vector.compare(VectorOperators.LE, (byte) 'z'));
+            if (lowerCase.anyTrue()) {
+                if (upper == null) {
+                    upper = Arrays.copyOf(bytes, bytes.length);
+                }
+                vector.sub(CASE_DIFFERENCE, lowerCase).intoArray(upper, i);
+            }
+        }
+        return AsciiCase.toUpperCaseScalar(bytes, upper, i);
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import java.util.Arrays;
+
+/**
+ * count-min sketch ，用固定的 depth * width 个计数器估计每个 key 出现的次数，内存与 key 的数量无关
+ * <p>
+ * 估计值只会偏大不会偏小，误差不超过总数的 e / width ，并且以 1 - e^-depth 的概率成立
+ * <p>
+ * 非线程安全，由调用方负责同步
+ */
+final class CountMinSketch {
+
+    private final int width;
+
+    private final long[][] counters;
+
+    private long total;
+
+    CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1) {
+            throw new IllegalArgumentException("width and depth must be positive, but were " + width + " and " + depth);
+        }
+        this.width = width;
+        this.counters = new long[depth][width];
+    }
+
+    /**
+     * @return 添加之后 key 的估计次数
+     */
+    long add(String key, long count) {
+        long hash = LogHash.hash64(key);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counters.length; row++) {
+            int column = indexOf(hash, row);
+            counters[row][column] += count;
+            estimate = Math.min(estimate, counters[row][column]);
+        }
+        total += count;
+        return estimate;
+    }
+
+    long estimate(String key) {
+        long hash = LogHash.hash64(key);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counters.length; row++) {
+            estimate = Math.min(estimate, counters[row][indexOf(hash, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * 将 other 的计数累加到当前的 sketch 中，两者的 width 以及 depth 必须相同
+     */
+    void merge(CountMinSketch other) {
+        if (other.width != width || other.counters.length != counters.length) {
+            throw new IllegalArgumentException("Cannot merge count-min sketches of different dimensions.");
+        }
+        for (int row = 0; row < counters.length; row++) {
+            for (int column = 0; column < width; column++) {
+                counters[row][column] += other.counters[row][column];
+            }
+        }
+        total += other.total;
+    }
+
+    void clear() {
+        for (long[] row : counters) {
+            Arrays.fill(row, 0L);
+        }
+        total = 0;
+    }
+
+    long getTotal() {
+        return total;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getDepth() {
+        return counters.length;
+    }
+
+    /**
+     * 各行的下标由 {@link LogHash} 的双重哈希得到，使各行的冲突相互独立
+     */
+    private int indexOf(long hash, int row) {
+        return Math.floorMod((int) hash + row * LogHash.step(hash), width);
+    }
+
+}
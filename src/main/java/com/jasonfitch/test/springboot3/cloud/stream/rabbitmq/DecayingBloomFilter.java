@@ -0,0 +1,101 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import java.util.Arrays;
+
+/**
+ * 随时间衰减的布隆过滤器，由当前以及上一代两个固定大小的布隆过滤器组成，
+ * 查询时检查两代，插入时只写入当前一代，每次 {@link #rotate()} 丢弃上一代，当前一代成为上一代
+ * <p>
+ * 所以一个 key 在插入之后的一到两个轮换周期内被认为已经存在，之后自动过期，内存固定为两个过滤器的大小，
+ * 每一代的插入数不超过 expectedInsertions 时误判率约为 falsePositiveRate ，误判会使一个新的 key 被当作重复
+ * <p>
+ * 非线程安全，由调用方负责同步
+ */
+final class DecayingBloomFilter {
+
+    private final int bitCount;
+
+    private final int hashCount;
+
+    private long[] current;
+
+    private long[] previous;
+
+    DecayingBloomFilter(int expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("expectedInsertions must be positive and falsePositiveRate must be in (0, 1), but were "
+                    + expectedInsertions + " and " + falsePositiveRate);
+        }
+        // m = -n * ln(p) / ln(2)^2 ， k = m / n * ln(2)
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, bits));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.current = new long[(bitCount + 63) / 64];
+        this.previous = new long[current.length];
+    }
+
+    /**
+     * @return key 在两代中都不存在时返回 true ，并将其写入当前一代，否则返回 false
+     */
+    boolean putIfAbsent(String key) {
+        long hash = LogHash.hash64(key);
+        int h1 = (int) hash;
+        int h2 = LogHash.step(hash);
+
+        boolean inCurrent = true;
+        boolean inPrevious = true;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            inCurrent &= isSet(current, bit);
+            inPrevious &= isSet(previous, bit);
+        }
+        if (inCurrent) {
+            return false;
+        }
+
+        // 只存在于上一代的 key 也写入当前一代，从而在持续重复时不会过期
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            current[bit >>> 6] |= 1L << bit;
+        }
+        return !inPrevious;
+    }
+
+    /**
+     * 只查询，不写入
+     */
+    boolean mightContain(String key) {
+        long hash = LogHash.hash64(key);
+        int h1 = (int) hash;
+        int h2 = LogHash.step(hash);
+
+        boolean inCurrent = true;
+        boolean inPrevious = true;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            inCurrent &= isSet(current, bit);
+            inPrevious &= isSet(previous, bit);
+        }
+        return inCurrent || inPrevious;
+    }
+
+    void rotate() {
+        long[] expired = previous;
+        previous = current;
+        Arrays.fill(expired, 0L);
+        current = expired;
+    }
+
+    int getBitCount() {
+        return bitCount;
+    }
+
+    int getHashCount() {
+        return hashCount;
+    }
+
+    private static boolean isSet(long[] bits, int bit) {
+        return (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * space-saving 算法，最多跟踪 capacity 个候选 key ，出现次数超过总数 1 / capacity 的 key 一定在候选之中
+ * <p>
+ * 候选已满时新的 key 替换计数最小的候选，并继承其计数，所以这里的计数只用于决定保留哪些候选，
+ * 准确的次数由 {@link CountMinSketch} 估计
+ * <p>
+ * 非线程安全，由调用方负责同步
+ */
+final class HeavyHitters {
+
+    private final int capacity;
+
+    private final Map<String, long[]> candidates;
+
+    HeavyHitters(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive, but was " + capacity);
+        }
+        this.capacity = capacity;
+        this.candidates = HashMap.newHashMap(capacity);
+    }
+
+    void add(String key) {
+        long[] counter = candidates.get(key);
+        if (counter != null) {
+            counter[0]++;
+            return;
+        }
+        if (candidates.size() < capacity) {
+            candidates.put(key, new long[]{1});
+            return;
+        }
+
+        // 候选的数量是固定的小常数，直接线性查找最小值
+        Map.Entry<String, long[]> min = null;
+        for (Map.Entry<String, long[]> entry : candidates.entrySet()) {
+            if (min == null || entry.getValue()[0] < min.getValue()[0]) {
+                min = entry;
+            }
+        }
+        long[] evicted = candidates.remove(min.getKey());
+        evicted[0]++;
+        candidates.put(key, evicted);
+    }
+
+    void clear() {
+        candidates.clear();
+    }
+
+    Set<String> getCandidates() {
+        return candidates.keySet();
+    }
+
+    /**
+     * 按照 sketch 估计的次数从大到小返回前 n 个 key
+     */
+    static List<Map.Entry<String, Long>> top(Set<String> candidates, CountMinSketch sketch, int n) {
+        List<Map.Entry<String, Long>> estimates = new ArrayList<>(candidates.size());
+        for (String candidate : candidates) {
+            estimates.add(Map.entry(candidate, sketch.estimate(candidate)));
+        }
+        estimates.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()));
+        return estimates.size() > n ? estimates.subList(0, n) : estimates;
+    }
+
+}
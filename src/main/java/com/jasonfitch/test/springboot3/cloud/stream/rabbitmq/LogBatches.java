@@ -0,0 +1,83 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.springframework.cloud.stream.binder.BinderHeaders;
+import org.springframework.integration.amqp.inbound.AmqpInboundChannelAdapter;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 批量消费时，binder 将一批消息的 payload 合并为一个 List ，而每条消息各自的 header 则放在一个与 payload 一一对应的 List header 中，
+ * spring cloud stream 的标准 header 为 {@link BinderHeaders#BATCH_HEADERS} ，rabbit binder 使用的是
+ * {@link AmqpInboundChannelAdapter#CONSOLIDATED_HEADERS}
+ * <p>
+ * 批量函数返回 {@code List<Message<?>>} 时，spring cloud stream 会将其中的每条消息分别发送，
+ * 所以每条输出消息都可以带有自己的 header ，包括 spring.cloud.stream.sendto.destination ，
+ * 而 rabbit binder 的 producer 开启 batching-enabled 之后会在发送时再将这些消息合并为批量
+ */
+final class LogBatches {
+
+    static final String SEND_TO_DESTINATION = "spring.cloud.stream.sendto.destination";
+
+    /**
+     * 只描述这一批消息本身，或者只对上游有意义，不应该被复制到每条输出消息上的 header ，
+     * 例如上游 processLogs 设置的 sendto.destination 如果被复制到输出消息上，消息会被再次路由回当前函数
+     */
+    private static final Set<String> BATCH_LEVEL_HEADERS = Set.of(
+            MessageHeaders.ID, MessageHeaders.TIMESTAMP, MessageHeaders.CONTENT_TYPE,
+            BinderHeaders.BATCH_HEADERS, AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS, SEND_TO_DESTINATION);
+
+    private LogBatches() {
+    }
+
+    /**
+     * 对一批消息中的每个 payload 执行 mapper ，每条输出消息带有其对应输入消息的 header
+     *
+     * @param mapper 返回值为 null 时表示丢弃该条消息
+     */
+    static <T, R> List<Message<R>> map(Message<List<T>> batch, Function<T, Message<R>> mapper) {
+        List<T> payloads = batch.getPayload();
+        List<Map<String, Object>> batchHeaders = batchHeaders(batch);
+        Map<String, Object> commonHeaders = withoutBatchLevelHeaders(batch.getHeaders());
+
+        List<Message<R>> results = new ArrayList<>(payloads.size());
+        for (int i = 0; i < payloads.size(); i++) {
+            Message<R> result = mapper.apply(payloads.get(i));
+            if (result == null) {
+                continue;
+            }
+
+            // 优先级: mapper 设置的 header > 该消息自己的 header > 整批消息共有的 header
+            MessageBuilder<R> builder = MessageBuilder.withPayload(result.getPayload()).copyHeadersIfAbsent(result.getHeaders());
+            if (batchHeaders != null && i < batchHeaders.size()) {
+                builder.copyHeadersIfAbsent(withoutBatchLevelHeaders(batchHeaders.get(i)));
+            }
+            builder.copyHeadersIfAbsent(commonHeaders);
+            results.add(builder.build());
+        }
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> batchHeaders(Message<?> batch) {
+        Object headers = batch.getHeaders().get(BinderHeaders.BATCH_HEADERS);
+        if (headers == null) {
+            headers = batch.getHeaders().get(AmqpInboundChannelAdapter.CONSOLIDATED_HEADERS);
+        }
+        return headers instanceof List<?> list ? (List<Map<String, Object>>) list : null;
+    }
+
+    static Map<String, Object> withoutBatchLevelHeaders(Map<String, Object> headers) {
+        Map<String, Object> result = new HashMap<>(headers);
+        result.keySet().removeAll(BATCH_LEVEL_HEADERS);
+        return result;
+    }
+
+}
@@ -0,0 +1,173 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * processLogs 之前的去重以及采样，同一条日志在一到两个 window 之内重复出现时被视为重复，
+ * 重复的日志按照其采样 key 对应的采样率转发一部分，其余的被抑制，不再进入下游
+ * <p>
+ * 是否重复由 {@link DecayingBloomFilter} 判断，每个 window 轮换一次，内存固定，
+ * 被抑制的日志只计入一个 {@link CountMinSketch} 以及一个 {@link HeavyHitters} ，
+ * 每次轮换时为被抑制最多的 top-n 条日志各输出一条 "[suppressed N duplicates] ..." 的摘要消息，然后清空计数
+ * <p>
+ * 采样 key 由 log.dedup.sampling.key-expression 对消息求值得到，采样率为重复日志中仍然被转发的比例，
+ * 没有在 log.dedup.sampling.rates 中配置的 key 使用 default-rate ，采样是确定性的，例如 0.1 表示每 10 条重复的日志转发 1 条
+ */
+@Component
+class LogDeduplicator {
+
+    static final String SUPPRESSED_COUNT_HEADER = "logSuppressedCount";
+
+    private final DecayingBloomFilter filter;
+
+    private final Expression samplingKeyExpression;
+
+    private final EvaluationContext evaluationContext = SimpleEvaluationContext.forReadOnlyDataBinding().build();
+
+    private final Map<String, Sampler> samplers;
+
+    private final Sampler defaultSampler;
+
+    private final Duration window;
+
+    private final int topN;
+
+    private final CountMinSketch suppressedSketch;
+
+    private final HeavyHitters suppressedHitters;
+
+    private final LongAdder forwardedCount = new LongAdder();
+
+    private final LongAdder suppressedCount = new LongAdder();
+
+    @Autowired
+    LogDeduplicator(@Value("${log.dedup.window:10s}") Duration window,
+                    @Value("${log.dedup.expected-insertions:100000}") int expectedInsertions,
+                    @Value("${log.dedup.false-positive-rate:0.001}") double falsePositiveRate,
+                    @Value("${log.dedup.sampling.key-expression:headers['source']}") String samplingKeyExpression,
+                    @Value("${log.dedup.sampling.default-rate:0}") double defaultRate,
+                    @Value("${log.dedup.summary.top-n:10}") int topN,
+                    Environment environment) {
+        this(window, expectedInsertions, falsePositiveRate, samplingKeyExpression, defaultRate, topN,
+                Binder.get(environment).bind("log.dedup.sampling.rates", Bindable.mapOf(String.class, Double.class)).orElse(Map.of()));
+    }
+
+    LogDeduplicator(Duration window, int expectedInsertions, double falsePositiveRate,
+                    String samplingKeyExpression, double defaultRate, int topN, Map<String, Double> rates) {
+        this.filter = new DecayingBloomFilter(expectedInsertions, falsePositiveRate);
+        this.samplingKeyExpression = new SpelExpressionParser().parseExpression(samplingKeyExpression);
+        this.defaultSampler = new Sampler(defaultRate);
+        Map<String, Sampler> configured = new HashMap<>();
+        rates.forEach((key, rate) -> configured.put(key, new Sampler(rate)));
+        this.samplers = Map.copyOf(configured);
+        this.window = window;
+        this.topN = topN;
+        this.suppressedSketch = new CountMinSketch(512, 4);
+        this.suppressedHitters = new HeavyHitters(Math.max(1, topN * 4));
+    }
+
+    /**
+     * @return 需要转发的消息，被抑制时返回 null
+     */
+    Message<String> filter(Message<String> log) {
+        String payload = log.getPayload();
+        boolean unique;
+        synchronized (this) {
+            unique = filter.putIfAbsent(payload);
+        }
+        if (unique || samplerOf(log).sample()) {
+            forwardedCount.increment();
+            return log;
+        }
+
+        suppressedCount.increment();
+        synchronized (this) {
+            suppressedSketch.add(payload, 1);
+            suppressedHitters.add(payload);
+        }
+        return null;
+    }
+
+    /**
+     * 轮换布隆过滤器，并为上一个 window 中被抑制最多的日志生成摘要消息
+     */
+    synchronized List<Message<String>> rotate() {
+        filter.rotate();
+        if (suppressedSketch.getTotal() == 0) {
+            return List.of();
+        }
+
+        List<Message<String>> summaries = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : HeavyHitters.top(suppressedHitters.getCandidates(), suppressedSketch, topN)) {
+            summaries.add(MessageBuilder.withPayload("[suppressed %d duplicates] %s".formatted(entry.getValue(), entry.getKey()))
+                    .setHeader(SUPPRESSED_COUNT_HEADER, entry.getValue())
+                    .build());
+        }
+        suppressedSketch.clear();
+        suppressedHitters.clear();
+        return summaries;
+    }
+
+    Duration getWindow() {
+        return window;
+    }
+
+    long getForwardedCount() {
+        return forwardedCount.sum();
+    }
+
+    long getSuppressedCount() {
+        return suppressedCount.sum();
+    }
+
+    private Sampler samplerOf(Message<String> log) {
+        Object key = samplingKeyExpression.getValue(evaluationContext, log);
+        Sampler sampler = key == null ? null : samplers.get(key.toString());
+        return sampler == null ? defaultSampler : sampler;
+    }
+
+    /**
+     * 第 n 条重复的日志在 floor(n * rate) 增加时被转发，所以转发的比例正好是 rate
+     */
+    private static final class Sampler {
+
+        private final double rate;
+
+        private final AtomicLong duplicates = new AtomicLong();
+
+        Sampler(double rate) {
+            if (rate < 0 || rate > 1) {
+                throw new IllegalArgumentException("Sampling rate must be in [0, 1], but was " + rate);
+            }
+            this.rate = rate;
+        }
+
+        boolean sample() {
+            if (rate == 0) {
+                return false;
+            }
+            long n = duplicates.incrementAndGet();
+            return (long) (n * rate) > (long) ((n - 1) * rate);
+        }
+    }
+
+}
@@ -1,11 +1,21 @@
 package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.stream.function.StreamBridge;
 import org.springframework.context.annotation.Bean;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /**
@@ -14,32 +24,224 @@ import java.util.function.Function;
 @SpringBootApplication
 public class LogEnricherApplication {
 
+    private static final Logger logger = LoggerFactory.getLogger(LogEnricherApplication.class);
+
+    static final String ENRICH_INPUT = "enrichLogMessage-in-0";
+
+    static final String ENRICH_OUTPUT = "enrichLogMessage-out-0";
+
+    static final String PRETTY_DESTINATION = "queue.pretty.log.messages";
+
+    static final String ENRICH_PARTITIONED_OUTPUT = "enrichLogMessagePartitioned-out-0";
+
+    static final String HIGHLIGHT_PARTITIONED_OUTPUT = "highlightLogsPartitioned-out-0";
+
+    static final String AGGREGATE_OUTPUT = "aggregateLogs-out-0";
+
+    static final String DEDUP_OUTPUT = "dedupLogs-out-0";
+
     public static void main(String[] args) {
         SpringApplication.run(LogEnricherApplication.class, args);
     }
 
     @Bean
     public Function<String, String> enrichLogMessage() {
-        return value -> "[%s] - %s".formatted("Baeldung", value);
+        return LogEnricherApplication::enrich;
     }
 
+    /**
+     * 按照级别或者长度决定是否需要添加前缀，以及是否在进程内直接添加，参见 {@link LogRouter}
+     */
     @Bean
-    public Function<String, Message<String>> processLogs() {
-        return log -> {
-            boolean shouldBeEnriched = log.length() > 10;
-            String destination = shouldBeEnriched ? "enrichLogMessage-in-0" : "queue.pretty.log.messages";
+    public Function<String, Message<String>> processLogs(LogRouter router) {
+        return router::route;
+    }
 
-            return MessageBuilder.withPayload(log)
-                    .setHeader("spring.cloud.stream.sendto.destination", destination)
+    /**
+     * 输入输出都是 {@link LogMessage} ，由 {@link TextPlainMessageConverter} 按照 contentType 中的字符集转换，
+     * 内容没有变化时直接返回输入的 {@link LogMessage} ，如果输出的字符集与输入相同，原始字节会被直接发送，不需要重新编码
+     */
+    @Bean
+    Function<LogMessage, LogMessage> highlightLogs() {
+        return LogEnricherApplication::highlight;
+    }
+
+    /**
+     * 字节版本的 enrichLogMessage ，直接在未解码的 payload 前拼接预先编码好的前缀，不经过 String ，
+     * 输出的字符集与输入的 contentType 中的字符集相同，并且显式地声明在输出消息的 contentType 中
+     * <p>
+     * binder 会持有输出消息的 payload 直到发送完成，所以这里每条消息仍然需要分配一个新的数组，
+     * 需要复用缓冲区的调用方可以直接使用 {@link LogPrefix#prepend(java.nio.ByteBuffer, java.nio.ByteBuffer, Charset)}
+     */
+    @Bean
+    public Function<Message<byte[]>, Message<byte[]>> enrichLogMessageBytes() {
+        return message -> {
+            MimeType contentType = LogPrefix.contentTypeOf(message);
+            Charset charset = LogPrefix.charsetOf(contentType);
+            return MessageBuilder.withPayload(LogPrefix.prepend(message.getPayload(), charset))
+                    .copyHeaders(message.getHeaders())
+                    .setHeader(MessageHeaders.CONTENT_TYPE, LogPrefix.textPlain(charset))
                     .build();
         };
     }
 
+    /**
+     * 字节版本的 processLogs ，与 highlightLogs 相同，输入输出都是由 {@link TextPlainMessageConverter} 转换的 {@link LogMessage} ，
+     * 能够识别出级别的日志只在字节上解析，不需要添加前缀时原始字节被直接转发，路由规则与 processLogs 相同
+     */
+    @Bean
+    public Function<LogMessage, Message<LogMessage>> processLogsBytes(LogRouter router) {
+        return router::route;
+    }
+
+    /**
+     * 以下为批量消费的版本，输入绑定需要开启 consumer.batch-mode ，每批的最大消息数以及最长等待时间由 binder 控制，
+     * 参见 application.yml 中的 log.batch ，每条消息的处理逻辑与单条消费的版本相同，并且保留了每条消息各自的 header
+     */
+    @Bean
+    public Function<Message<List<String>>, List<Message<String>>> enrichLogMessageBatch() {
+        return batch -> LogBatches.map(batch, log -> MessageBuilder.withPayload(enrich(log)).build());
+    }
+
+    @Bean
+    public Function<Message<List<String>>, List<Message<String>>> processLogsBatch(LogRouter router) {
+        // 每条消息各自设置 sendto.destination ，所以同一批中的消息可以被路由到不同的目的地
+        return batch -> LogBatches.map(batch, router::route);
+    }
+
+    @Bean
+    Function<Message<List<LogMessage>>, List<Message<LogMessage>>> highlightLogsBatch() {
+        return batch -> LogBatches.map(batch, logMsg -> MessageBuilder.withPayload(highlight(logMsg)).build());
+    }
+
+    /**
+     * 以下为分区执行的版本，binder 的消费线程只负责计算分区 key 并将消息交给 {@link LogLanes} ，
+     * 相同 key 的消息在同一条 lane 上按照到达的顺序执行，不同 key 的消息在不同的 lane 上并行执行，
+     * 由于处理是异步的，这里是 Consumer ，结果通过 {@link StreamBridge} 发送到 application.yml 中对应的 *-out-0 绑定，
+     * 每条消息的处理逻辑与单条消费的版本相同，并且保留了输入消息的 header
+     */
+    @Bean
+    public Consumer<Message<String>> enrichLogMessagePartitioned(LogLanes lanes, StreamBridge streamBridge) {
+        return message -> lanes.execute(message,
+                () -> streamBridge.send(ENRICH_PARTITIONED_OUTPUT, withHeadersOf(message, enrich(message.getPayload()))));
+    }
+
+    @Bean
+    public Consumer<Message<String>> processLogsPartitioned(LogLanes lanes, StreamBridge streamBridge, LogRouter router) {
+        return message -> lanes.execute(message, () -> {
+            Message<String> routed = router.route(message.getPayload());
+            String destination = (String) routed.getHeaders().get(LogBatches.SEND_TO_DESTINATION);
+            streamBridge.send(destination, withHeadersOf(message, routed.getPayload()));
+        });
+    }
+
+    @Bean
+    Consumer<Message<LogMessage>> highlightLogsPartitioned(LogLanes lanes, StreamBridge streamBridge) {
+        return message -> lanes.execute(message,
+                () -> streamBridge.send(HIGHLIGHT_PARTITIONED_OUTPUT, withHeadersOf(message, highlight(message.getPayload()))));
+    }
+
+    /**
+     * 以下为响应式的版本，下游变慢时只向上游请求它能处理的数量，等待处理的消息数以及超出之后的处理方式由 {@link ReactiveLogPipeline} 控制，
+     * 参见 application.yml 中的 log.reactive ，每条消息的处理逻辑与单条消费的版本相同
+     */
+    @Bean
+    public Function<Flux<String>, Flux<String>> enrichLogMessageReactive(ReactiveLogPipeline pipeline) {
+        return logs -> pipeline.apply(logs, LogEnricherApplication::enrich);
+    }
+
+    @Bean
+    public Function<Flux<String>, Flux<Message<String>>> processLogsReactive(ReactiveLogPipeline pipeline, LogRouter router) {
+        return logs -> pipeline.apply(logs, router::route);
+    }
+
+    @Bean
+    Function<Flux<LogMessage>, Flux<LogMessage>> highlightLogsReactive(ReactiveLogPipeline pipeline) {
+        return logs -> pipeline.apply(logs, LogEnricherApplication::highlight);
+    }
+
+    /**
+     * 与 enrichLogMessage 消费相同的日志，但是使用另一个 group ，所以两者各自收到一份完整的消息，
+     * 每条日志只更新 {@link LogWindows} 中当前的 pane ，不会被转发，每个 pane 结束时输出窗口的摘要到独立的目的地，
+     * 参见 application.yml 中的 log.window
+     * <p>
+     * 摘要由定时器而不是输入驱动，所以与分区执行的版本一样经由 {@link StreamBridge} 发送到 aggregateLogs-out-0 ，
+     * 发送失败时只丢弃这一条摘要，不会像输出 Flux 中的异常那样终止整个响应式函数
+     */
+    @Bean
+    public Function<Flux<String>, Mono<Void>> aggregateLogs(LogWindows windows, StreamBridge streamBridge) {
+        return logs -> {
+            Flux<String> shared = logs.doOnNext(log -> windows.add(log, System.currentTimeMillis())).share();
+            // 在每个 pane 结束时关闭窗口，没有新的日志时也能按时输出摘要，输入结束后定时器随之停止
+            Flux<LogWindowSummary> summaries = Flux.interval(windows.untilNextPane(System.currentTimeMillis()), windows.getSlide())
+                    .onBackpressureDrop()
+                    .concatMapIterable(tick -> windows.advance(System.currentTimeMillis()))
+                    .takeUntilOther(shared.then());
+            return Mono.when(shared, summaries.doOnNext(summary -> sendSummary(streamBridge, AGGREGATE_OUTPUT, summary)));
+        };
+    }
+
+    /**
+     * 位于 processLogs 之前，输出绑定的目的地即为 processLogs-in-0 ，重复的日志按照采样率转发一部分，其余的被抑制，
+     * 每个 window 输出被抑制最多的日志的摘要，参见 {@link LogDeduplicator} 以及 application.yml 中的 log.dedup
+     * <p>
+     * 与 aggregateLogs 相同，由定时器驱动的摘要经由 {@link StreamBridge} 发送到同一个输出绑定，发送失败时不会终止整个响应式函数
+     */
     @Bean
-    Function<LogMessage, String> highlightLogs() {
-        return logMsg -> logMsg
-                .message()
-                .toUpperCase();
+    public Function<Flux<Message<String>>, Flux<Message<String>>> dedupLogs(LogDeduplicator deduplicator, StreamBridge streamBridge) {
+        return logs -> {
+            Flux<Message<String>> shared = logs.share();
+            // 输入结束后定时器随之停止
+            Flux<Message<String>> summaries = Flux.interval(deduplicator.getWindow(), deduplicator.getWindow())
+                    .onBackpressureDrop()
+                    .concatMapIterable(tick -> deduplicator.rotate())
+                    .takeUntilOther(shared.then())
+                    .doOnNext(summary -> sendSummary(streamBridge, DEDUP_OUTPUT, summary))
+                    .thenMany(Flux.empty());
+            return shared.<Message<String>>handle((log, sink) -> {
+                        Message<String> forwarded = deduplicator.filter(log);
+                        if (forwarded != null) {
+                            sink.next(withHeadersOf(forwarded, forwarded.getPayload()));
+                        }
+                    })
+                    .mergeWith(summaries);
+        };
+    }
+
+    private static void sendSummary(StreamBridge streamBridge, String bindingName, Object summary) {
+        try {
+            if (!streamBridge.send(bindingName, summary)) {
+                logger.warn("Failed to send summary [{}] to [{}], it is dropped.", summary, bindingName);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to send summary [{}] to [{}], it is dropped.", summary, bindingName, e);
+        }
+    }
+
+    private static <T> Message<T> withHeadersOf(Message<?> input, T payload) {
+        return MessageBuilder.withPayload(payload)
+                .copyHeaders(LogBatches.withoutBatchLevelHeaders(input.getHeaders()))
+                .build();
+    }
+
+    static String enrich(String value) {
+        return "[%s] - %s".formatted("Baeldung", value);
+    }
+
+    /**
+     * 未解码的纯 ascii 消息直接在字节上转换，参见 {@link AsciiCase} ，其余的经过 {@link String#toUpperCase()}
+     */
+    private static LogMessage highlight(LogMessage logMsg) {
+        if (!logMsg.isDecoded() && AsciiCase.isApplicable(logMsg.charset())) {
+            byte[] bytes = logMsg.bytes(logMsg.charset());
+            byte[] upper = AsciiCase.toUpperCase(bytes);
+            if (upper != null) {
+                return upper == bytes ? logMsg : LogMessage.ofBytes(upper, logMsg.charset());
+            }
+        }
+        String message = logMsg.message();
+        String highlighted = message.toUpperCase();
+        return highlighted.equals(message) ? logMsg : new LogMessage(highlighted);
     }
 
 }
@@ -0,0 +1,41 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+/**
+ * {@link DecayingBloomFilter} 以及 {@link CountMinSketch} 共用的 64 位哈希，两个 32 位的部分用于双重哈希，
+ * 即第 i 个哈希函数为 h1 + i * h2 ，各个哈希函数的冲突相互独立，不会像 {@link String#hashCode()} 那样在所有的行上同时冲突
+ */
+final class LogHash {
+
+    private LogHash() {
+    }
+
+    /**
+     * 64 位的 FNV-1a ，再经过一次 murmur3 的 fmix64
+     * <p>
+     * 直接按照 UTF-16 的 char 逐个字节计算，不需要为每条日志编码出一份字节数组
+     */
+    static long hash64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            hash ^= c & 0xff;
+            hash *= 0x100000001b3L;
+            hash ^= c >>> 8;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * @return 双重哈希的步长，取奇数避免为 0 时所有的哈希函数落在同一个位置上
+     */
+    static int step(long hash) {
+        return (int) (hash >>> 32) | 1;
+    }
+
+}
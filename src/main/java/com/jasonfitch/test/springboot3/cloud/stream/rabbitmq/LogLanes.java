@@ -0,0 +1,171 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按照分区 key 将消息分配到 N 条 lane 上执行，每条 lane 是一个单线程的执行器，
+ * 相同 key 的消息总是进入同一条 lane ，所以按照到达的顺序依次执行，不同 key 的消息则可以在不同的 lane 上并行执行
+ * <p>
+ * key 由 log.partition.key-expression 对消息求值得到，例如 headers['traceId'] 或者 payload ，
+ * 求值结果为 null 的消息都进入第 0 条 lane ，因此它们之间也是严格有序的
+ * <p>
+ * 每条 lane 的队列是有界的，队列满时提交消息的 binder 消费线程会被阻塞，直到 lane 腾出空间，从而将背压传递给 broker
+ * <p>
+ * 注意消息交给 lane 之后 binder 即认为已经消费成功，不再有 binder 的重试以及 DLQ ，
+ * lane 中执行失败的消息连同异常信息被发送到 log.partition.error-destination ，由下游决定是否重新投递，
+ * 发送也失败时只能记录日志，所有失败的消息都计入 {@link #getFailureCount()}
+ */
+@Component
+class LogLanes implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogLanes.class);
+
+    static final String EXCEPTION_MESSAGE_HEADER = "x-exception-message";
+
+    static final String EXCEPTION_TYPE_HEADER = "x-exception-type";
+
+    private final Expression keyExpression;
+
+    private final EvaluationContext evaluationContext = SimpleEvaluationContext.forReadOnlyDataBinding().build();
+
+    private final List<ExecutorService> lanes;
+
+    private final Duration shutdownTimeout;
+
+    private final StreamBridge streamBridge;
+
+    private final String errorDestination;
+
+    private final LongAdder failures = new LongAdder();
+
+    LogLanes(@Value("${log.partition.key-expression:headers['traceId']}") String keyExpression,
+             @Value("${log.partition.lanes:4}") int laneCount,
+             @Value("${log.partition.queue-capacity:1024}") int queueCapacity,
+             @Value("${log.partition.shutdown-timeout:10s}") Duration shutdownTimeout,
+             @Value("${log.partition.error-destination:queue.log.messages.partitioned.errors}") String errorDestination,
+             StreamBridge streamBridge) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("log.partition.lanes must be positive, but was " + laneCount);
+        }
+        this.keyExpression = new SpelExpressionParser().parseExpression(keyExpression);
+        this.shutdownTimeout = shutdownTimeout;
+        this.errorDestination = errorDestination;
+        this.streamBridge = streamBridge;
+
+        List<ExecutorService> executors = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity),
+                    Thread.ofPlatform().name("log-lane-" + i).factory(),
+                    LogLanes::waitForCapacity);
+            executors.add(executor);
+        }
+        this.lanes = List.copyOf(executors);
+        logger.info("Partitioned log execution enabled with [{}] lanes keyed by [{}].", laneCount, keyExpression);
+    }
+
+    /**
+     * 在 message 的 key 所对应的 lane 上执行 task ，lane 的队列满时阻塞
+     */
+    void execute(Message<?> message, Runnable task) {
+        int lane = laneOf(keyOf(message));
+        lanes.get(lane).execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                failures.increment();
+                logger.error("Failed to process log message [{}] on lane [{}].", message.getHeaders().getId(), lane, e);
+                sendToErrorDestination(message, e);
+            }
+        });
+    }
+
+    /**
+     * 与 rabbit binder 重新发布到 DLQ 时一样，在原始消息上附加异常信息的 header
+     */
+    private void sendToErrorDestination(Message<?> message, RuntimeException failure) {
+        Message<?> failed = MessageBuilder.fromMessage(message)
+                .setHeader(EXCEPTION_MESSAGE_HEADER, String.valueOf(failure.getMessage()))
+                .setHeader(EXCEPTION_TYPE_HEADER, failure.getClass().getName())
+                .build();
+        try {
+            if (!streamBridge.send(errorDestination, failed)) {
+                logger.error("Failed to send log message [{}] to error destination [{}], it is dropped.", message.getHeaders().getId(), errorDestination);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to send log message [{}] to error destination [{}], it is dropped.", message.getHeaders().getId(), errorDestination, e);
+        }
+    }
+
+    Object keyOf(Message<?> message) {
+        return keyExpression.getValue(evaluationContext, message);
+    }
+
+    int laneOf(Object key) {
+        return key == null ? 0 : Math.floorMod(key.hashCode(), lanes.size());
+    }
+
+    int getLaneCount() {
+        return lanes.size();
+    }
+
+    /**
+     * @return 在 lane 中执行失败的消息数，包括发送到 error destination 也失败的消息
+     */
+    long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * 先停止接收新的消息，再等待各个 lane 中已经提交的消息执行完成
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        lanes.forEach(ExecutorService::shutdown);
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        for (ExecutorService lane : lanes) {
+            if (!lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                logger.warn("Log lanes did not finish within [{}], pending messages are dropped.", shutdownTimeout);
+                lanes.forEach(ExecutorService::shutdownNow);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 队列满时阻塞提交线程，而不是在提交线程上直接执行，否则同一个 key 的消息可能越过 lane 中排队的消息，破坏顺序
+     */
+    private static void waitForCapacity(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("Log lane is shut down.");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for log lane capacity.", e);
+        }
+    }
+
+}
@@ -1,4 +1,129 @@
 package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
 
-public record LogMessage(String message) {
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * 一条日志消息，可以直接由字符串创建，也可以由未解码的字节以及其字符集创建
+ * <p>
+ * 由字节创建时只有在第一次调用 {@link #message()} 时才会解码，解码结果会被缓存，
+ * 所以只关心字节长度或者只做路由的函数不需要承担解码的开销，
+ * 而输出时如果目标字符集与原始字符集相同，{@link #bytes(Charset)} 直接返回原始的字节，不需要重新编码
+ * <p>
+ * 由于需要缓存解码结果，这里不能再是 record ，但是保留了原来的构造方法以及 {@link #message()} 访问方法，
+ * json 的格式也与原来的 record 一致，只有 message 一个属性
+ */
+public final class LogMessage {
+
+    private final byte[] bytes;
+
+    private final Charset charset;
+
+    /**
+     * 由字节创建时在第一次访问时才赋值，多个线程同时解码得到的是相同的结果，所以不需要加锁
+     */
+    private volatile String message;
+
+    private volatile LogView view;
+
+    @JsonCreator
+    public LogMessage(@JsonProperty("message") String message) {
+        this(null, null, Objects.requireNonNull(message, "message"));
+    }
+
+    private LogMessage(byte[] bytes, Charset charset, String message) {
+        this.bytes = bytes;
+        this.charset = charset;
+        this.message = message;
+    }
+
+    /**
+     * @param bytes 不会被复制，调用方在此之后不应该再修改它
+     */
+    public static LogMessage ofBytes(byte[] bytes, Charset charset) {
+        return new LogMessage(Objects.requireNonNull(bytes, "bytes"), charset == null ? StandardCharsets.UTF_8 : charset, null);
+    }
+
+    @JsonProperty("message")
+    public String message() {
+        String decoded = message;
+        if (decoded == null) {
+            decoded = new String(bytes, charset);
+            message = decoded;
+        }
+        return decoded;
+    }
+
+    /**
+     * 结构化视图，第一次访问时解析并缓存，由 {@link LogView#isByteScannable(Charset)} 的字符集的字节创建时直接在字节上解析，不需要解码整条消息
+     */
+    @JsonIgnore
+    public LogView view() {
+        LogView parsed = view;
+        if (parsed == null) {
+            parsed = bytes != null && message == null && LogView.isByteScannable(charset)
+                    ? LogView.of(bytes, charset)
+                    : LogView.of(message());
+            view = parsed;
+        }
+        return parsed;
+    }
+
+    /**
+     * @return 字符集与原始字节相同时直接返回原始字节，调用方不应该修改返回的数组，否则按照 charset 重新编码
+     */
+    public byte[] bytes(Charset charset) {
+        if (bytes != null && this.charset.equals(charset)) {
+            return bytes;
+        }
+        return message().getBytes(charset);
+    }
+
+    /**
+     * @return 由字节创建时为原始字节的字符集，由字符串创建时为 null
+     */
+    @JsonIgnore
+    public Charset charset() {
+        return charset;
+    }
+
+    /**
+     * @return 由字节创建时为原始字节的长度，由字符串创建时为其 UTF-8 编码后的长度
+     */
+    @JsonIgnore
+    public int encodedLength() {
+        return bytes != null ? bytes.length : message.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    @JsonIgnore
+    public boolean isDecoded() {
+        return message != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LogMessage that)) {
+            return false;
+        }
+        return message().equals(that.message());
+    }
+
+    @Override
+    public int hashCode() {
+        return message().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "LogMessage[message=" + message() + "]";
+    }
+
 }
@@ -0,0 +1,97 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.MimeType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 为日志添加 [Baeldung] - 前缀
+ * <p>
+ * 前缀只包含 ascii 字符，对于 UTF-8 ，ISO-8859-1 这类兼容 ascii 的字符集，其编码后的字节与 ascii 编码完全相同，
+ * 所以可以直接将预先编码好的前缀拼接到未解码的 payload 之前，不需要解码再编码，也不会产生中间的 String ，
+ * 每条消息只分配一个结果数组，对于其他的字符集，例如 UTF-16 ，退回到解码再编码
+ */
+final class LogPrefix {
+
+    static final String PREFIX = "[%s] - ".formatted("Baeldung");
+
+    static final MimeType DEFAULT_CONTENT_TYPE = new MimeType("text", "plain", StandardCharsets.UTF_8);
+
+    private static final byte[] ENCODED_PREFIX = PREFIX.getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * 各个字符集是否兼容 ascii ，即前缀在该字符集下的编码是否与 ascii 编码相同
+     */
+    private static final Map<Charset, Boolean> ASCII_COMPATIBLE = new ConcurrentHashMap<>();
+
+    private static final Map<Charset, MimeType> TEXT_PLAIN = new ConcurrentHashMap<>();
+
+    private LogPrefix() {
+    }
+
+    static byte[] prepend(byte[] payload, Charset charset) {
+        if (!isAsciiCompatible(charset)) {
+            return (PREFIX + new String(payload, charset)).getBytes(charset);
+        }
+        byte[] result = new byte[ENCODED_PREFIX.length + payload.length];
+        System.arraycopy(ENCODED_PREFIX, 0, result, 0, ENCODED_PREFIX.length);
+        System.arraycopy(payload, 0, result, ENCODED_PREFIX.length, payload.length);
+        return result;
+    }
+
+    /**
+     * 将前缀以及 payload 中剩余的字节写入 target ，不会分配任何对象，target 可以在多条消息之间复用，
+     * 调用方负责在写入之前 clear ，写入之后 flip
+     *
+     * @throws java.nio.BufferOverflowException target 的剩余空间不足时
+     */
+    static ByteBuffer prepend(ByteBuffer payload, ByteBuffer target, Charset charset) {
+        if (!isAsciiCompatible(charset)) {
+            byte[] bytes = new byte[payload.remaining()];
+            payload.get(bytes);
+            return target.put(prepend(bytes, charset));
+        }
+        return target.put(ENCODED_PREFIX).put(payload);
+    }
+
+    static int encodedLength(int payloadLength) {
+        return ENCODED_PREFIX.length + payloadLength;
+    }
+
+    /**
+     * 消息的 contentType header 可能是 {@link MimeType} 也可能是字符串，没有时视为 text/plain;charset=UTF-8
+     */
+    static MimeType contentTypeOf(Message<?> message) {
+        Object contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE);
+        if (contentType instanceof MimeType mimeType) {
+            return mimeType;
+        }
+        if (contentType instanceof String value && !value.isBlank()) {
+            return MimeType.valueOf(value);
+        }
+        return DEFAULT_CONTENT_TYPE;
+    }
+
+    /**
+     * text/plain;charset=... ，按照字符集缓存，避免每条消息都创建一个 {@link MimeType}
+     */
+    static MimeType textPlain(Charset charset) {
+        return TEXT_PLAIN.computeIfAbsent(charset, key -> new MimeType("text", "plain", key));
+    }
+
+    static Charset charsetOf(MimeType contentType) {
+        return contentType.getCharset() == null ? StandardCharsets.UTF_8 : contentType.getCharset();
+    }
+
+    static boolean isAsciiCompatible(Charset charset) {
+        return ASCII_COMPATIBLE.computeIfAbsent(charset, key -> Arrays.equals(ENCODED_PREFIX, PREFIX.getBytes(key)));
+    }
+
+}
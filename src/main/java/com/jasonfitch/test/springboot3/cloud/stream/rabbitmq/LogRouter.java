@@ -0,0 +1,85 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.IntSupplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * processLogs 的各个版本共用的路由，决定一条日志是否需要添加前缀，并设置 spring.cloud.stream.sendto.destination
+ * <p>
+ * 默认按照长度路由，超过 10 个字符的日志需要添加前缀，
+ * 配置了 log.routing.enrich-levels 之后，能够通过 {@link LogView} 识别出级别的日志改为按照级别路由，
+ * 级别在其中的日志需要添加前缀，其余的直接发送到 queue.pretty.log.messages ，无法识别的日志仍然按照长度路由
+ * <p>
+ * 默认情况下需要添加前缀的消息被发送到 enrichLogMessage-in-0 ，经过 binder 的序列化以及反序列化之后再由 enrichLogMessage 处理，
+ * 开启 log.pipeline.fused 之后，目标为同一个应用中的 enrichLogMessage 的路由直接在进程内调用，
+ * 结果直接发送到 enrichLogMessage-out-0 的目的地，该目的地收到的消息内容与默认情况相同，
+ * 但是这些日志不再经过 enrichLogMessage-in-0 ，所以订阅同一个目的地的其他函数 (例如 aggregateLogs) 也不会再收到，
+ * 开启 aggregateLogs 时窗口统计中不包含 processLogs 在进程内添加前缀的日志
+ */
+@Component
+class LogRouter {
+
+    private final Set<LogView.Level> enrichLevels;
+
+    /**
+     * 不为 null 时表示开启了 log.pipeline.fused
+     */
+    private final String enrichedDestination;
+
+    LogRouter(@Value("${log.routing.enrich-levels:}") Set<LogView.Level> enrichLevels,
+              @Value("${log.pipeline.fused:false}") boolean fused,
+              BindingServiceProperties bindingServiceProperties) {
+        this.enrichLevels = enrichLevels.isEmpty() ? EnumSet.noneOf(LogView.Level.class) : EnumSet.copyOf(enrichLevels);
+        this.enrichedDestination = fused ? bindingServiceProperties.getBindingDestination(LogEnricherApplication.ENRICH_OUTPUT) : null;
+    }
+
+    Message<String> route(String log) {
+        boolean enrich = enrichLevels.isEmpty() ? log.length() > 10 : shouldBeEnriched(LogView.of(log), log::length);
+        return route(log, enrich, LogEnricherApplication::enrich);
+    }
+
+    /**
+     * 按照 {@link LogMessage#view()} 路由，由字节创建时直接在字节上解析，
+     * 只有无法识别级别或者需要在进程内添加前缀时才会解码，转发时原始字节被直接输出
+     */
+    Message<LogMessage> route(LogMessage log) {
+        boolean enrich = enrichLevels.isEmpty() ? log.message().length() > 10 : shouldBeEnriched(log.view(), () -> log.message().length());
+        return route(log, enrich,
+                message -> new LogMessage(LogEnricherApplication.enrich(message.message())));
+    }
+
+    private <T> Message<T> route(T log, boolean enrich, UnaryOperator<T> enricher) {
+        if (!enrich) {
+            return MessageBuilder.withPayload(log)
+                    .setHeader(LogBatches.SEND_TO_DESTINATION, LogEnricherApplication.PRETTY_DESTINATION)
+                    .build();
+        }
+        if (enrichedDestination == null) {
+            return MessageBuilder.withPayload(log)
+                    .setHeader(LogBatches.SEND_TO_DESTINATION, LogEnricherApplication.ENRICH_INPUT)
+                    .build();
+        }
+        return MessageBuilder.withPayload(enricher.apply(log))
+                .setHeader(LogBatches.SEND_TO_DESTINATION, enrichedDestination)
+                .build();
+    }
+
+    /**
+     * @param length 只有无法识别级别时才会调用
+     */
+    private boolean shouldBeEnriched(LogView view, IntSupplier length) {
+        if (view.isStructured()) {
+            return enrichLevels.contains(view.level());
+        }
+        return length.getAsInt() > 10;
+    }
+
+}
@@ -0,0 +1,317 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * 一行日志的结构化视图，只记录时间戳，级别，logger 以及正文在原始内容中的偏移量，不复制任何子串，
+ * 只有在调用 {@link #timestamp()} ，{@link #logger()} 以及 {@link #body()} 时才会复制对应的部分
+ * <p>
+ * 解析不使用正则表达式，只从头到尾扫描一遍，支持以下两种常见的格式:
+ * <pre>
+ * 2024-12-01 12:00:00.000 INFO  [main] c.j.t.LogEnricher - processing log message
+ * 2024-12-01T12:00:00.000Z  INFO 15051 --- [app] [main] c.j.t.LogEnricher : processing log message
+ * </pre>
+ * 即可选的时间戳，级别，任意个进程号，--- 以及 [...] ，logger ，分隔符 - 或者 : ，正文，
+ * 没有识别出级别的日志被视为非结构化的，此时 {@link #level()} 为 null ，正文为整行
+ * <p>
+ * 原始内容也可以是 US-ASCII ，ISO-8859-1 或者 UTF-8 编码后的字节，日志结构中的字符都是 ascii ，
+ * 而这些字符集中多字节字符的每个字节都不小于 0x80 ，所以可以直接在字节上扫描，此时的偏移量为字节偏移量，复制时再按照字符集解码，
+ * Shift_JIS ，GBK ，Big5 等字符集的第二个字节可能落在 ascii 范围内 (例如 ] 即 0x5D) ，参见 {@link #isByteScannable(Charset)}
+ */
+public final class LogView {
+
+    private static final Set<Charset> BYTE_SCANNABLE = Set.of(StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1, StandardCharsets.UTF_8);
+
+    public enum Level {
+        TRACE, DEBUG, INFO, WARN, ERROR, FATAL;
+
+        private static final Level[] VALUES = values();
+    }
+
+    private static final int ABSENT = -1;
+
+    private final CharSequence source;
+
+    private final byte[] bytes;
+
+    private final Charset charset;
+
+    private int timestampStart = ABSENT;
+
+    private int timestampEnd = ABSENT;
+
+    private Level level;
+
+    private int levelStart = ABSENT;
+
+    private int levelEnd = ABSENT;
+
+    private int loggerStart = ABSENT;
+
+    private int loggerEnd = ABSENT;
+
+    private int bodyStart;
+
+    private LogView(CharSequence source, byte[] bytes, Charset charset) {
+        this.source = source;
+        this.bytes = bytes;
+        this.charset = charset;
+        parse();
+    }
+
+    public static LogView of(String log) {
+        return new LogView(log, null, null);
+    }
+
+    /**
+     * @param charset 必须满足 {@link #isByteScannable(Charset)}
+     */
+    static LogView of(byte[] log, Charset charset) {
+        if (!isByteScannable(charset)) {
+            throw new IllegalArgumentException("Log bytes in charset " + charset + " can not be scanned directly");
+        }
+        return new LogView(new AsciiBytes(log), log, charset);
+    }
+
+    /**
+     * 与 {@link AsciiCase#isApplicable(Charset)} 相同，只接受 ascii 范围内的字节一定表示 ascii 字符的字符集，
+     * 只比较编码后的 ascii 文本是不够的，Shift_JIS 等字符集对 ascii 文本的编码相同，但是多字节字符中也会出现 ascii 范围内的字节
+     */
+    static boolean isByteScannable(Charset charset) {
+        return BYTE_SCANNABLE.contains(charset);
+    }
+
+    public boolean isStructured() {
+        return level != null;
+    }
+
+    public Level level() {
+        return level;
+    }
+
+    public int levelStart() {
+        return levelStart;
+    }
+
+    public int levelEnd() {
+        return levelEnd;
+    }
+
+    public boolean hasTimestamp() {
+        return timestampStart != ABSENT;
+    }
+
+    public int timestampStart() {
+        return timestampStart;
+    }
+
+    public int timestampEnd() {
+        return timestampEnd;
+    }
+
+    public int loggerStart() {
+        return loggerStart;
+    }
+
+    public int loggerEnd() {
+        return loggerEnd;
+    }
+
+    public int bodyStart() {
+        return bodyStart;
+    }
+
+    public int length() {
+        return source.length();
+    }
+
+    /**
+     * @return 没有时间戳时为 null
+     */
+    public String timestamp() {
+        return hasTimestamp() ? slice(timestampStart, timestampEnd) : null;
+    }
+
+    /**
+     * @return 没有 logger 时为 null
+     */
+    public String logger() {
+        return loggerStart != ABSENT ? slice(loggerStart, loggerEnd) : null;
+    }
+
+    public String body() {
+        return slice(bodyStart, source.length());
+    }
+
+    private String slice(int start, int end) {
+        if (bytes != null) {
+            return new String(bytes, start, end - start, charset);
+        }
+        return source.subSequence(start, end).toString();
+    }
+
+    private void parse() {
+        int length = source.length();
+        int pos = skipSpaces(0);
+
+        // 时间戳: 以数字开头的一个 token ，如果是 yyyy-MM-dd 并且下一个 token 也以数字开头，则两者共同组成时间戳
+        if (pos < length && isDigit(source.charAt(pos))) {
+            int end = tokenEnd(pos);
+            if (end - pos == 10 && source.charAt(pos + 4) == '-') {
+                int next = skipSpaces(end);
+                if (next < length && isDigit(source.charAt(next))) {
+                    end = tokenEnd(next);
+                }
+            }
+            timestampStart = pos;
+            timestampEnd = end;
+            pos = skipSpaces(end);
+        }
+
+        int end = tokenEnd(pos);
+        level = levelOf(pos, end);
+        if (level == null) {
+            timestampStart = timestampEnd = ABSENT;
+            bodyStart = 0;
+            return;
+        }
+        levelStart = pos;
+        levelEnd = end;
+        pos = skipSpaces(end);
+
+        // 跳过进程号，--- 以及 [...]
+        while (pos < length) {
+            char c = source.charAt(pos);
+            if (c == '[') {
+                int close = indexOf(']', pos);
+                if (close < 0) {
+                    break;
+                }
+                pos = skipSpaces(close + 1);
+            } else if (isDigit(c) || c == '-' && pos + 2 < length && source.charAt(pos + 1) == '-' && source.charAt(pos + 2) == '-') {
+                int tokenEnd = tokenEnd(pos);
+                if (!isDigits(pos, tokenEnd) && !isDashes(pos, tokenEnd)) {
+                    break;
+                }
+                pos = skipSpaces(tokenEnd);
+            } else {
+                break;
+            }
+        }
+
+        // logger 之后是分隔符 - 或者 : ，没有分隔符时视为没有 logger ，其余部分均为正文
+        int loggerEndCandidate = tokenEnd(pos);
+        int separator = skipSpaces(loggerEndCandidate);
+        if (loggerEndCandidate > pos && separator < length
+                && (source.charAt(separator) == '-' || source.charAt(separator) == ':')
+                && (separator + 1 == length || source.charAt(separator + 1) == ' ')) {
+            loggerStart = pos;
+            loggerEnd = loggerEndCandidate;
+            bodyStart = skipSpaces(separator + 1);
+        } else {
+            bodyStart = pos;
+        }
+    }
+
+    private Level levelOf(int start, int end) {
+        int length = end - start;
+        for (Level candidate : Level.VALUES) {
+            String name = candidate.name();
+            if (name.length() != length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < length && matches; i++) {
+                matches = source.charAt(start + i) == name.charAt(i);
+            }
+            if (matches) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private int skipSpaces(int pos) {
+        int length = source.length();
+        while (pos < length && source.charAt(pos) == ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private int tokenEnd(int pos) {
+        int length = source.length();
+        while (pos < length && source.charAt(pos) != ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    private int indexOf(char c, int from) {
+        int length = source.length();
+        for (int i = from; i < length; i++) {
+            if (source.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isDigits(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isDigit(source.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isDashes(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (source.charAt(i) != '-') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * 将兼容 ascii 的字节按照 ISO-8859-1 的方式视为字符，只用于扫描结构，不会被当作文本输出
+     */
+    private static final class AsciiBytes implements CharSequence {
+
+        private final byte[] bytes;
+
+        AsciiBytes(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new AsciiBytes(Arrays.copyOfRange(bytes, start, end));
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import java.util.List;
+
+/**
+ * 一个窗口关闭时输出的摘要，时间为 epoch 毫秒，窗口为左闭右开区间 [windowStart, windowEnd)
+ *
+ * @param count       窗口内的消息总数，是准确值
+ * @param topMessages 窗口内出现次数最多的消息，次数为 count-min sketch 的估计值，只会偏大
+ */
+public record LogWindowSummary(Type type, long windowStart, long windowEnd, long count, List<TopMessage> topMessages) {
+
+    public enum Type {
+        /**
+         * 首尾相接，互不重叠的窗口
+         */
+        TUMBLING,
+        /**
+         * 每隔一个 slide 输出一次，覆盖最近一个 size 的窗口
+         */
+        SLIDING
+    }
+
+    public record TopMessage(String message, long count) {
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按照处理时间统计日志的滚动窗口以及滑动窗口
+ * <p>
+ * 时间被切分为长度为 slide 的 pane ，每个 pane 只保存一个 {@link CountMinSketch} ，一个 {@link HeavyHitters} 以及消息总数，
+ * 内存是固定的，与消息的数量以及种类无关，每个 pane 结束时:
+ * <ul>
+ *     <li>合并最近 size / slide 个 pane ，输出覆盖最近一个 size 的 {@link LogWindowSummary.Type#SLIDING} 摘要</li>
+ *     <li>如果 pane 的结束时间恰好是 size 的整数倍，再输出一个 {@link LogWindowSummary.Type#TUMBLING} 摘要</li>
+ * </ul>
+ * slide 与 size 相同时只有滚动窗口，pane 按照 epoch 对齐，所以 size 必须是 slide 的整数倍
+ * <p>
+ * 窗口只在 {@link #add} 以及 {@link #advance} 被调用时才会关闭，关闭时产生的摘要由 {@link #advance} 取出，
+ * 第一条日志到达之前不会输出摘要，空闲的时间超过一个窗口时，中间完全为空的窗口也不会输出摘要
+ */
+@Component
+class LogWindows {
+
+    private final long sizeMillis;
+
+    private final long slideMillis;
+
+    private final int topN;
+
+    private final int sketchWidth;
+
+    private final int sketchDepth;
+
+    /**
+     * 最近关闭的 size / slide 个 pane 组成的环
+     */
+    private final Pane[] closed;
+
+    private int next;
+
+    private Pane current;
+
+    private long currentEnd = -1;
+
+    private final List<LogWindowSummary> pending = new ArrayList<>();
+
+    LogWindows(@Value("${log.window.size:1m}") Duration size,
+               @Value("${log.window.slide:10s}") Duration slide,
+               @Value("${log.window.top-n:10}") int topN,
+               @Value("${log.window.sketch.width:512}") int sketchWidth,
+               @Value("${log.window.sketch.depth:4}") int sketchDepth) {
+        if (slide.toMillis() < 1 || size.toMillis() % slide.toMillis() != 0) {
+            throw new IllegalArgumentException("log.window.size must be a positive multiple of log.window.slide, but were " + size + " and " + slide);
+        }
+        this.sizeMillis = size.toMillis();
+        this.slideMillis = slide.toMillis();
+        this.topN = topN;
+        this.sketchWidth = sketchWidth;
+        this.sketchDepth = sketchDepth;
+        this.closed = new Pane[(int) (sizeMillis / slideMillis)];
+        this.current = new Pane();
+    }
+
+    synchronized void add(String message, long now) {
+        roll(now);
+        current.add(message);
+    }
+
+    /**
+     * 关闭所有在 now 之前结束的 pane ，并取出到目前为止产生的摘要
+     */
+    synchronized List<LogWindowSummary> advance(long now) {
+        if (currentEnd < 0) {
+            return List.of();
+        }
+        roll(now);
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        List<LogWindowSummary> summaries = List.copyOf(pending);
+        pending.clear();
+        return summaries;
+    }
+
+    Duration getSlide() {
+        return Duration.ofMillis(slideMillis);
+    }
+
+    /**
+     * @return 从 now 到下一个 pane 结束的时间
+     */
+    Duration untilNextPane(long now) {
+        return Duration.ofMillis(slideMillis - Math.floorMod(now, slideMillis));
+    }
+
+    private void roll(long now) {
+        if (currentEnd < 0) {
+            currentEnd = alignedEnd(now);
+            return;
+        }
+
+        // 最多关闭一整个窗口的 pane ，此后窗口中只剩下空的 pane ，直接对齐到当前时间
+        for (int i = 0; i <= closed.length && now >= currentEnd; i++) {
+            closePane();
+        }
+        if (now >= currentEnd) {
+            currentEnd = alignedEnd(now);
+        }
+    }
+
+    private void closePane() {
+        Pane evicted = closed[next];
+        closed[next] = current;
+        next = (next + 1) % closed.length;
+
+        // 完全为空的窗口不输出摘要，两种摘要覆盖的是同一组 pane ，所以同时为空
+        if (windowCount() > 0) {
+            if (closed.length > 1) {
+                pending.add(summarize(LogWindowSummary.Type.SLIDING));
+            }
+            if (currentEnd % sizeMillis == 0) {
+                pending.add(summarize(LogWindowSummary.Type.TUMBLING));
+            }
+        }
+
+        current = evicted == null ? new Pane() : evicted.clear();
+        currentEnd += slideMillis;
+    }
+
+    /**
+     * 环中保存的正好是以 currentEnd 结束的窗口内的所有 pane
+     */
+    private LogWindowSummary summarize(LogWindowSummary.Type type) {
+        CountMinSketch merged = new CountMinSketch(sketchWidth, sketchDepth);
+        Set<String> candidates = new HashSet<>();
+        for (Pane pane : closed) {
+            if (pane != null && pane.count > 0) {
+                merged.merge(pane.sketch);
+                candidates.addAll(pane.hitters.getCandidates());
+            }
+        }
+        List<LogWindowSummary.TopMessage> topMessages = new ArrayList<>(topN);
+        for (Map.Entry<String, Long> entry : HeavyHitters.top(candidates, merged, topN)) {
+            topMessages.add(new LogWindowSummary.TopMessage(entry.getKey(), entry.getValue()));
+        }
+        return new LogWindowSummary(type, currentEnd - sizeMillis, currentEnd, windowCount(), topMessages);
+    }
+
+    private long windowCount() {
+        long count = 0;
+        for (Pane pane : closed) {
+            if (pane != null) {
+                count += pane.count;
+            }
+        }
+        return count;
+    }
+
+    private long alignedEnd(long now) {
+        return now - Math.floorMod(now, slideMillis) + slideMillis;
+    }
+
+    private final class Pane {
+
+        private final CountMinSketch sketch = new CountMinSketch(sketchWidth, sketchDepth);
+
+        /**
+         * 候选数为 top-n 的 4 倍，减少合并多个 pane 时漏掉真正的高频消息的可能
+         */
+        private final HeavyHitters hitters = new HeavyHitters(Math.max(1, topN * 4));
+
+        private long count;
+
+        void add(String message) {
+            sketch.add(message, 1);
+            hitters.add(message);
+            count++;
+        }
+
+        Pane clear() {
+            sketch.clear();
+            hitters.clear();
+            count = 0;
+            return this;
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 响应式版本的日志函数共用的处理流程: 先按照 {@link Overflow} 策略限制等待处理的消息数，
+ * 再在最多 concurrency 个线程上并发执行处理函数，输出的顺序与输入相同
+ * <p>
+ * 下游变慢时只会向上游请求它能处理的数量，所以内存中最多只有 buffer-size 条等待处理的消息加上 concurrency 条正在处理的消息，
+ * 超出的部分按照 {@link Overflow} 策略丢弃，或者阻塞上游
+ */
+@Component
+class ReactiveLogPipeline implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReactiveLogPipeline.class);
+
+    enum Overflow {
+        /**
+         * 缓冲最多 buffer-size 条消息，缓冲区满时丢弃新到达的消息
+         */
+        BUFFER,
+        /**
+         * 缓冲最多 buffer-size 条消息，缓冲区满时丢弃缓冲区中最早的消息，适用于只关心最新日志的场景
+         */
+        DROP_OLDEST,
+        /**
+         * 不额外缓冲，也不丢弃消息，下游的需求直接传递给上游，
+         * binder 的消费线程在没有需求时等待，spring integration 在此期间会不断重试发送，从而将背压传递给 broker
+         */
+        BLOCK
+    }
+
+    private final int concurrency;
+
+    private final int bufferSize;
+
+    private final Overflow overflow;
+
+    private final Scheduler scheduler;
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    ReactiveLogPipeline(@Value("${log.reactive.concurrency:4}") int concurrency,
+                        @Value("${log.reactive.buffer-size:256}") int bufferSize,
+                        @Value("${log.reactive.overflow:BLOCK}") Overflow overflow) {
+        if (concurrency < 1 || bufferSize < 1) {
+            throw new IllegalArgumentException("log.reactive.concurrency and log.reactive.buffer-size must be positive, but were " + concurrency + " and " + bufferSize);
+        }
+        this.concurrency = concurrency;
+        this.bufferSize = bufferSize;
+        this.overflow = overflow;
+        this.scheduler = Schedulers.newParallel("log-reactive", concurrency, true);
+    }
+
+    <T, R> Flux<R> apply(Flux<T> input, Function<T, R> function) {
+        return bounded(input)
+                // prefetch 为 1 ，每个并发槽位同时只持有一条消息
+                .flatMapSequential(item -> Mono.fromSupplier(() -> function.apply(item)).subscribeOn(scheduler), concurrency, 1);
+    }
+
+    private <T> Flux<T> bounded(Flux<T> input) {
+        return switch (overflow) {
+            case BUFFER -> input.onBackpressureBuffer(bufferSize, this::drop, BufferOverflowStrategy.DROP_LATEST);
+            case DROP_OLDEST -> input.onBackpressureBuffer(bufferSize, this::drop, BufferOverflowStrategy.DROP_OLDEST);
+            case BLOCK -> input.limitRate(bufferSize);
+        };
+    }
+
+    private void drop(Object dropped) {
+        droppedCount.increment();
+        logger.debug("Log message [{}] dropped by overflow strategy [{}].", dropped, overflow);
+    }
+
+    long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    Overflow getOverflow() {
+        return overflow;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+}
@@ -1,10 +1,20 @@
 package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
 
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.converter.AbstractMessageConverter;
 import org.springframework.stereotype.Component;
 import org.springframework.util.MimeType;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * text/plain 与 {@link LogMessage} 之间的转换，字符集取自 contentType header 中的 charset 参数，没有时使用 UTF-8
+ * <p>
+ * 输入时不会解码 payload ，而是由 {@link LogMessage} 在第一次访问时解码，
+ * 输出时如果目标字符集与 {@link LogMessage} 的原始字符集相同，则直接输出原始字节
+ */
 @Component
 class TextPlainMessageConverter extends AbstractMessageConverter {
 
@@ -20,7 +30,22 @@ class TextPlainMessageConverter extends AbstractMessageConverter {
     @Override
     protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
         Object payload = message.getPayload();
-        String text = payload instanceof String ? (String) payload : new String((byte[]) payload);
-        return new LogMessage(text);
+        if (payload instanceof String text) {
+            return new LogMessage(text);
+        }
+        if (payload instanceof byte[] bytes) {
+            return LogMessage.ofBytes(bytes, charsetOf(message.getHeaders()));
+        }
+        return null;
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        return ((LogMessage) payload).bytes(charsetOf(headers));
+    }
+
+    private Charset charsetOf(MessageHeaders headers) {
+        MimeType mimeType = getMimeType(headers);
+        return mimeType == null || mimeType.getCharset() == null ? StandardCharsets.UTF_8 : mimeType.getCharset();
     }
 }
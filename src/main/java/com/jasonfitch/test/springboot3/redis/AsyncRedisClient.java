@@ -0,0 +1,161 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * {@link SimpleRedisClient} 以及 {@link NativeJedisClient} 的异步门面，所有的调用都返回 {@link CompletableFuture}
+ * <p>
+ * 每个调用运行在一个独立的虚拟线程上，阻塞在 redis 网络 io 上的虚拟线程不会占用平台线程，所以调用方可以同时发起大量的调用，
+ * 而同时访问 redis 的调用数由 maxInFlight 限制，超出的调用会在虚拟线程中等待，不会阻塞调用方
+ * <p>
+ * 超时或者调用方取消返回的 future 时，会中断对应的虚拟线程，虚拟线程上阻塞的 socket 读写在被中断时会关闭该 socket ，
+ * 所以被中断的连接会被标记为 broken 而不是被归还到连接池中
+ */
+@Component
+public class AsyncRedisClient implements DisposableBean {
+
+    private final SimpleRedisClient simpleRedisClient;
+
+    private final NativeJedisClient nativeJedisClient;
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("redis-async-", 0).factory());
+
+    private final Semaphore inFlight;
+
+    private final int maxInFlight;
+
+    private final Duration defaultTimeout;
+
+    public AsyncRedisClient(SimpleRedisClient simpleRedisClient,
+                            NativeJedisClient nativeJedisClient,
+                            @Value("${spring.data.redis.async.max-in-flight:64}") int maxInFlight,
+                            @Value("${spring.data.redis.async.timeout:2s}") Duration defaultTimeout) {
+        this.simpleRedisClient = simpleRedisClient;
+        this.nativeJedisClient = nativeJedisClient;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight, true);
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    public CompletableFuture<Boolean> hasKey(String key) {
+        return submit(() -> simpleRedisClient.hasKey(key));
+    }
+
+    public CompletableFuture<String> get(String key) {
+        return submit(() -> simpleRedisClient.get(key));
+    }
+
+    public CompletableFuture<Void> set(String key, String value) {
+        return submit(() -> {
+            simpleRedisClient.set(key, value);
+            return null;
+        });
+    }
+
+    public CompletableFuture<List<Boolean>> hasKeys(Collection<String> keys) {
+        return submit(() -> simpleRedisClient.hasKeys(keys));
+    }
+
+    public CompletableFuture<List<String>> multiGet(Collection<String> keys) {
+        return submit(() -> simpleRedisClient.multiGet(keys));
+    }
+
+    public CompletableFuture<Void> multiSet(Map<String, String> entries, Duration ttl) {
+        return submit(() -> {
+            simpleRedisClient.multiSet(entries, ttl);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Long> delete(Collection<String> keys) {
+        return submit(() -> simpleRedisClient.delete(keys));
+    }
+
+    public <T> CompletableFuture<T> transaction(RedisTransaction.Callback<T> callback) {
+        return submit(() -> simpleRedisClient.transaction(callback));
+    }
+
+    /**
+     * 在虚拟线程中借用 database 对应连接池中的连接执行 action ，执行完毕后自动归还
+     */
+    public <T> CompletableFuture<T> withJedis(int database, Function<Jedis, T> action) {
+        return submit(() -> {
+            try (Jedis jedis = nativeJedisClient.getJedis(database)) {
+                return action.apply(jedis);
+            }
+        });
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> call) {
+        return submit(call, defaultTimeout);
+    }
+
+    /**
+     * @param timeout 包括等待 in-flight 许可的时间，超时后返回的 future 以 {@link java.util.concurrent.TimeoutException} 结束
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> call, Duration timeout) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException exception) {
+                result.completeExceptionally(new CancellationException("Interrupted while waiting for in-flight permit"));
+                return;
+            }
+            // 先释放许可再结束 future ，保证调用方观察到 future 结束时许可已经被归还
+            T value = null;
+            Throwable failure = null;
+            try {
+                value = call.get();
+            } catch (Throwable throwable) {
+                failure = throwable;
+            } finally {
+                inFlight.release();
+            }
+            if (failure == null) {
+                result.complete(value);
+            } else {
+                result.completeExceptionally(failure);
+            }
+        });
+
+        // 超时或者被取消时中断虚拟线程，释放其占用的 in-flight 许可以及连接
+        result.whenComplete((value, throwable) -> {
+            if (throwable != null) {
+                task.cancel(true);
+            }
+        });
+        return result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getInFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import redis.clients.jedis.CommandObject;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.ConnectionPool;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * jedis 驱动下的 redis cluster 不支持 pipeline ，{@link RedisClusterConnection#openPipeline()} 会直接抛出异常，
+ * 这里按照 key 的 slot 所在的 master 节点对命令分组，每个节点使用一次 pipeline 往返
+ * <p>
+ * 所有节点的命令先全部发送出去，再依次读取各个节点的回复，所以各个节点是并行处理的，一批命令的耗时约等于最慢节点的一次往返，
+ * 而不是节点数次往返
+ */
+final class ClusterPipeline {
+
+    private ClusterPipeline() {
+    }
+
+    /**
+     * @param command 每个 key 对应的命令，其中只能包含这一个 key ，跨 slot 的多 key 命令在 cluster 中是不允许的
+     * @return 与 keys 的顺序一一对应的结果
+     */
+    static List<Object> execute(RedisClusterConnection clusterConnection, List<String> keys, Function<String, CommandObject<?>> command) {
+        if (!(clusterConnection.getNativeConnection() instanceof JedisCluster cluster)) {
+            throw new IllegalStateException("ClusterPipeline requires a JedisCluster, but was " + clusterConnection.getNativeConnection());
+        }
+
+        // clusterGetNodeForKey 使用的是 spring 缓存的集群拓扑，不会为每个 key 访问一次集群
+        Map<String, List<Integer>> indexesByNode = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            RedisClusterNode node = clusterConnection.clusterGetNodeForKey(keys.get(i).getBytes(StandardCharsets.UTF_8));
+            indexesByNode.computeIfAbsent(node.getHost() + ":" + node.getPort(), nodeKey -> new ArrayList<>()).add(i);
+        }
+
+        return execute(cluster.getClusterNodes(), indexesByNode, keys, command);
+    }
+
+    /**
+     * @param pools         以 host:port 为 key 的各个节点的连接池
+     * @param indexesByNode 每个节点上的 key 在 keys 中的下标
+     */
+    static List<Object> execute(Map<String, ConnectionPool> pools, Map<String, List<Integer>> indexesByNode,
+                                List<String> keys, Function<String, CommandObject<?>> command) {
+        List<Connection> connections = new ArrayList<>(indexesByNode.size());
+        CommandObject<?>[] commandObjects = new CommandObject<?>[keys.size()];
+        Object[] results = new Object[keys.size()];
+        boolean drained = false;
+        try {
+            for (Map.Entry<String, List<Integer>> entry : indexesByNode.entrySet()) {
+                ConnectionPool pool = pools.get(entry.getKey());
+                if (pool == null) {
+                    throw new IllegalStateException("No connection pool for cluster node [" + entry.getKey() + "], known nodes " + pools.keySet());
+                }
+                Connection connection = pool.getResource();
+                connections.add(connection);
+                for (int index : entry.getValue()) {
+                    commandObjects[index] = command.apply(keys.get(index));
+                    connection.sendCommand(commandObjects[index].getArguments());
+                }
+                // getMany 会先 flush 输出缓冲区，数量为 0 时只 flush 不读取，保证该节点的命令在读取其他节点的回复之前已经发送出去
+                connection.getMany(0);
+            }
+
+            List<List<Object>> repliesByNode = new ArrayList<>(connections.size());
+            int nodeIndex = 0;
+            for (List<Integer> indexes : indexesByNode.values()) {
+                repliesByNode.add(connections.get(nodeIndex++).getMany(indexes.size()));
+            }
+            drained = true;
+
+            JedisDataException error = null;
+            nodeIndex = 0;
+            for (List<Integer> indexes : indexesByNode.values()) {
+                List<Object> replies = repliesByNode.get(nodeIndex++);
+                for (int i = 0; i < indexes.size(); i++) {
+                    int index = indexes.get(i);
+                    Object reply = replies.get(i);
+                    if (reply instanceof JedisDataException exception) {
+                        error = error == null ? exception : error;
+                    } else {
+                        results[index] = commandObjects[index].getBuilder().build(reply);
+                    }
+                }
+            }
+            if (error != null) {
+                // MOVED 以及 ASK 说明集群正在迁移 slot ，拓扑缓存过期之后重试即可
+                throw new RedisSystemException("Cluster pipeline failed: " + error.getMessage(), error);
+            }
+        } finally {
+            for (Connection connection : connections) {
+                // 没有读完所有回复的连接中还残留着回复，归还之后会被下一个借用者读到，所以作为损坏的连接销毁
+                if (!drained) {
+                    connection.setBroken();
+                }
+                connection.close();
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+}
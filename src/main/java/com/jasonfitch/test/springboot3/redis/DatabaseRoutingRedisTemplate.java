@@ -0,0 +1,89 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按照 database 编号路由的 redis template
+ * <p>
+ * RedisTemplateSelectTest 中在回调内调用 select 切换 database 的方式，每次调用都需要额外的一次 SELECT 往返，
+ * 而且如果忘记切换回来，连接会带着错误的 database 被归还到连接池中。
+ * 这里为每个 database 维护一个独立的 {@link JedisConnectionFactory} ，其连接池中的连接在创建时就已经选择好了对应的 database ，
+ * 所以调用时不再需要 SELECT ，而连接被借出时 {@link redis.clients.jedis.JedisFactory#activateObject} 会校验并恢复其 database ，
+ * 保证了即使借用者在回调中调用了 select ，下一个借用者拿到的连接的 database 也不会被污染
+ * <p>
+ * 使用 lettuce 驱动时，每个 database 对应一个独立的 {@link LettuceConnectionFactory} ，其共享的多路复用连接同样在建立时就选择好了 database
+ */
+@Component
+public class DatabaseRoutingRedisTemplate implements DisposableBean {
+
+    private final RedisConnectionFactory defaultConnectionFactory;
+
+    private final Map<Integer, RedisConnectionFactory> connectionFactories = new ConcurrentHashMap<>();
+
+    private final Map<Integer, StringRedisTemplate> templates = new ConcurrentHashMap<>();
+
+    public DatabaseRoutingRedisTemplate(RedisConnectionFactory connectionFactory) {
+        if (!(connectionFactory instanceof JedisConnectionFactory) && !(connectionFactory instanceof LettuceConnectionFactory)) {
+            throw new IllegalStateException("DatabaseRoutingRedisTemplate requires JedisConnectionFactory or LettuceConnectionFactory, but was " + connectionFactory);
+        }
+        this.defaultConnectionFactory = connectionFactory;
+    }
+
+    /**
+     * @throws IllegalStateException redis cluster 只支持 database 0 ，此时按照 database 路由没有意义
+     */
+    public StringRedisTemplate forDatabase(int database) {
+        if (RedisConnectionFactories.isClusterAware(defaultConnectionFactory)) {
+            throw new IllegalStateException("Redis cluster only supports database 0, DatabaseRoutingRedisTemplate is useless for it");
+        }
+        return templates.computeIfAbsent(database, this::createTemplate);
+    }
+
+    public <T> T execute(int database, RedisCallback<T> action) {
+        return forDatabase(database).execute(action);
+    }
+
+    public <T> T execute(int database, SessionCallback<T> session) {
+        return forDatabase(database).execute(session);
+    }
+
+    public ValueOperations<String, String> opsForValue(int database) {
+        return forDatabase(database).opsForValue();
+    }
+
+    public Map<Integer, RedisConnectionFactory> getConnectionFactories() {
+        return connectionFactories;
+    }
+
+    private StringRedisTemplate createTemplate(int database) {
+        RedisConnectionFactory connectionFactory = connectionFactories.computeIfAbsent(database, this::createConnectionFactory);
+        return new StringRedisTemplate(connectionFactory);
+    }
+
+    private RedisConnectionFactory createConnectionFactory(int database) {
+        RedisStandaloneConfiguration defaultConfiguration = RedisConnectionFactories.standaloneConfigurationOf(defaultConnectionFactory);
+        return RedisConnectionFactories.copyOf(defaultConnectionFactory, defaultConfiguration.getHostName(), defaultConfiguration.getPort(), database);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        templates.clear();
+        for (RedisConnectionFactory connectionFactory : connectionFactories.values()) {
+            ((DisposableBean) connectionFactory).destroy();
+        }
+        connectionFactories.clear();
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectState;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import redis.clients.jedis.CommandObject;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.JedisFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 创建带有命令耗时统计的 {@link Jedis} ，其余的连接池行为，例如借出时校验并恢复 database ，与 {@link JedisFactory} 一致
+ * <p>
+ * {@link Jedis} 中的普通命令都是通过 {@link Connection#executeCommand(CommandObject)} 执行的，所以只需要在这里计时，
+ * 而 pipeline 以及事务中的命令是分开发送和读取的，不会被单独计时
+ * <p>
+ * 同时记录由它创建的所有连接，用于找出借出之后长时间没有归还的连接
+ */
+class InstrumentedJedisFactory extends JedisFactory {
+
+    private final HostAndPort hostAndPort;
+
+    private final JedisClientConfig clientConfig;
+
+    private final RedisMetrics metrics;
+
+    /**
+     * 由该工厂创建且尚未销毁的连接，value 为最近一次报告泄漏时该连接的借出时间，同一次借出只报告一次
+     */
+    private final Map<PooledObject<Jedis>, Instant> objects = new ConcurrentHashMap<>();
+
+    InstrumentedJedisFactory(HostAndPort hostAndPort, JedisClientConfig clientConfig, RedisMetrics metrics) {
+        super(hostAndPort, clientConfig);
+        this.hostAndPort = hostAndPort;
+        this.clientConfig = clientConfig;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public PooledObject<Jedis> makeObject() {
+        PooledObject<Jedis> object = new DefaultPooledObject<>(new Jedis(new InstrumentedConnection(hostAndPort, clientConfig, metrics)));
+        objects.put(object, Instant.EPOCH);
+        return object;
+    }
+
+    @Override
+    public void destroyObject(PooledObject<Jedis> pooledJedis) throws Exception {
+        objects.remove(pooledJedis);
+        super.destroyObject(pooledJedis);
+    }
+
+    /**
+     * 找出借出时间超过 threshold 仍未归还，并且本次借出还没有被报告过的连接，只报告而不回收，连接仍然属于借用者
+     */
+    List<PooledObject<Jedis>> findLeaks(Duration threshold) {
+        Instant deadline = Instant.now().minus(threshold);
+        List<PooledObject<Jedis>> leaks = new ArrayList<>();
+        for (Map.Entry<PooledObject<Jedis>, Instant> entry : objects.entrySet()) {
+            PooledObject<Jedis> object = entry.getKey();
+            Instant borrowed = object.getLastBorrowInstant();
+            if (object.getState() == PooledObjectState.ALLOCATED && borrowed.isBefore(deadline) && !borrowed.equals(entry.getValue())) {
+                entry.setValue(borrowed);
+                leaks.add(object);
+            }
+        }
+        return leaks;
+    }
+
+    HostAndPort getHostAndPort() {
+        return hostAndPort;
+    }
+
+    int getDatabase() {
+        return clientConfig.getDatabase();
+    }
+
+    static class InstrumentedConnection extends Connection {
+
+        private final int database;
+
+        private final RedisMetrics metrics;
+
+        InstrumentedConnection(HostAndPort hostAndPort, JedisClientConfig clientConfig, RedisMetrics metrics) {
+            super(hostAndPort, clientConfig);
+            this.database = clientConfig.getDatabase();
+            this.metrics = metrics;
+        }
+
+        @Override
+        public <T> T executeCommand(CommandObject<T> commandObject) {
+            String command = String.valueOf(commandObject.getArguments().getCommand());
+            return metrics.record(RedisMetrics.CLIENT_NATIVE, command, database, () -> super.executeCommand(commandObject));
+        }
+    }
+
+}
@@ -1,12 +1,36 @@
 package com.jasonfitch.test.springboot3.redis;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.AbandonedConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class NativeJedisClient {
 
+    private static final Logger logger = LoggerFactory.getLogger(NativeJedisClient.class);
+
     @Value("${spring.data.redis.host}")
     private String host;
 
@@ -22,9 +46,89 @@ public class NativeJedisClient {
     @Value("${spring.data.redis.password}")
     private String password;
 
+    @Value("${spring.data.redis.timeout:2s}")
+    private Duration timeout;
+
+    @Value("${spring.data.redis.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${spring.data.redis.native-jedis.pool.enabled:true}")
+    private boolean poolEnabled;
+
+    @Value("${spring.data.redis.native-jedis.pool.max-active:8}")
+    private int poolMaxActive;
+
+    @Value("${spring.data.redis.native-jedis.pool.max-idle:8}")
+    private int poolMaxIdle;
+
+    @Value("${spring.data.redis.native-jedis.pool.min-idle:0}")
+    private int poolMinIdle;
+
+    /**
+     * 借用连接时的最大等待时间，负数表示一直等待，与 spring boot 中该属性的语义一致
+     */
+    @Value("${spring.data.redis.native-jedis.pool.max-wait:-1ms}")
+    private Duration poolMaxWait;
+
+    @Value("${spring.data.redis.native-jedis.pool.time-between-eviction-runs:30s}")
+    private Duration poolTimeBetweenEvictionRuns;
+
+    @Value("${spring.data.redis.native-jedis.pool.min-evictable-idle-time:60s}")
+    private Duration poolMinEvictableIdleTime;
+
+    /**
+     * 连接被借出超过该时间仍未归还时视为泄漏，打印借出时的调用栈，0 表示关闭泄漏检测，
+     * 检测每隔 time-between-eviction-runs 执行一次，所以其粒度是 time-between-eviction-runs
+     */
+    @Value("${spring.data.redis.native-jedis.pool.leak-detection-threshold:0s}")
+    private Duration poolLeakDetectionThreshold;
+
+    /**
+     * 是否由驱逐线程强制关闭并回收泄漏的连接，默认只报告，因为借用者可能只是执行得慢，仍然在使用该连接
+     */
+    @Value("${spring.data.redis.native-jedis.pool.leak-reclaim:false}")
+    private boolean poolLeakReclaim;
+
+    @Autowired
+    private RedisMetrics metrics;
+
+    @Autowired
+    private RedisReadRouter readRouter;
+
+    private final Map<Integer, JedisPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * replica 节点上默认 database 的连接池
+     */
+    private final Map<HostAndPort, JedisPool> replicaPools = new ConcurrentHashMap<>();
+
+    /**
+     * 开启了泄漏检测的连接池以及其对应的 factory ，只包含已经放入 {@link #pools} 或者 {@link #replicaPools} 的连接池
+     */
+    private final Map<JedisPool, InstrumentedJedisFactory> factories = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService leakDetector;
+
+    @PostConstruct
+    public void init() {
+        if (!isLeakDetectionEnabled()) {
+            return;
+        }
+        long periodMillis = Math.max(poolTimeBetweenEvictionRuns.toMillis(), 1000L);
+        leakDetector = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("jedis-leak-detector").daemon().factory());
+        leakDetector.scheduleWithFixedDelay(this::detectLeaks, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
     public Jedis initNewJedis() {
         System.out.println(this);
 
+        return newJedis();
+    }
+
+    /**
+     * 新建一个完成了 AUTH 和 SELECT 的连接，与 {@link #initNewJedis()} 相同，只是不打印配置，用于需要频繁新建连接的场景
+     */
+    public Jedis newJedis() {
         Jedis jedis = new Jedis(host, port);
 
         if (!isBlank(password)) {
@@ -41,6 +145,175 @@ public class NativeJedisClient {
         return jedis;
     }
 
+    /**
+     * 从默认 database 的连接池中借用一个已经完成 AUTH 和 SELECT 的连接，使用完毕后调用 {@link Jedis#close()} 归还
+     */
+    public Jedis getJedis() {
+        return getJedis(database);
+    }
+
+    /**
+     * 每个 database 对应一个独立的连接池，所以借出的连接总是已经选择好了对应的 database，
+     * 即使借用者在使用期间调用了 select ，归还后再次借出时 {@link redis.clients.jedis.JedisFactory#activateObject} 也会将其重新选择回来
+     */
+    public Jedis getJedis(int database) {
+        if (!poolEnabled) {
+            Jedis jedis = newJedis();
+            if (jedis.getDB() != database) {
+                jedis.select(database);
+            }
+            return jedis;
+        }
+        return getPool(database).getResource();
+    }
+
+    /**
+     * 按照 {@link RedisReadRouter} 的策略选择一个节点，从该节点上默认 database 的连接池中借用连接，只能用于执行读命令，
+     * replica 是只读的，在其上执行写命令会得到 READONLY 错误
+     */
+    public Jedis getReadJedis() {
+        RedisReadRouter.Node node = readRouter.selectReadNode();
+        if (node.isPrimary() || !poolEnabled) {
+            return getJedis();
+        }
+        return getPool(replicaPools, node.getAddress(), node.getAddress(), database).getResource();
+    }
+
+    public JedisPool getPool(int database) {
+        return getPool(pools, database, new HostAndPort(host, port), database);
+    }
+
+    /**
+     * 预热连接池需要访问网络，所以不在 {@link Map#computeIfAbsent} 中创建，以免阻塞同一个桶上的其他 key ，
+     * 并发创建时只保留先放入的连接池，其余的关闭
+     */
+    private <K> JedisPool getPool(Map<K, JedisPool> pools, K key, HostAndPort address, int database) {
+        JedisPool pool = pools.get(key);
+        if (pool != null) {
+            return pool;
+        }
+        JedisPool created = createPool(address, database);
+        pool = pools.putIfAbsent(key, created);
+        if (pool != null) {
+            // 输掉竞争的连接池不再检测泄漏，否则它的 factory 会一直留在 factories 中
+            factories.remove(created);
+            created.close();
+            return pool;
+        }
+        if (isPrimary(address)) {
+            // 连接池指标只区分 database ，replica 的连接池不重复注册
+            metrics.bindPool(RedisMetrics.CLIENT_NATIVE, database, created);
+        }
+        return created;
+    }
+
+    public Map<Integer, JedisPool> getPools() {
+        return pools;
+    }
+
+    public Map<HostAndPort, JedisPool> getReplicaPools() {
+        return replicaPools;
+    }
+
+    private JedisPool createPool(HostAndPort address, int database) {
+        JedisClientConfig clientConfig = DefaultJedisClientConfig.builder()
+                .user(isBlank(username) ? null : username)
+                .password(isBlank(password) ? null : password)
+                .database(database)
+                .connectionTimeoutMillis((int) connectTimeout.toMillis())
+                .socketTimeoutMillis((int) timeout.toMillis())
+                .build();
+
+        // JedisPoolConfig 默认开启了 testWhileIdle ，驱逐线程会对空闲连接执行 PING ，从而剔除已经断开的连接
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(poolMaxActive);
+        poolConfig.setMaxIdle(poolMaxIdle);
+        poolConfig.setMinIdle(poolMinIdle);
+        poolConfig.setMaxWait(poolMaxWait);
+        poolConfig.setTimeBetweenEvictionRuns(poolTimeBetweenEvictionRuns);
+        poolConfig.setMinEvictableIdleDuration(poolMinEvictableIdleTime);
+        poolConfig.setJmxEnabled(false);
+
+        // 连接池中的连接会统计每个命令的耗时
+        InstrumentedJedisFactory factory = new InstrumentedJedisFactory(address, clientConfig, metrics);
+        JedisPool pool = new JedisPool(poolConfig, factory);
+        if (isLeakDetectionEnabled()) {
+            // logAbandoned 使连接池在借出时记录调用栈，只有开启 leak-reclaim 时才由驱逐线程回收
+            AbandonedConfig abandonedConfig = new AbandonedConfig();
+            abandonedConfig.setLogAbandoned(true);
+            abandonedConfig.setRemoveAbandonedOnMaintenance(poolLeakReclaim);
+            abandonedConfig.setRemoveAbandonedTimeout(poolLeakDetectionThreshold);
+            abandonedConfig.setLogWriter(new PrintWriter(new LeakLogWriter(database), true));
+            pool.setAbandonedConfig(abandonedConfig);
+            factories.put(pool, factory);
+        }
+
+        // 预热连接，避免第一批请求承担建立连接，AUTH 和 SELECT 的开销
+        try {
+            pool.preparePool();
+        } catch (Exception exception) {
+            logger.warn("Failed to prepare jedis pool for [{}] database [{}].", address, database, exception);
+        }
+
+        logger.info("Created jedis pool for [{}] database [{}] with config [{}].", address, database, poolConfig);
+        return pool;
+    }
+
+    /**
+     * 报告所有连接池中借出时间超过 leak-detection-threshold 仍未归还的连接，每次借出只报告一次
+     *
+     * @return 本次报告的连接数
+     */
+    int detectLeaks() {
+        int count = 0;
+        for (InstrumentedJedisFactory factory : factories.values()) {
+            count += detectLeaks(factory);
+        }
+        return count;
+    }
+
+    /**
+     * 只报告指定连接池中的泄漏
+     *
+     * @return 本次报告的连接数，连接池没有开启泄漏检测时为 0
+     */
+    int detectLeaks(JedisPool pool) {
+        InstrumentedJedisFactory factory = factories.get(pool);
+        return factory == null ? 0 : detectLeaks(factory);
+    }
+
+    private int detectLeaks(InstrumentedJedisFactory factory) {
+        int count = 0;
+        for (PooledObject<Jedis> leak : factory.findLeaks(poolLeakDetectionThreshold)) {
+            StringWriter borrowedBy = new StringWriter();
+            leak.printStackTrace(new PrintWriter(borrowedBy));
+            logger.warn("Jedis connection leak detected in pool for [{}] database [{}], borrowed at [{}] and not returned for more than [{}]: {}",
+                    factory.getHostAndPort(), factory.getDatabase(), leak.getLastBorrowInstant(), poolLeakDetectionThreshold, borrowedBy);
+            count++;
+        }
+        return count;
+    }
+
+    private boolean isLeakDetectionEnabled() {
+        return poolEnabled && !poolLeakDetectionThreshold.isZero() && !poolLeakDetectionThreshold.isNegative();
+    }
+
+    private boolean isPrimary(HostAndPort address) {
+        return address.getHost().equals(host) && address.getPort() == port;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (leakDetector != null) {
+            leakDetector.shutdownNow();
+        }
+        pools.values().forEach(JedisPool::close);
+        pools.clear();
+        replicaPools.values().forEach(JedisPool::close);
+        replicaPools.clear();
+        factories.clear();
+    }
+
     private boolean isBlank(String str) {
         return str == null || str.trim().isEmpty();
     }
@@ -85,6 +358,30 @@ public class NativeJedisClient {
         this.password = password;
     }
 
+    public boolean isPoolEnabled() {
+        return poolEnabled;
+    }
+
+    public void setPoolEnabled(boolean poolEnabled) {
+        this.poolEnabled = poolEnabled;
+    }
+
+    public Duration getPoolLeakDetectionThreshold() {
+        return poolLeakDetectionThreshold;
+    }
+
+    public void setPoolLeakDetectionThreshold(Duration poolLeakDetectionThreshold) {
+        this.poolLeakDetectionThreshold = poolLeakDetectionThreshold;
+    }
+
+    public boolean isPoolLeakReclaim() {
+        return poolLeakReclaim;
+    }
+
+    public void setPoolLeakReclaim(boolean poolLeakReclaim) {
+        this.poolLeakReclaim = poolLeakReclaim;
+    }
+
     @Override
     public String toString() {
         return "NativeJedisClient{" +
@@ -92,8 +389,41 @@ public class NativeJedisClient {
                 ", port=" + port +
                 ", database=" + database +
                 ", username='" + username + '\'' +
-                ", password='" + password + '\'' +
+                ", password='" + (isBlank(password) ? password : "******") + '\'' +
+                ", poolEnabled=" + poolEnabled +
                 '}';
     }
 
+    /**
+     * 开启 leak-reclaim 时 commons-pool2 通过 {@link PrintWriter} 输出被回收连接的借出调用栈，这里将其转发到日志中
+     */
+    private static class LeakLogWriter extends Writer {
+
+        private final int database;
+
+        private final StringBuilder buffer = new StringBuilder();
+
+        private LeakLogWriter(int database) {
+            this.database = database;
+        }
+
+        @Override
+        public synchronized void write(char[] chars, int offset, int length) {
+            buffer.append(chars, offset, length);
+        }
+
+        @Override
+        public synchronized void flush() {
+            if (!buffer.isEmpty()) {
+                logger.warn("Jedis connection leak reclaimed in pool for database [{}]: {}", database, buffer);
+                buffer.setLength(0);
+            }
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+
 }
@@ -0,0 +1,70 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+/**
+ * 同时兼容 jedis 以及 lettuce 两种驱动的连接工厂辅助方法
+ */
+final class RedisConnectionFactories {
+
+    private RedisConnectionFactories() {
+    }
+
+    static int databaseOf(RedisConnectionFactory connectionFactory) {
+        if (connectionFactory instanceof JedisConnectionFactory jedisConnectionFactory) {
+            return jedisConnectionFactory.getDatabase();
+        }
+        if (connectionFactory instanceof LettuceConnectionFactory lettuceConnectionFactory) {
+            return lettuceConnectionFactory.getDatabase();
+        }
+        return 0;
+    }
+
+    static boolean isClusterAware(RedisConnectionFactory connectionFactory) {
+        if (connectionFactory instanceof JedisConnectionFactory jedisConnectionFactory) {
+            return jedisConnectionFactory.isRedisClusterAware();
+        }
+        if (connectionFactory instanceof LettuceConnectionFactory lettuceConnectionFactory) {
+            return lettuceConnectionFactory.isClusterAware();
+        }
+        return false;
+    }
+
+    static RedisStandaloneConfiguration standaloneConfigurationOf(RedisConnectionFactory connectionFactory) {
+        if (connectionFactory instanceof JedisConnectionFactory jedisConnectionFactory) {
+            return jedisConnectionFactory.getStandaloneConfiguration();
+        }
+        if (connectionFactory instanceof LettuceConnectionFactory lettuceConnectionFactory) {
+            return lettuceConnectionFactory.getStandaloneConfiguration();
+        }
+        throw new IllegalStateException("Requires JedisConnectionFactory or LettuceConnectionFactory, but was " + connectionFactory);
+    }
+
+    /**
+     * 创建一个指向 host:port 以及 database 的独立连接工厂，并且已经启动，
+     * 复用 template 的客户端配置，包括连接池，超时以及 ssl 等配置，以及认证信息
+     */
+    static RedisConnectionFactory copyOf(RedisConnectionFactory template, String host, int port, int database) {
+        RedisStandaloneConfiguration defaultConfiguration = standaloneConfigurationOf(template);
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(host, port);
+        configuration.setUsername(defaultConfiguration.getUsername());
+        configuration.setPassword(defaultConfiguration.getPassword());
+        configuration.setDatabase(database);
+
+        if (template instanceof LettuceConnectionFactory lettuceConnectionFactory) {
+            LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration, lettuceConnectionFactory.getClientConfiguration());
+            connectionFactory.afterPropertiesSet();
+            connectionFactory.start();
+            return connectionFactory;
+        }
+
+        JedisConnectionFactory connectionFactory = new JedisConnectionFactory(configuration, ((JedisConnectionFactory) template).getClientConfiguration());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        return connectionFactory;
+    }
+
+}
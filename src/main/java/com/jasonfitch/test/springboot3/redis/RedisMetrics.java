@@ -0,0 +1,243 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * redis 访问层的 micrometer 指标，通过 actuator 的 /actuator/metrics 导出
+ * <ul>
+ *     <li>redis.command : 每个命令的耗时，带有直方图以及分位数，tag 为 client 和 command</li>
+ *     <li>redis.command.database : 每个 database 的命令数，tag 为 client ，database 和 outcome</li>
+ *     <li>redis.command.slow : 超过 slowCommandThreshold 的命令数，同时会记录 warn 日志</li>
+ *     <li>redis.pool.active / idle / pending / wait : 连接池的借出数，空闲数，等待借用的线程数以及平均等待时间</li>
+ * </ul>
+ * client 为 simple 时 command 是 {@link SimpleRedisClient} 的操作名，一次 pipeline 或者事务作为一个整体计时，
+ * client 为 native 时 command 是 {@link NativeJedisClient} 连接上执行的 redis 命令名
+ * <p>
+ * client 为 template 的连接池指标在 jedis 和 lettuce 两种驱动下都会注册，lettuce 只有开启了连接池时才有，
+ * 并且 lettuce 的连接池只用于 pipeline 以及事务这类独占连接的操作，共享的多路复用连接不在统计之内
+ */
+@Component
+public class RedisMetrics {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisMetrics.class);
+
+    public static final String CLIENT_SIMPLE = "simple";
+
+    public static final String CLIENT_NATIVE = "native";
+
+    public static final String CLIENT_TEMPLATE = "template";
+
+    private final MeterRegistry registry;
+
+    private final Duration slowCommandThreshold;
+
+    private final double[] percentiles;
+
+    /**
+     * 缓存已经注册的 meter ，避免每次记录时都构造 tag 并在 registry 中查找
+     */
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public RedisMetrics(MeterRegistry registry,
+                        @Value("${spring.data.redis.metrics.slow-command-threshold:100ms}") Duration slowCommandThreshold,
+                        @Value("${spring.data.redis.metrics.percentiles:0.5,0.9,0.99}") double[] percentiles,
+                        ObjectProvider<RedisConnectionFactory> connectionFactoryProvider) {
+        this.registry = registry;
+        this.slowCommandThreshold = slowCommandThreshold;
+        this.percentiles = percentiles;
+
+        RedisConnectionFactory connectionFactory = connectionFactoryProvider.getIfAvailable();
+        if (connectionFactory instanceof JedisConnectionFactory jedisConnectionFactory) {
+            bindConnectionFactoryPool(jedisConnectionFactory);
+        } else if (connectionFactory instanceof LettuceConnectionFactory lettuceConnectionFactory) {
+            bindConnectionFactoryPool(lettuceConnectionFactory);
+        }
+    }
+
+    public <T> T record(String client, String command, int database, Supplier<T> call) {
+        long start = System.nanoTime();
+        Throwable error = null;
+        try {
+            return call.get();
+        } catch (RuntimeException | Error throwable) {
+            error = throwable;
+            throw throwable;
+        } finally {
+            record(client, command, database, System.nanoTime() - start, error);
+        }
+    }
+
+    public void record(String client, String command, int database, long nanos, Throwable error) {
+        timers.computeIfAbsent(client + ':' + command, unused -> Timer.builder("redis.command")
+                        .description("Redis command latency")
+                        .tags("client", client, "command", command)
+                        .publishPercentiles(percentiles)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+
+        String outcome = error == null ? "success" : "error";
+        counter("redis.command.database", Tags.of("client", client, "database", String.valueOf(database), "outcome", outcome)).increment();
+
+        if (nanos > slowCommandThreshold.toNanos()) {
+            counter("redis.command.slow", Tags.of("client", client, "command", command)).increment();
+            logger.warn("Slow redis command [{}] from [{}] client on database [{}] took [{}] ms, threshold is [{}] ms.",
+                    command, client, database, TimeUnit.NANOSECONDS.toMillis(nanos), slowCommandThreshold.toMillis());
+        }
+    }
+
+    /**
+     * 注册连接池的 gauge ，gauge 只持有 pool 的弱引用，所以 pool 被关闭回收后不会造成泄露
+     */
+    public void bindPool(String client, int database, GenericObjectPool<?> pool) {
+        bindPool(client, database, pool, GenericObjectPool::getNumActive, GenericObjectPool::getNumIdle,
+                GenericObjectPool::getNumWaiters, GenericObjectPool::getMeanBorrowWaitTimeMillis);
+    }
+
+    /**
+     * spring 的 {@link JedisConnectionFactory} 没有暴露其内部的连接池，并且连接池是在 start 时才创建的，
+     * 所以这里在每次采集时通过反射读取，连接池不存在时 gauge 的值为 NaN
+     */
+    private void bindConnectionFactoryPool(JedisConnectionFactory connectionFactory) {
+        Field poolField = ReflectionUtils.findField(JedisConnectionFactory.class, "pool");
+        if (poolField == null) {
+            logger.info("Can not find pool field of [{}], skip binding pool metrics.", connectionFactory);
+            return;
+        }
+        ReflectionUtils.makeAccessible(poolField);
+
+        bindPool(CLIENT_TEMPLATE, connectionFactory.getDatabase(), connectionFactory,
+                factory -> poolMetric(poolField, factory, GenericObjectPool::getNumActive),
+                factory -> poolMetric(poolField, factory, GenericObjectPool::getNumIdle),
+                factory -> poolMetric(poolField, factory, GenericObjectPool::getNumWaiters),
+                factory -> poolMetric(poolField, factory, GenericObjectPool::getMeanBorrowWaitTimeMillis));
+    }
+
+    private static double poolMetric(Field poolField, JedisConnectionFactory factory, ToDoubleFunction<GenericObjectPool<?>> metric) {
+        Object pool = ReflectionUtils.getField(poolField, factory);
+        return pool instanceof GenericObjectPool<?> genericObjectPool ? metric.applyAsDouble(genericObjectPool) : Double.NaN;
+    }
+
+    /**
+     * spring 的 {@link LettuceConnectionFactory} 同样没有暴露其内部的连接池，连接池在 LettucePoolingConnectionProvider 中，
+     * 按照连接的类型各有一个，并且在第一次借用时才创建，所以这里在每次采集时通过反射读取，
+     * 借出数，空闲数以及等待数为所有连接池之和，等待时间取其中的最大值，读取不到连接池时 gauge 的值为 NaN
+     */
+    private void bindConnectionFactoryPool(LettuceConnectionFactory connectionFactory) {
+        if (!(connectionFactory.getClientConfiguration() instanceof LettucePoolingClientConfiguration)) {
+            logger.info("Lettuce connection pool of [{}] is not enabled, skip binding pool metrics.", connectionFactory);
+            return;
+        }
+        Field providerField = ReflectionUtils.findField(LettuceConnectionFactory.class, "connectionProvider");
+        if (providerField == null) {
+            logger.info("Can not find connectionProvider field of [{}], skip binding pool metrics.", connectionFactory);
+            return;
+        }
+        ReflectionUtils.makeAccessible(providerField);
+
+        bindPool(CLIENT_TEMPLATE, connectionFactory.getDatabase(), connectionFactory,
+                factory -> lettucePoolMetric(providerField, factory, GenericObjectPool::getNumActive, Double::sum),
+                factory -> lettucePoolMetric(providerField, factory, GenericObjectPool::getNumIdle, Double::sum),
+                factory -> lettucePoolMetric(providerField, factory, GenericObjectPool::getNumWaiters, Double::sum),
+                factory -> lettucePoolMetric(providerField, factory, GenericObjectPool::getMeanBorrowWaitTimeMillis, Math::max));
+    }
+
+    private static double lettucePoolMetric(Field providerField, LettuceConnectionFactory factory,
+                                            ToDoubleFunction<GenericObjectPool<?>> metric, DoubleBinaryOperator combiner) {
+        Collection<?> pools = lettucePools(ReflectionUtils.getField(providerField, factory));
+        if (pools == null) {
+            return Double.NaN;
+        }
+        double value = 0;
+        for (Object pool : pools) {
+            if (pool instanceof GenericObjectPool<?> genericObjectPool) {
+                value = combiner.applyAsDouble(value, metric.applyAsDouble(genericObjectPool));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return connection provider 中的连接池，factory 还没有 start 或者 spring 的内部结构发生了变化时为 null
+     */
+    private static Collection<?> lettucePools(Object provider) {
+        // start 之后 connection provider 会被包装一层用于转换异常的 ExceptionTranslatingConnectionProvider
+        for (String fieldName : List.of("delegate", "pools")) {
+            if (provider == null) {
+                return null;
+            }
+            Field field = ReflectionUtils.findField(provider.getClass(), fieldName);
+            if (field == null) {
+                continue;
+            }
+            ReflectionUtils.makeAccessible(field);
+            provider = ReflectionUtils.getField(field, provider);
+        }
+        return provider instanceof Map<?, ?> pools ? pools.values() : null;
+    }
+
+    private <T> void bindPool(String client, int database, T source,
+                              ToDoubleFunction<T> active, ToDoubleFunction<T> idle,
+                              ToDoubleFunction<T> pending, ToDoubleFunction<T> meanWaitMillis) {
+        Tags tags = Tags.of("client", client, "database", String.valueOf(database));
+        Gauge.builder("redis.pool.active", source, active)
+                .description("Connections currently borrowed from the pool")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder("redis.pool.idle", source, idle)
+                .description("Idle connections in the pool")
+                .tags(tags)
+                .register(registry);
+        Gauge.builder("redis.pool.pending", source, pending)
+                .description("Threads currently waiting to borrow a connection")
+                .tags(tags)
+                .register(registry);
+        TimeGauge.builder("redis.pool.wait", source, TimeUnit.MILLISECONDS, meanWaitMillis)
+                .description("Mean time spent waiting to borrow a connection")
+                .tags(tags)
+                .register(registry);
+    }
+
+    private Counter counter(String name, Tags tags) {
+        String key = name + tags;
+        return counters.computeIfAbsent(key, unused -> Counter.builder(name).tags(tags).register(registry));
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    public Duration getSlowCommandThreshold() {
+        return slowCommandThreshold;
+    }
+
+}
@@ -0,0 +1,319 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 本地的近端缓存，用于减少热点 key 的读请求访问 redis 的次数
+ * <p>
+ * 缓存的一致性依赖于 redis 的 client side caching ，
+ * 在 {@link Mode#TRACKING} 模式下，订阅连接通过 【CLIENT TRACKING ON REDIRECT 自身 BCAST】 开启广播模式的 key 追踪，
+ * 由 redis 服务端在 key 被任意客户端修改时向 __redis__:invalidate 频道推送失效消息，
+ * 对于不支持 CLIENT TRACKING 的服务端 (redis 6 之前) 则退化为 {@link Mode#PUBSUB} 模式，
+ * 此时只能感知到通过 {@link SimpleRedisClient} 写入时发布到应用自定义频道上的失效消息
+ * <p>
+ * 订阅连接断开期间无法收到失效消息，所以此时读操作会绕过缓存，并且在重新订阅成功后清空缓存
+ * <p>
+ * reference: <a href="https://redis.io/docs/latest/develop/reference/client-side-caching/">Client-side caching reference</a>
+ */
+@Component
+@ConditionalOnProperty(prefix = "spring.data.redis.near-cache", name = "enabled", havingValue = "true")
+public class RedisNearCache implements InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisNearCache.class);
+
+    private static final String TRACKING_CHANNEL = "__redis__:invalidate";
+
+    public enum Mode {
+        TRACKING, PUBSUB
+    }
+
+    private final NativeJedisClient nativeJedisClient;
+
+    private final int maxSize;
+
+    private final List<String> prefixes;
+
+    private final String channel;
+
+    private volatile Mode mode;
+
+    private final Map<String, String> entries;
+
+    /**
+     * 每次收到失效消息时递增，用于丢弃在读取 redis 期间已经被失效的值，避免将旧值重新放入缓存
+     */
+    private final AtomicLong invalidationSequence = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder invalidationMessages = new LongAdder();
+
+    private volatile boolean running;
+
+    private volatile boolean subscribed;
+
+    private volatile Jedis subscriber;
+
+    private Thread listenerThread;
+
+    public RedisNearCache(NativeJedisClient nativeJedisClient,
+                          @Value("${spring.data.redis.near-cache.max-size:10000}") int maxSize,
+                          @Value("${spring.data.redis.near-cache.mode:TRACKING}") Mode mode,
+                          @Value("${spring.data.redis.near-cache.prefixes:}") List<String> prefixes,
+                          @Value("${spring.data.redis.near-cache.channel:near-cache:invalidate}") String channel) {
+        this.nativeJedisClient = nativeJedisClient;
+        this.maxSize = maxSize;
+        this.mode = mode;
+        this.prefixes = prefixes.stream().filter(prefix -> !prefix.isBlank()).toList();
+        this.channel = channel;
+        // access order 的 LinkedHashMap 即为 LRU
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                boolean evict = size() > RedisNearCache.this.maxSize;
+                if (evict) {
+                    evictions.increment();
+                }
+                return evict;
+            }
+        };
+    }
+
+    public String get(String key, Supplier<String> loader) {
+        if (!subscribed || !isCacheable(key)) {
+            return loader.get();
+        }
+
+        synchronized (entries) {
+            String value = entries.get(key);
+            if (value != null) {
+                hits.increment();
+                return value;
+            }
+        }
+        misses.increment();
+
+        long sequence = invalidationSequence.get();
+        String value = loader.get();
+        if (value != null) {
+            synchronized (entries) {
+                if (sequence == invalidationSequence.get()) {
+                    entries.put(key, value);
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 写操作后调用，立即失效本地的缓存，并且在 {@link Mode#PUBSUB} 模式下通知其他的实例
+     */
+    public void invalidate(Collection<String> keys) {
+        invalidateLocally(keys);
+
+        if (mode == Mode.PUBSUB && !keys.isEmpty()) {
+            try (Jedis jedis = nativeJedisClient.getJedis()) {
+                Pipeline pipeline = jedis.pipelined();
+                for (String key : keys) {
+                    pipeline.publish(channel, key);
+                }
+                pipeline.sync();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            invalidationSequence.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    private void invalidateLocally(Collection<String> keys) {
+        synchronized (entries) {
+            invalidationSequence.incrementAndGet();
+            for (String key : keys) {
+                if (entries.remove(key) != null) {
+                    invalidations.increment();
+                }
+            }
+        }
+    }
+
+    boolean isCacheable(String key) {
+        if (prefixes.isEmpty()) {
+            return true;
+        }
+        for (String prefix : prefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        running = true;
+        listenerThread = new Thread(this::listen, "redis-near-cache-invalidation");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        subscribed = false;
+        Jedis current = subscriber;
+        if (current != null) {
+            current.disconnect();
+        }
+        if (listenerThread != null) {
+            listenerThread.join(1000);
+        }
+    }
+
+    private void listen() {
+        long backoffMillis = 100;
+        while (running) {
+            try (Jedis jedis = nativeJedisClient.newJedis()) {
+                logger.debug("Near cache invalidation listener connected, client [{}].", nativeJedisClient);
+                subscriber = jedis;
+                subscribeAndDispatch(jedis);
+            } catch (Exception exception) {
+                if (running) {
+                    logger.warn("Near cache invalidation listener disconnected, retry after [{}] ms.", backoffMillis, exception);
+                }
+            } finally {
+                subscribed = false;
+                subscriber = null;
+            }
+
+            if (running) {
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, 5000);
+            }
+        }
+    }
+
+    private void subscribeAndDispatch(Jedis jedis) {
+        String subscribeChannel = channel;
+        if (mode == Mode.TRACKING) {
+            try {
+                enableTracking(jedis);
+                subscribeChannel = TRACKING_CHANNEL;
+            } catch (JedisDataException exception) {
+                logger.warn("CLIENT TRACKING is not supported by server, fallback to pubsub invalidation on channel [{}].", channel, exception);
+                mode = Mode.PUBSUB;
+            }
+        }
+
+        // 订阅连接会一直阻塞在读取消息上，所以不能有读超时
+        Connection connection = jedis.getConnection();
+        connection.setTimeoutInfinite();
+        connection.sendCommand(Protocol.Command.SUBSCRIBE, subscribeChannel);
+        connection.getObjectMultiBulkReply();
+
+        // 订阅之前缓存的值可能已经错过了失效消息
+        clear();
+        subscribed = true;
+        logger.info("Near cache subscribed to invalidation channel [{}] with mode [{}].", subscribeChannel, mode);
+
+        while (running) {
+            List<Object> reply = connection.getUnflushedObjectMultiBulkReply();
+            if (!"message".equals(SafeEncoder.encode((byte[]) reply.get(0)))) {
+                continue;
+            }
+            dispatch(reply.get(2));
+        }
+    }
+
+    /**
+     * 将追踪的失效消息重定向到订阅连接自身，这样只需要维护一个连接，并且该连接断开后追踪也随之失效，重连时会重新开启
+     */
+    private void enableTracking(Jedis jedis) {
+        long clientId = jedis.clientId();
+
+        List<String> args = new ArrayList<>(List.of("TRACKING", "ON", "REDIRECT", String.valueOf(clientId), "BCAST"));
+        for (String prefix : prefixes) {
+            args.add("PREFIX");
+            args.add(prefix);
+        }
+        jedis.sendCommand(Protocol.Command.CLIENT, args.toArray(new String[0]));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void dispatch(Object payload) {
+        invalidationMessages.increment();
+        // 在 FLUSHDB / FLUSHALL 时追踪的失效消息内容为 null
+        if (payload == null) {
+            clear();
+            return;
+        }
+
+        List<String> keys = new ArrayList<>();
+        if (payload instanceof byte[] key) {
+            keys.add(SafeEncoder.encode(key));
+        } else {
+            for (Object key : (List<Object>) payload) {
+                keys.add(SafeEncoder.encode((byte[]) key));
+            }
+        }
+        invalidateLocally(keys);
+    }
+
+    public Stats getStats() {
+        synchronized (entries) {
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), invalidations.sum(), invalidationMessages.sum(), entries.size(), maxSize);
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isSubscribed() {
+        return subscribed;
+    }
+
+    /**
+     * @param invalidations        因为失效而被移除的缓存条目数
+     * @param invalidationMessages 订阅连接收到的失效消息数，包括没有命中缓存条目的消息
+     */
+    public record Stats(long hits, long misses, long evictions, long invalidations, long invalidationMessages, int size, int maxSize) {
+
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+}
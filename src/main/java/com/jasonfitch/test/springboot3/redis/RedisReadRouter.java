@@ -0,0 +1,325 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClientConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 主从架构下的读路由，写命令总是发送到 primary ，读命令按照 {@link ReadFrom} 策略在 primary 以及 replica 之间选择节点
+ * <p>
+ * 后台线程每隔 probe-interval 对每个节点执行一次 PING ，失败的节点被标记为不可用，不会再被选中，直到其再次 PING 成功，
+ * PING 的耗时同时作为 {@link ReadFrom#NEAREST} 的距离
+ * <p>
+ * 注意 replica 是异步复制的，所以从 replica 读取可能读到旧值，需要读到自己刚写入的值的调用应当直接使用 primary
+ * <p>
+ * redis cluster 的 replica 需要先执行 READONLY 才能读取，而且 key 只能从其 slot 所在 master 的 replica 上读取，
+ * 所以 cluster 模式下读路由不生效，读写都由 cluster 客户端按照 slot 路由到 master
+ */
+@Component
+public class RedisReadRouter implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisReadRouter.class);
+
+    public enum ReadFrom {
+        /**
+         * 只从 primary 读取，与没有读路由时的行为一致
+         */
+        PRIMARY,
+        /**
+         * 在可用的 replica 之间轮询，所有的 replica 都不可用时退回到 primary
+         */
+        REPLICA_PREFERRED,
+        /**
+         * 在所有可用的节点之间轮询，包括 primary
+         */
+        ROUND_ROBIN,
+        /**
+         * 选择 PING 耗时最短的可用节点，包括 primary
+         */
+        NEAREST
+    }
+
+    private final ReadFrom readFrom;
+
+    private final Node primary;
+
+    private final List<Node> replicas;
+
+    private final List<Node> nodes;
+
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    private final JedisClientConfig probeClientConfig;
+
+    private final ScheduledExecutorService prober;
+
+    public RedisReadRouter(StringRedisTemplate template,
+                           @Value("${spring.data.redis.read-routing.read-from:PRIMARY}") ReadFrom readFrom,
+                           @Value("${spring.data.redis.read-routing.replicas:}") List<String> replicaAddresses,
+                           @Value("${spring.data.redis.read-routing.probe-interval:5s}") Duration probeInterval) {
+        RedisConnectionFactory connectionFactory = template.getRequiredConnectionFactory();
+        boolean clusterAware = RedisConnectionFactories.isClusterAware(connectionFactory);
+        if (clusterAware && readFrom != ReadFrom.PRIMARY) {
+            logger.warn("Read routing [{}] is ignored for redis cluster, all the reads go to the masters.", readFrom);
+        }
+        this.readFrom = clusterAware ? ReadFrom.PRIMARY : readFrom;
+
+        if (this.readFrom == ReadFrom.PRIMARY) {
+            this.primary = new Node(null, template, true);
+            this.replicas = Collections.emptyList();
+            this.nodes = List.of(primary);
+            this.probeClientConfig = null;
+            this.prober = null;
+            return;
+        }
+
+        RedisStandaloneConfiguration configuration = RedisConnectionFactories.standaloneConfigurationOf(connectionFactory);
+        int database = configuration.getDatabase();
+        this.primary = new Node(new HostAndPort(configuration.getHostName(), configuration.getPort()), template, true);
+
+        List<Node> replicaNodes = new ArrayList<>();
+        for (String replicaAddress : replicaAddresses) {
+            if (replicaAddress == null || replicaAddress.isBlank()) {
+                continue;
+            }
+            HostAndPort address = HostAndPort.from(replicaAddress.trim());
+            RedisConnectionFactory replicaConnectionFactory = RedisConnectionFactories.copyOf(connectionFactory, address.getHost(), address.getPort(), database);
+            replicaNodes.add(new Node(address, new StringRedisTemplate(replicaConnectionFactory), false));
+        }
+        this.replicas = List.copyOf(replicaNodes);
+
+        List<Node> allNodes = new ArrayList<>();
+        allNodes.add(primary);
+        allNodes.addAll(replicas);
+        this.nodes = List.copyOf(allNodes);
+
+        // 配置文件中的 username 为空时表示使用 default 用户，此时只能使用单参数的 AUTH
+        String username = configuration.getUsername() == null || configuration.getUsername().isBlank() ? null : configuration.getUsername();
+        String password = configuration.getPassword().map(String::new).orElse(null);
+        this.probeClientConfig = DefaultJedisClientConfig.builder()
+                .user(username)
+                .password(password)
+                .connectionTimeoutMillis((int) probeInterval.toMillis())
+                .socketTimeoutMillis((int) probeInterval.toMillis())
+                .build();
+
+        // 启动时同步探测一次，保证第一次路由时就已经知道各个节点的状态以及距离
+        probe();
+        this.prober = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("redis-read-router-probe").daemon().factory());
+        this.prober.scheduleWithFixedDelay(this::probe, probeInterval.toMillis(), probeInterval.toMillis(), TimeUnit.MILLISECONDS);
+        logger.info("Read routing [{}] enabled with primary [{}] and replicas {}.", this.readFrom, primary.address, replicaAddresses);
+    }
+
+    /**
+     * 读命令使用的 template ，每次调用都会重新选择节点，所以不要缓存其返回值
+     */
+    public StringRedisTemplate readTemplate() {
+        Node node = selectReadNode();
+        node.reads.increment();
+        return node.template;
+    }
+
+    /**
+     * 写命令使用的 template ，总是 primary
+     */
+    public StringRedisTemplate writeTemplate() {
+        return primary.template;
+    }
+
+    public Node selectReadNode() {
+        return switch (readFrom) {
+            case PRIMARY -> primary;
+            case REPLICA_PREFERRED -> {
+                Node replica = nextAvailable(replicas);
+                yield replica == null ? primary : replica;
+            }
+            case ROUND_ROBIN -> {
+                Node node = nextAvailable(nodes);
+                yield node == null ? primary : node;
+            }
+            case NEAREST -> nearest();
+        };
+    }
+
+    private Node nextAvailable(List<Node> candidates) {
+        int size = candidates.size();
+        if (size == 0) {
+            return null;
+        }
+        int start = Math.floorMod(roundRobin.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Node node = candidates.get((start + i) % size);
+            if (node.available) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private Node nearest() {
+        Node nearest = null;
+        for (Node node : nodes) {
+            if (node.available && (nearest == null || node.latencyNanos < nearest.latencyNanos)) {
+                nearest = node;
+            }
+        }
+        return nearest == null ? primary : nearest;
+    }
+
+    /**
+     * 对所有节点执行一次 PING ，更新其可用状态以及距离，由后台线程定时调用
+     */
+    public synchronized void probe() {
+        if (probeClientConfig == null) {
+            return;
+        }
+        for (Node node : nodes) {
+            node.probe(probeClientConfig);
+        }
+    }
+
+    public ReadFrom getReadFrom() {
+        return readFrom;
+    }
+
+    public Node getPrimary() {
+        return primary;
+    }
+
+    public List<Node> getReplicas() {
+        return replicas;
+    }
+
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        if (prober != null) {
+            prober.shutdownNow();
+        }
+        for (Node node : nodes) {
+            node.closeProbe();
+            if (!node.primary) {
+                ((DisposableBean) node.template.getRequiredConnectionFactory()).destroy();
+            }
+        }
+    }
+
+    public static final class Node {
+
+        /**
+         * 只读取 primary 时不需要知道其地址，此时为 null
+         */
+        private final HostAndPort address;
+
+        private final StringRedisTemplate template;
+
+        private final boolean primary;
+
+        private final LongAdder reads = new LongAdder();
+
+        private volatile boolean available = true;
+
+        private volatile long latencyNanos = Long.MAX_VALUE;
+
+        /**
+         * 探测使用的独立连接，只在探测线程中使用，失败后关闭并在下次探测时重新建立
+         */
+        private Jedis probeJedis;
+
+        private Node(HostAndPort address, StringRedisTemplate template, boolean primary) {
+            this.address = address;
+            this.template = template;
+            this.primary = primary;
+        }
+
+        private void probe(JedisClientConfig clientConfig) {
+            try {
+                if (probeJedis == null) {
+                    probeJedis = new Jedis(address, clientConfig);
+                }
+                long start = System.nanoTime();
+                probeJedis.ping();
+                latencyNanos = System.nanoTime() - start;
+                if (!available) {
+                    logger.info("Redis node [{}] is available again.", address);
+                }
+                available = true;
+            } catch (RuntimeException exception) {
+                if (available) {
+                    logger.warn("Redis node [{}] is unavailable, stop routing reads to it.", address, exception);
+                }
+                available = false;
+                latencyNanos = Long.MAX_VALUE;
+                closeProbe();
+            }
+        }
+
+        private void closeProbe() {
+            if (probeJedis != null) {
+                try {
+                    probeJedis.close();
+                } catch (RuntimeException ignored) {
+                    // 节点已经不可用，关闭失败可以忽略
+                }
+                probeJedis = null;
+            }
+        }
+
+        public HostAndPort getAddress() {
+            return address;
+        }
+
+        public StringRedisTemplate getTemplate() {
+            return template;
+        }
+
+        public boolean isPrimary() {
+            return primary;
+        }
+
+        public boolean isAvailable() {
+            return available;
+        }
+
+        public Duration getLatency() {
+            return latencyNanos == Long.MAX_VALUE ? null : Duration.ofNanos(latencyNanos);
+        }
+
+        public long getReadCount() {
+            return reads.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "Node{" +
+                    "address=" + address +
+                    ", primary=" + primary +
+                    ", available=" + available +
+                    ", latency=" + getLatency() +
+                    '}';
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * lua 脚本的注册表，启动时加载 spring.data.redis.scripts.locations 下的所有 .lua 文件，以文件名（不包括后缀）作为脚本名，
+ * 并通过 SCRIPT LOAD 将其缓存到服务端
+ * <p>
+ * 调用时只通过 EVALSHA 发送脚本的 sha1 ，而不是每次都发送整个脚本，
+ * 服务端重启，主从切换或者执行了 SCRIPT FLUSH 之后脚本缓存会丢失，此时 EVALSHA 返回 NOSCRIPT 错误，
+ * 这里会重新 SCRIPT LOAD 之后再执行一次
+ * <p>
+ * 与 {@link org.springframework.data.redis.core.script.DefaultScriptExecutor} 遇到 NOSCRIPT 时退回到 EVAL 不同，
+ * 重新加载之后后续的调用都可以继续使用 EVALSHA
+ * <p>
+ * 脚本中访问的所有 key 都必须通过 KEYS 传入，对于 cluster 这些 key 还必须位于同一个 slot 中，例如使用相同的 hash tag
+ */
+@Component
+public class RedisScriptRegistry implements InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisScriptRegistry.class);
+
+    public static final String COMPARE_AND_SET = "compare-and-set";
+
+    public static final String SLIDING_WINDOW_COUNTER = "sliding-window-counter";
+
+    public static final String GET_OR_SET = "get-or-set";
+
+    private final StringRedisTemplate template;
+
+    private final String[] locations;
+
+    private final Map<String, DefaultRedisScript<?>> scripts = new ConcurrentHashMap<>();
+
+    private final LongAdder reloads = new LongAdder();
+
+    public RedisScriptRegistry(StringRedisTemplate template,
+                               @Value("${spring.data.redis.scripts.locations:classpath*:redis/scripts/*.lua}") String[] locations) {
+        this.template = template;
+        this.locations = locations;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        for (String location : locations) {
+            for (Resource resource : resolver.getResources(location)) {
+                String filename = resource.getFilename();
+                if (filename == null || !filename.endsWith(".lua")) {
+                    continue;
+                }
+                register(filename.substring(0, filename.length() - ".lua".length()),
+                        resource.getContentAsString(StandardCharsets.UTF_8));
+            }
+        }
+
+        // redis 暂时不可用时不影响启动，第一次调用时会因为 NOSCRIPT 而重新加载
+        try {
+            loadAll();
+        } catch (DataAccessException exception) {
+            logger.warn("Failed to load redis scripts {}, they will be loaded on first use.", scripts.keySet(), exception);
+        }
+    }
+
+    /**
+     * 注册一个脚本，同名的脚本会被替换，注册时并不会加载到服务端
+     */
+    public void register(String name, String source) {
+        DefaultRedisScript<?> script = new DefaultRedisScript<>(source);
+        DefaultRedisScript<?> previous = scripts.put(name, script);
+        if (previous != null && !previous.getSha1().equals(script.getSha1())) {
+            logger.info("Redis script [{}] is replaced, sha1 [{}] -> [{}].", name, previous.getSha1(), script.getSha1());
+        }
+    }
+
+    /**
+     * 将所有注册的脚本加载到服务端，对于 cluster 会加载到所有的 master 节点上
+     */
+    public void loadAll() {
+        template.execute((RedisCallback<Void>) connection -> {
+            for (Map.Entry<String, DefaultRedisScript<?>> entry : scripts.entrySet()) {
+                load(connection.scriptingCommands(), entry.getKey(), entry.getValue());
+            }
+            return null;
+        });
+        logger.info("Loaded redis scripts {}.", scripts.keySet());
+    }
+
+    /**
+     * @param returnType 脚本返回值的类型，VALUE 对应 byte[] ，MULTI 对应 List ，其中的元素为 byte[] 或者 Long
+     */
+    public <T> T execute(String name, ReturnType returnType, List<String> keys, List<String> args) {
+        DefaultRedisScript<?> script = scripts.get(name);
+        if (script == null) {
+            throw new IllegalArgumentException("Unknown redis script [" + name + "], registered scripts " + scripts.keySet());
+        }
+
+        byte[][] keysAndArgs = new byte[keys.size() + args.size()][];
+        int index = 0;
+        for (String key : keys) {
+            keysAndArgs[index++] = template.getStringSerializer().serialize(key);
+        }
+        for (String arg : args) {
+            keysAndArgs[index++] = template.getStringSerializer().serialize(arg);
+        }
+
+        return template.execute((RedisCallback<T>) connection -> {
+            RedisScriptingCommands scriptingCommands = connection.scriptingCommands();
+            try {
+                return scriptingCommands.evalSha(script.getSha1(), returnType, keys.size(), keysAndArgs);
+            } catch (DataAccessException exception) {
+                if (!isNoScriptError(exception)) {
+                    throw exception;
+                }
+                reloads.increment();
+                logger.info("Redis script [{}] is missing on server, reload it.", name);
+                load(scriptingCommands, name, script);
+                return scriptingCommands.evalSha(script.getSha1(), returnType, keys.size(), keysAndArgs);
+            }
+        });
+    }
+
+    private void load(RedisScriptingCommands scriptingCommands, String name, DefaultRedisScript<?> script) {
+        String sha1 = scriptingCommands.scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+        if (!script.getSha1().equals(sha1)) {
+            throw new IllegalStateException("Redis script [" + name + "] sha1 mismatch, expected [" + script.getSha1() + "] but server returned [" + sha1 + "]");
+        }
+    }
+
+    private static boolean isNoScriptError(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Set<String> getScriptNames() {
+        return scripts.keySet();
+    }
+
+    public String getSha1(String name) {
+        DefaultRedisScript<?> script = scripts.get(name);
+        return script == null ? null : script.getSha1();
+    }
+
+    /**
+     * 因为 NOSCRIPT 而重新加载脚本的次数
+     */
+    public long getReloadCount() {
+        return reloads.sum();
+    }
+
+}
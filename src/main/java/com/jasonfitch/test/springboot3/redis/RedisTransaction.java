@@ -0,0 +1,186 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import redis.clients.jedis.CommandObject;
+import redis.clients.jedis.CommandObjects;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.SetParams;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * 类型安全的事务命令构造器，所有的 key 和 value 都是 String ，与 {@link org.springframework.data.redis.core.StringRedisTemplate} 一致
+ * <p>
+ * 与 SessionCallbackGenericTypeTest 中基于 {@link org.springframework.data.redis.core.SessionCallback} 的事务相比，
+ * 这里的命令只是先在本地排队，最终 MULTI ，所有的命令以及 EXEC 会在一次 pipeline 中发送，
+ * 所以一个事务只需要一次网络往返，而不是 N + 2 次，每个命令返回的 {@link Response} 会在 EXEC 之后被填充上对应类型的结果
+ *
+ * @see SimpleRedisClient#transaction(Callback)
+ * @see SimpleRedisClient#transaction(List, int, WatchCallback)
+ */
+public class RedisTransaction {
+
+    private static final CommandObjects COMMAND_OBJECTS = new CommandObjects();
+
+    private final List<CommandObject<?>> commands = new ArrayList<>();
+
+    private final List<Response<?>> responses = new ArrayList<>();
+
+    /**
+     * 被写命令修改的 key ，用于在事务执行成功后失效近端缓存
+     */
+    private final Set<String> writtenKeys = new LinkedHashSet<>();
+
+    RedisTransaction() {
+    }
+
+    public Response<String> get(String key) {
+        return queue(COMMAND_OBJECTS.get(key));
+    }
+
+    public Response<String> set(String key, String value) {
+        writtenKeys.add(key);
+        return queue(COMMAND_OBJECTS.set(key, value));
+    }
+
+    public Response<String> set(String key, String value, Duration ttl) {
+        long ttlMillis = toTtlMillis(ttl);
+        writtenKeys.add(key);
+        return queue(COMMAND_OBJECTS.set(key, value, SetParams.setParams().px(ttlMillis)));
+    }
+
+    public Response<Long> incr(String key) {
+        writtenKeys.add(key);
+        return queue(COMMAND_OBJECTS.incr(key));
+    }
+
+    public Response<Long> incrBy(String key, long increment) {
+        writtenKeys.add(key);
+        return queue(COMMAND_OBJECTS.incrBy(key, increment));
+    }
+
+    public Response<Long> decr(String key) {
+        writtenKeys.add(key);
+        return queue(COMMAND_OBJECTS.decr(key));
+    }
+
+    public Response<Long> del(String... keys) {
+        writtenKeys.addAll(List.of(keys));
+        return queue(COMMAND_OBJECTS.del(keys));
+    }
+
+    public Response<Boolean> exists(String key) {
+        return queue(COMMAND_OBJECTS.exists(key));
+    }
+
+    public Response<Long> expire(String key, Duration ttl) {
+        long ttlMillis = toTtlMillis(ttl);
+        writtenKeys.add(key);
+        return queue(COMMAND_OBJECTS.pexpire(key, ttlMillis));
+    }
+
+    public Response<String> hget(String key, String field) {
+        return queue(COMMAND_OBJECTS.hget(key, field));
+    }
+
+    public Response<Long> hset(String key, String field, String value) {
+        writtenKeys.add(key);
+        return queue(COMMAND_OBJECTS.hset(key, field, value));
+    }
+
+    public Response<Long> hincrBy(String key, String field, long increment) {
+        writtenKeys.add(key);
+        return queue(COMMAND_OBJECTS.hincrBy(key, field, increment));
+    }
+
+    /**
+     * 统一按毫秒发送 PX 以及 PEXPIRE ，按秒会把不足一秒的 ttl 截断为 0 ，
+     * 而 0 或者负数的 ttl 会被 SET 拒绝，或者被 EXPIRE 当作立即删除，所以在入队之前直接拒绝
+     */
+    private static long toTtlMillis(Duration ttl) {
+        long ttlMillis = ttl.toMillis();
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("ttl must be at least 1 ms, but was " + ttl);
+        }
+        return ttlMillis;
+    }
+
+    private <T> Response<T> queue(CommandObject<T> command) {
+        Response<T> response = new Response<>(command.getBuilder());
+        commands.add(command);
+        responses.add(response);
+        return response;
+    }
+
+    Set<String> getWrittenKeys() {
+        return writtenKeys;
+    }
+
+    boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * 在一次往返中发送 MULTI ，排队的命令以及 EXEC
+     *
+     * @return false 表示 WATCH 的 key 在事务执行之前被修改了，事务没有被执行
+     */
+    boolean execute(Connection connection) {
+        connection.sendCommand(Protocol.Command.MULTI);
+        for (CommandObject<?> command : commands) {
+            connection.sendCommand(command.getArguments());
+        }
+        connection.sendCommand(Protocol.Command.EXEC);
+
+        // MULTI 的 OK ，每个命令的 QUEUED 以及 EXEC 的结果
+        List<Object> replies = connection.getMany(commands.size() + 2);
+        for (int i = 1; i <= commands.size(); i++) {
+            // 命令在入队时就出错了，比如参数个数错误，此时 EXEC 会返回 EXECABORT
+            if (replies.get(i) instanceof JedisDataException exception) {
+                throw exception;
+            }
+        }
+
+        Object execReply = replies.get(replies.size() - 1);
+        if (execReply instanceof JedisDataException exception) {
+            throw exception;
+        }
+        if (execReply == null) {
+            return false;
+        }
+
+        List<?> results = (List<?>) execReply;
+        for (int i = 0; i < responses.size(); i++) {
+            responses.get(i).set(results.get(i));
+        }
+        return true;
+    }
+
+    @FunctionalInterface
+    public interface Callback<T> {
+
+        /**
+         * @return 在事务执行成功后用于获取最终结果，可以直接返回某个命令的 {@link Response}
+         */
+        Supplier<T> doInTransaction(RedisTransaction transaction);
+    }
+
+    @FunctionalInterface
+    public interface WatchCallback<T> {
+
+        /**
+         * @param watchedValues 被 WATCH 的 key 在 WATCH 之后读取到的值，不存在的 key 对应的值为 null
+         * @return 在事务执行成功后用于获取最终结果，如果没有排队任何命令，则直接返回该结果而不执行事务
+         */
+        Supplier<T> doInTransaction(Map<String, String> watchedValues, RedisTransaction transaction);
+    }
+
+}
@@ -1,28 +1,463 @@
 package com.jasonfitch.test.springboot3.redis;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.types.Expiration;
 import org.springframework.stereotype.Component;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.clients.jedis.BuilderFactory;
+import redis.clients.jedis.CommandObject;
+import redis.clients.jedis.CommandObjects;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.params.SetParams;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * A simple Redis client.
  * <p>
+ * 写命令总是发送到 primary ，读命令按照 {@link RedisReadRouter} 的策略选择节点，
+ * jedis 驱动下的 cluster 批量操作按照 slot 所在的节点分组 pipeline ，参见 {@link ClusterPipeline}
+ * <p>
  * reference: <a href="https://docs.spring.io/spring-boot/docs/3.2.0/reference/htmlsingle/index.html#data.nosql.redis">9.2.1. Redis</a>
  */
 @Component
 public class SimpleRedisClient {
 
+    private static final CommandObjects COMMANDS = new CommandObjects();
+
     private final StringRedisTemplate template;
 
-    public SimpleRedisClient(StringRedisTemplate template) {
+    private final RedisReadRouter readRouter;
+
+    /**
+     * 批量操作时每个 pipeline 中最多发送的命令数，避免一次性发送过多命令导致服务端的 output buffer 暴涨
+     */
+    private final int pipelineChunkSize;
+
+    /**
+     * 只有开启了 spring.data.redis.near-cache.enabled 时才存在，否则为 null
+     */
+    private final RedisNearCache nearCache;
+
+    private final RedisMetrics metrics;
+
+    private final NativeJedisClient nativeJedisClient;
+
+    private final RedisScriptRegistry scriptRegistry;
+
+    /**
+     * template 所使用的 database
+     */
+    private final int database;
+
+    /**
+     * jedis 驱动下的 cluster 连接不支持 pipeline ，批量操作需要使用 {@link ClusterPipeline}
+     */
+    private final boolean clusterPipeline;
+
+    public SimpleRedisClient(StringRedisTemplate template,
+                             @Value("${spring.data.redis.pipeline.chunk-size:500}") int pipelineChunkSize,
+                             ObjectProvider<RedisNearCache> nearCacheProvider,
+                             RedisMetrics metrics,
+                             NativeJedisClient nativeJedisClient,
+                             RedisReadRouter readRouter,
+                             RedisScriptRegistry scriptRegistry) {
+        if (pipelineChunkSize <= 0) {
+            throw new IllegalArgumentException("pipelineChunkSize must be positive, but was " + pipelineChunkSize);
+        }
         this.template = template;
+        this.pipelineChunkSize = pipelineChunkSize;
+        this.nearCache = nearCacheProvider.getIfAvailable();
+        this.metrics = metrics;
+        this.nativeJedisClient = nativeJedisClient;
+        this.readRouter = readRouter;
+        this.scriptRegistry = scriptRegistry;
+        RedisConnectionFactory connectionFactory = template.getRequiredConnectionFactory();
+        this.database = RedisConnectionFactories.databaseOf(connectionFactory);
+        this.clusterPipeline = connectionFactory instanceof JedisConnectionFactory && RedisConnectionFactories.isClusterAware(connectionFactory);
     }
 
     public Boolean hasKey(String key) {
-        return template.hasKey(key);
+        return record("hasKey", () -> readRouter.readTemplate().hasKey(key));
+    }
+
+    public String get(String key) {
+        // 只统计实际访问了 redis 的调用，命中近端缓存的调用不计时
+        if (nearCache == null || !nearCache.isCacheable(key)) {
+            return record("get", () -> readRouter.readTemplate().opsForValue().get(key));
+        }
+        // 失效消息来自 primary ，如果从落后的 replica 加载，写入的失效消息已经被消费，读到的旧值会一直缓存到下一次写入，
+        // 所以近端缓存总是从 primary 加载
+        return nearCache.get(key, () -> record("get", () -> template.opsForValue().get(key)));
+    }
+
+    public void set(String key, String value) {
+        record("set", () -> {
+            template.opsForValue().set(key, value);
+            return null;
+        });
+        invalidateNearCache(List.of(key));
+    }
+
+    /**
+     * @return 与入参 keys 的迭代顺序一一对应的结果
+     */
+    public List<Boolean> hasKeys(Collection<String> keys) {
+        return executePipelinedInChunks("hasKeys", readRouter.readTemplate(), new ArrayList<>(keys), (connection, chunk) -> {
+            for (String key : chunk) {
+                connection.exists(key);
+            }
+        }, COMMANDS::exists);
+    }
+
+    /**
+     * @return 与入参 keys 的迭代顺序一一对应的结果，不存在的 key 对应的值为 null
+     */
+    public List<String> multiGet(Collection<String> keys) {
+        return executePipelinedInChunks("multiGet", readRouter.readTemplate(), new ArrayList<>(keys), (connection, chunk) -> {
+            for (String key : chunk) {
+                connection.get(key);
+            }
+        }, COMMANDS::get);
+    }
+
+    /**
+     * @param ttl 为 null 或者不是正数时表示不设置过期时间
+     */
+    public void multiSet(Map<String, String> entries, Duration ttl) {
+        Expiration expiration = ttl == null || ttl.isZero() || ttl.isNegative() ? Expiration.persistent() : Expiration.from(ttl);
+        SetParams setParams = expiration.isPersistent() ? new SetParams() : SetParams.setParams().px(expiration.getExpirationTimeInMilliseconds());
+        executePipelinedInChunks("multiSet", template, new ArrayList<>(entries.keySet()), (connection, chunk) -> {
+            for (String key : chunk) {
+                connection.set(key, entries.get(key), expiration, RedisStringCommands.SetOption.upsert());
+            }
+        }, key -> COMMANDS.set(key, entries.get(key), setParams));
+        invalidateNearCache(entries.keySet());
+    }
+
+    /**
+     * @return 实际被删除的 key 的数量
+     */
+    public long delete(Collection<String> keys) {
+        List<Long> deleted = executePipelinedInChunks("delete", template, new ArrayList<>(keys), (connection, chunk) -> {
+            // 每个 chunk 合并为一条 DEL 命令
+            connection.del(chunk.toArray(new String[0]));
+        }, COMMANDS::del);
+        invalidateNearCache(keys);
+
+        long count = 0;
+        for (Long value : deleted) {
+            count += value == null ? 0 : value;
+        }
+        return count;
+    }
+
+    /**
+     * 将 keys 按照 pipelineChunkSize 切分，每个 chunk 使用一次 pipeline 往返，结果按照 keys 的顺序拼接返回，
+     * 每个 chunk 作为一次 operation 命令计时
+     * <p>
+     * jedis 驱动下的 cluster 不支持 pipeline ，此时每个 chunk 改为由 {@link ClusterPipeline} 按照节点分组执行 clusterCommand ，
+     * 跨 slot 的多 key 命令在 cluster 中是不允许的，所以 clusterCommand 中只能包含一个 key
+     * <p>
+     * 这里的 connection 可以直接转换为 {@link StringRedisConnection} 是因为
+     * {@link StringRedisTemplate#preProcessConnection} 会将原始的 connection 包装为 DefaultStringRedisConnection
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> executePipelinedInChunks(String operation, StringRedisTemplate target, List<String> keys,
+                                                 BiConsumer<StringRedisConnection, List<String>> commands,
+                                                 Function<String, CommandObject<?>> clusterCommand) {
+        List<T> results = new ArrayList<>(keys.size());
+        for (int from = 0; from < keys.size(); from += pipelineChunkSize) {
+            List<String> chunk = keys.subList(from, Math.min(from + pipelineChunkSize, keys.size()));
+            List<Object> chunkResults = record(operation, () -> {
+                if (clusterPipeline) {
+                    return executeClusterPipelined(chunk, clusterCommand);
+                }
+                return target.executePipelined((RedisCallback<Object>) connection -> {
+                    commands.accept((StringRedisConnection) connection, chunk);
+                    return null;
+                });
+            });
+            for (Object chunkResult : chunkResults) {
+                results.add((T) chunkResult);
+            }
+        }
+        return results;
+    }
+
+    private List<Object> executeClusterPipelined(List<String> chunk, Function<String, CommandObject<?>> clusterCommand) {
+        RedisClusterConnection clusterConnection = template.getRequiredConnectionFactory().getClusterConnection();
+        try {
+            return ClusterPipeline.execute(clusterConnection, chunk, clusterCommand);
+        } finally {
+            clusterConnection.close();
+        }
+    }
+
+    /**
+     * 基于 SCAN 惰性遍历 keyspace ，客户端每次只持有一批 key ，与 keyspace 的大小无关
+     * <p>
+     * 返回的 stream 在关闭之前会一直占用一个连接，所以必须使用 try-with-resources 关闭
+     *
+     * @param pattern 为 null 时表示匹配所有的 key
+     * @param count   每次 SCAN 的 COUNT 提示，只影响每批返回的 key 数量，并不是结果的总数
+     */
+    public Stream<String> scan(String pattern, long count) {
+        return readRouter.readTemplate().scan(scanOptions(pattern, count)).stream();
+    }
+
+    public Stream<Map.Entry<String, String>> hscan(String key, String pattern, long count) {
+        Cursor<Map.Entry<String, String>> cursor = readRouter.readTemplate().<String, String>opsForHash().scan(key, scanOptions(pattern, count));
+        return cursor.stream();
+    }
+
+    public Stream<String> sscan(String key, String pattern, long count) {
+        return readRouter.readTemplate().opsForSet().scan(key, scanOptions(pattern, count)).stream();
+    }
+
+    /**
+     * 对于 cluster ，每个 master 节点上的 SCAN 是相互独立的，所以可以在多个节点上并行遍历，
+     * 对于 standalone ，SCAN 的游标只能顺序推进，此时等同于 {@link #scan(String, long)}
+     */
+    public Stream<String> scanParallel(String pattern, long count) {
+        RedisConnectionFactory connectionFactory = template.getRequiredConnectionFactory();
+        if (!RedisConnectionFactories.isClusterAware(connectionFactory)) {
+            return scan(pattern, count);
+        }
+
+        ScanOptions options = scanOptions(pattern, count);
+        RedisClusterConnection clusterConnection = connectionFactory.getClusterConnection();
+        List<RedisClusterNode> masters = new ArrayList<>();
+        for (RedisClusterNode node : clusterConnection.clusterGetNodes()) {
+            if (node.isMaster() && node.isConnected()) {
+                masters.add(node);
+            }
+        }
+
+        return masters.parallelStream()
+                // flatMap 会在每个节点的 stream 被消费完之后关闭其游标
+                .flatMap(node -> clusterConnection.scan(node, options).stream())
+                .map(key -> template.getStringSerializer().deserialize(key))
+                .onClose(clusterConnection::close);
+    }
+
+    private ScanOptions scanOptions(String pattern, long count) {
+        ScanOptions.ScanOptionsBuilder builder = ScanOptions.scanOptions().count(count);
+        if (pattern != null) {
+            builder.match(pattern);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 执行一个不需要 WATCH 的事务，MULTI ，排队的命令以及 EXEC 在一次网络往返中完成
+     */
+    public <T> T transaction(RedisTransaction.Callback<T> callback) {
+        return record("transaction", () -> withTransactionConnection(connection -> {
+            RedisTransaction transaction = new RedisTransaction();
+            Supplier<T> result = callback.doInTransaction(transaction);
+            if (!transaction.isEmpty()) {
+                transaction.execute(connection);
+                invalidateNearCache(transaction.getWrittenKeys());
+            }
+            return result == null ? null : result.get();
+        }));
+    }
+
+    /**
+     * 基于 WATCH 的乐观锁事务，WATCH 与读取被 WATCH 的 key 在一次往返中完成，然后再用一次往返完成 MULTI ... EXEC ，
+     * 如果 EXEC 时被 WATCH 的 key 已经被其他客户端修改了，则重新执行整个过程，最多重试 maxRetries 次
+     *
+     * @throws OptimisticLockingFailureException 重试次数用完之后事务仍然没有执行成功
+     */
+    public <T> T transaction(List<String> watchKeys, int maxRetries, RedisTransaction.WatchCallback<T> callback) {
+        String[] keys = watchKeys.toArray(new String[0]);
+        return record("watchTransaction", () -> withTransactionConnection(connection -> {
+            for (int attempt = 0; attempt <= maxRetries; attempt++) {
+                connection.sendCommand(Protocol.Command.WATCH, keys);
+                connection.sendCommand(Protocol.Command.MGET, keys);
+                List<Object> replies = connection.getMany(2);
+                List<String> values = BuilderFactory.STRING_LIST.build(replies.get(1));
+
+                Map<String, String> watchedValues = new LinkedHashMap<>();
+                for (int i = 0; i < keys.length; i++) {
+                    watchedValues.put(keys[i], values.get(i));
+                }
+
+                RedisTransaction transaction = new RedisTransaction();
+                Supplier<T> result;
+                try {
+                    result = callback.doInTransaction(watchedValues, transaction);
+                } catch (RuntimeException exception) {
+                    // 避免连接带着 WATCH 的状态被归还到连接池中
+                    connection.sendCommand(Protocol.Command.UNWATCH);
+                    connection.getStatusCodeReply();
+                    throw exception;
+                }
+                if (transaction.isEmpty()) {
+                    connection.sendCommand(Protocol.Command.UNWATCH);
+                    connection.getStatusCodeReply();
+                    return result == null ? null : result.get();
+                }
+                if (transaction.execute(connection)) {
+                    invalidateNearCache(transaction.getWrittenKeys());
+                    return result == null ? null : result.get();
+                }
+            }
+            throw new OptimisticLockingFailureException("Transaction aborted after " + (maxRetries + 1) + " attempts, watched keys " + watchKeys + " kept changing");
+        }));
+    }
+
+    /**
+     * 当 key 的当前值等于 expected 时将其设置为 newValue ，比较与设置在服务端原子地完成，只需要一次往返，
+     * 相当于不需要重试的 WATCH 事务
+     *
+     * @param expected 为 null 时表示期望 key 不存在
+     * @param newValue 为 null 时表示删除 key ，即条件删除
+     * @param ttl      为 null 或者不是正数时表示不设置过期时间
+     * @return 当前值与期望值不一致时返回 false ，此时不做任何修改
+     */
+    public boolean compareAndSet(String key, String expected, String newValue, Duration ttl) {
+        Boolean swapped = record("compareAndSet", () -> scriptRegistry.execute(RedisScriptRegistry.COMPARE_AND_SET, ReturnType.BOOLEAN,
+                List.of(key),
+                List.of(expected == null ? "0" : "1", expected == null ? "" : expected,
+                        newValue == null ? "0" : "1", newValue == null ? "" : newValue,
+                        String.valueOf(ttlMillis(ttl)))));
+        if (Boolean.TRUE.equals(swapped)) {
+            invalidateNearCache(List.of(key));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 基于 sorted set 的滑动窗口计数，窗口内的事件数小于 limit 时记录本次事件，否则拒绝，
+     * 窗口使用服务端的时间，所以多个客户端共享同一个窗口时不受各自时钟的影响
+     *
+     * @param key 保存窗口内事件的 sorted set ，空闲一个窗口长度之后自动过期
+     */
+    public WindowCount slidingWindowIncrement(String key, Duration window, long limit) {
+        List<Object> result = record("slidingWindowIncrement", () -> scriptRegistry.execute(RedisScriptRegistry.SLIDING_WINDOW_COUNTER, ReturnType.MULTI,
+                List.of(key),
+                List.of(String.valueOf(window.toNanos() / 1000), String.valueOf(limit), Long.toHexString(ThreadLocalRandom.current().nextLong()))));
+        return new WindowCount((Long) result.get(0) == 1L, (Long) result.get(1));
+    }
+
+    /**
+     * 批量读取，不存在的 key 写入 defaults 中对应的默认值，读取与写入原子地完成，所以并发的调用方总是读到同一个值
+     * <p>
+     * 所有的 key 在一个脚本中执行，所以对于 cluster 这些 key 必须位于同一个 slot 中
+     *
+     * @param ttl 写入默认值时的过期时间，为 null 或者不是正数时表示不设置过期时间
+     * @return 与 defaults 的迭代顺序一一对应的值
+     */
+    public List<String> getOrSet(Map<String, String> defaults, Duration ttl) {
+        if (defaults.isEmpty()) {
+            return List.of();
+        }
+        List<String> args = new ArrayList<>(defaults.size() + 1);
+        args.add(String.valueOf(ttlMillis(ttl)));
+        args.addAll(defaults.values());
+        List<Object> result = record("getOrSet", () -> scriptRegistry.execute(RedisScriptRegistry.GET_OR_SET, ReturnType.MULTI,
+                new ArrayList<>(defaults.keySet()), args));
+        invalidateNearCache(defaults.keySet());
+
+        List<String> values = new ArrayList<>(result.size());
+        for (Object value : result) {
+            values.add(new String((byte[]) value, StandardCharsets.UTF_8));
+        }
+        return values;
+    }
+
+    /**
+     * @param accepted 本次事件是否被记录
+     * @param count    窗口内的事件数，包括本次被记录的事件
+     */
+    public record WindowCount(boolean accepted, long count) {
+    }
+
+    private static long ttlMillis(Duration ttl) {
+        return ttl == null || ttl.isZero() || ttl.isNegative() ? 0 : Math.max(1, ttl.toMillis());
+    }
+
+    /**
+     * MULTI 以及 WATCH 都是连接级别的状态，所以无论使用哪种驱动，事务都需要独占一个连接
+     * <p>
+     * jedis 驱动下直接使用 template 从连接池中借出的连接，
+     * lettuce 驱动下 template 的共享连接是多路复用的，不能承载事务状态，而 {@link RedisTransaction} 是基于 jedis 的协议编码实现的，
+     * 所以从 {@link NativeJedisClient} 中借用同一个 database 的连接
+     */
+    private <T> T withTransactionConnection(Function<Connection, T> action) {
+        if (template.getRequiredConnectionFactory() instanceof JedisConnectionFactory) {
+            return template.execute((RedisCallback<T>) connection -> action.apply(nativeConnection(connection)));
+        }
+        try (Jedis jedis = nativeJedisClient.getJedis(database)) {
+            return action.apply(jedis.getConnection());
+        }
+    }
+
+    private Connection nativeConnection(RedisConnection connection) {
+        // 这里的 connection 是从连接池中借出的，所以其 database 已经选择好了，执行完毕后由 template 负责归还
+        if (!(connection.getNativeConnection() instanceof Jedis jedis)) {
+            throw new IllegalStateException("Transaction requires a standalone Jedis connection, but was " + connection.getNativeConnection());
+        }
+        return jedis.getConnection();
+    }
+
+    private <T> T record(String operation, Supplier<T> call) {
+        return metrics.record(RedisMetrics.CLIENT_SIMPLE, operation, database, call);
+    }
+
+    private void invalidateNearCache(Collection<String> keys) {
+        if (nearCache != null) {
+            nearCache.invalidate(keys);
+        }
+    }
+
+    public int getPipelineChunkSize() {
+        return pipelineChunkSize;
     }
 
     public StringRedisTemplate getTemplate() {
         return template;
     }
 
+    public RedisScriptRegistry getScriptRegistry() {
+        return scriptRegistry;
+    }
+
+    public RedisReadRouter getReadRouter() {
+        return readRouter;
+    }
+
+    public RedisNearCache getNearCache() {
+        return nearCache;
+    }
+
 }
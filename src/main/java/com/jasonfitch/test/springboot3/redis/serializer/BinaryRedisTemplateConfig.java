@@ -0,0 +1,47 @@
+package com.jasonfitch.test.springboot3.redis.serializer;
+
+import com.jasonfitch.test.springboot3.cloud.stream.rabbitmq.LogMessage;
+import com.jasonfitch.test.springboot3.mq.stomp.entity.Greeting;
+import com.jasonfitch.test.springboot3.mq.stomp.entity.HelloMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * 为项目中的 record 以及 entity 提供使用二进制 value 序列化器的 RedisTemplate ，key 和 hash key 仍然是可读的字符串
+ */
+@Configuration
+public class BinaryRedisTemplateConfig {
+
+    @Value("${spring.data.redis.serializer.compression-threshold:1024}")
+    private int compressionThreshold;
+
+    @Bean
+    public RedisTemplate<String, LogMessage> logMessageRedisTemplate(RedisConnectionFactory connectionFactory) {
+        return createTemplate(connectionFactory, new LogMessageRedisSerializer(compressionThreshold));
+    }
+
+    @Bean
+    public RedisTemplate<String, Greeting> greetingRedisTemplate(RedisConnectionFactory connectionFactory) {
+        return createTemplate(connectionFactory, new GreetingRedisSerializer(compressionThreshold));
+    }
+
+    @Bean
+    public RedisTemplate<String, HelloMessage> helloMessageRedisTemplate(RedisConnectionFactory connectionFactory) {
+        return createTemplate(connectionFactory, new HelloMessageRedisSerializer(compressionThreshold));
+    }
+
+    private <T> RedisTemplate<String, T> createTemplate(RedisConnectionFactory connectionFactory, RedisSerializer<T> valueSerializer) {
+        RedisTemplate<String, T> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setHashKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(valueSerializer);
+        template.setHashValueSerializer(valueSerializer);
+        return template;
+    }
+
+}
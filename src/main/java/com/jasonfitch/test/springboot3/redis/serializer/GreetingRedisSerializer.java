@@ -0,0 +1,28 @@
+package com.jasonfitch.test.springboot3.redis.serializer;
+
+import com.jasonfitch.test.springboot3.mq.stomp.entity.Greeting;
+
+public class GreetingRedisSerializer extends VersionedBinaryRedisSerializer<Greeting> {
+
+    private static final int VERSION = 1;
+
+    public GreetingRedisSerializer(int compressionThreshold) {
+        super(compressionThreshold);
+    }
+
+    @Override
+    protected int version() {
+        return VERSION;
+    }
+
+    @Override
+    protected void write(Greeting value, Output output) {
+        output.writeString(value.getContent());
+    }
+
+    @Override
+    protected Greeting read(int version, Input input) {
+        return new Greeting(input.readString());
+    }
+
+}
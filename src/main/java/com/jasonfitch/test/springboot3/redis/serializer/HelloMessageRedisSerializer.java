@@ -0,0 +1,28 @@
+package com.jasonfitch.test.springboot3.redis.serializer;
+
+import com.jasonfitch.test.springboot3.mq.stomp.entity.HelloMessage;
+
+public class HelloMessageRedisSerializer extends VersionedBinaryRedisSerializer<HelloMessage> {
+
+    private static final int VERSION = 1;
+
+    public HelloMessageRedisSerializer(int compressionThreshold) {
+        super(compressionThreshold);
+    }
+
+    @Override
+    protected int version() {
+        return VERSION;
+    }
+
+    @Override
+    protected void write(HelloMessage value, Output output) {
+        output.writeString(value.getName());
+    }
+
+    @Override
+    protected HelloMessage read(int version, Input input) {
+        return new HelloMessage(input.readString());
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.jasonfitch.test.springboot3.redis.serializer;
+
+import com.jasonfitch.test.springboot3.cloud.stream.rabbitmq.LogMessage;
+
+public class LogMessageRedisSerializer extends VersionedBinaryRedisSerializer<LogMessage> {
+
+    private static final int VERSION = 1;
+
+    public LogMessageRedisSerializer(int compressionThreshold) {
+        super(compressionThreshold);
+    }
+
+    @Override
+    protected int version() {
+        return VERSION;
+    }
+
+    @Override
+    protected void write(LogMessage value, Output output) {
+        output.writeString(value.message());
+    }
+
+    @Override
+    protected LogMessage read(int version, Input input) {
+        return new LogMessage(input.readString());
+    }
+
+}
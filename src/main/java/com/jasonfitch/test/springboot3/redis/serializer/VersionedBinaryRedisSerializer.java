@@ -0,0 +1,217 @@
+package com.jasonfitch.test.springboot3.redis.serializer;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 紧凑的二进制 value 序列化器，相比 StringRedisTemplate 中存储 UTF-8 字符串或者 JSON ，省去了字段名以及引号等冗余字节
+ * <p>
+ * 字节格式为 【version(1) | flags(1) | body】，
+ * version 是具体类型的 body 格式版本，读取时会将其传递给 {@link #read(int, Input)} ，从而在滚动升级期间新版本能够读取旧版本写入的数据，
+ * flags 标记 body 是否被压缩，超过 compressionThreshold 的 body 使用 jdk 自带的 {@link Deflater} 压缩，只有压缩后确实变小时才保存压缩结果
+ * <p>
+ * 该序列化器只用于 value ，key 以及 hash key 仍然使用 {@link org.springframework.data.redis.serializer.StringRedisSerializer} 以保持可读性
+ */
+public abstract class VersionedBinaryRedisSerializer<T> implements RedisSerializer<T> {
+
+    private static final int HEADER_LENGTH = 2;
+
+    private static final byte FLAG_DEFLATE = 0x01;
+
+    private final int compressionThreshold;
+
+    protected VersionedBinaryRedisSerializer(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * @return 当前写入时使用的 body 格式版本
+     */
+    protected abstract int version();
+
+    protected abstract void write(T value, Output output);
+
+    /**
+     * @param version 写入该数据时使用的 body 格式版本，不会大于 {@link #version()}
+     */
+    protected abstract T read(int version, Input input);
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        if (value == null) {
+            return null;
+        }
+
+        Output output = new Output();
+        write(value, output);
+        byte[] body = output.toByteArray();
+
+        byte flags = 0;
+        if (compressionThreshold > 0 && body.length > compressionThreshold) {
+            byte[] compressed = deflate(body);
+            if (compressed.length < body.length) {
+                body = compressed;
+                flags |= FLAG_DEFLATE;
+            }
+        }
+
+        byte[] bytes = new byte[HEADER_LENGTH + body.length];
+        bytes[0] = (byte) version();
+        bytes[1] = flags;
+        System.arraycopy(body, 0, bytes, HEADER_LENGTH, body.length);
+        return bytes;
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length < HEADER_LENGTH) {
+            throw new SerializationException("Binary value is too short to contain a header, length=" + bytes.length);
+        }
+
+        int version = Byte.toUnsignedInt(bytes[0]);
+        if (version > version()) {
+            throw new SerializationException("Binary value version [" + version + "] is newer than supported version [" + version() + "]");
+        }
+
+        ByteBuffer body = ByteBuffer.wrap(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+        if ((bytes[1] & FLAG_DEFLATE) != 0) {
+            body = ByteBuffer.wrap(inflate(bytes, HEADER_LENGTH));
+        }
+        try {
+            return read(version, new Input(body));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException exception) {
+            throw new SerializationException("Truncated binary value with version [" + version + "]", exception);
+        }
+    }
+
+    private static byte[] deflate(byte[] body) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(body.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, bytes.length - offset);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length * 2);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new SerializationException("Truncated compressed binary value");
+                }
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        } catch (DataFormatException exception) {
+            throw new SerializationException("Corrupted compressed binary value", exception);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    /**
+     * 长度使用 varint 编码，字符串使用 UTF-8 编码，null 字符串的长度编码为 0 ，其余的长度编码为实际长度加 1
+     */
+    public static class Output {
+
+        private byte[] buffer = new byte[64];
+
+        private int position;
+
+        public void writeVarInt(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        public void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void ensureCapacity(int length) {
+            if (position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    public static class Input {
+
+        private final ByteBuffer buffer;
+
+        Input(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        public int readVarInt() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint in binary value");
+        }
+
+        public String readString() {
+            int length = readVarInt();
+            if (length == 0) {
+                return null;
+            }
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length - 1, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length - 1);
+            return value;
+        }
+
+        public boolean hasRemaining() {
+            return buffer.hasRemaining();
+        }
+    }
+
+}
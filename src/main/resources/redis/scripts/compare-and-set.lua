@@ -0,0 +1,29 @@
+-- 比较并设置，当前值与期望值一致时才写入新值或者删除 key
+-- KEYS[1]: key
+-- ARGV[1]: 1 表示期望 key 存在并且其值等于 ARGV[2] ，0 表示期望 key 不存在
+-- ARGV[2]: 期望的当前值
+-- ARGV[3]: 1 表示写入 ARGV[4] ，0 表示删除 key
+-- ARGV[4]: 新值
+-- ARGV[5]: 过期时间毫秒数，0 表示不设置过期时间
+-- 返回 1 表示执行成功，0 表示当前值与期望不一致，未做任何修改
+local current = redis.call('GET', KEYS[1])
+if ARGV[1] == '1' then
+    if current ~= ARGV[2] then
+        return 0
+    end
+elseif current then
+    return 0
+end
+
+if ARGV[3] == '0' then
+    redis.call('DEL', KEYS[1])
+    return 1
+end
+
+local ttl = tonumber(ARGV[5])
+if ttl > 0 then
+    redis.call('SET', KEYS[1], ARGV[4], 'PX', ttl)
+else
+    redis.call('SET', KEYS[1], ARGV[4])
+end
+return 1
@@ -0,0 +1,20 @@
+-- 批量读取，不存在的 key 写入对应的默认值，读取与写入是原子的，所以并发的调用方会读到同一个值
+-- KEYS: 要读取的 key
+-- ARGV[1]: 写入默认值时的过期时间毫秒数，0 表示不设置过期时间
+-- ARGV[2..]: 与 KEYS 一一对应的默认值
+-- 返回与 KEYS 一一对应的值
+local ttl = tonumber(ARGV[1])
+local values = {}
+for i, key in ipairs(KEYS) do
+    local value = redis.call('GET', key)
+    if not value then
+        value = ARGV[i + 1]
+        if ttl > 0 then
+            redis.call('SET', key, value, 'PX', ttl)
+        else
+            redis.call('SET', key, value)
+        end
+    end
+    values[i] = value
+end
+return values
@@ -0,0 +1,20 @@
+-- 滑动窗口计数，窗口内的事件数未达到上限时记录本次事件
+-- KEYS[1]: 保存窗口内事件的 sorted set ，score 为事件发生时的微秒时间戳
+-- ARGV[1]: 窗口长度，微秒
+-- ARGV[2]: 窗口内允许的最大事件数
+-- ARGV[3]: 事件的唯一标识，避免同一微秒内的多个事件互相覆盖
+-- 返回 {1 表示本次事件被接受 0 表示被拒绝, 窗口内的事件数，包括本次被接受的事件}
+-- 使用服务端的时间，所以多个客户端之间的时钟偏差不会影响窗口
+local time = redis.call('TIME')
+local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+local window = tonumber(ARGV[1])
+
+redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now - window)
+local count = redis.call('ZCARD', KEYS[1])
+if count >= tonumber(ARGV[2]) then
+    return {0, count}
+end
+
+redis.call('ZADD', KEYS[1], now, time[1] .. '.' .. time[2] .. '-' .. ARGV[3])
+redis.call('PEXPIRE', KEYS[1], math.ceil(window / 1000))
+return {1, count + 1}
@@ -0,0 +1,1000 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的 AMQP 0-9-1 替身 broker ，只实现了 rabbitmq binder 以及 spring amqp 使用到的部分，用于在没有真实 rabbitmq 的环境中离线地执行测试以及基准测试
+ * <p>
+ * 支持 direct ，topic ，fanout 三种 exchange （headers 视为 fanout ）以及默认 exchange ，
+ * basic.qos 的 prefetch-count 按照每个 consumer 计算（与 rabbitmq 对 global=false 的处理相同），
+ * confirm.select 之后每条 basic.publish 在路由完成之后立即被确认，消息只保存在内存中，没有持久化，
+ * channel 或者连接关闭时未确认的消息被重新放回队列的头部，并标记为 redelivered
+ * <p>
+ * 所有的状态由一把锁保护，投递直接在处理 publish 或者 ack 的线程中写入 consumer 的连接，所以它本身的吞吐量有限，
+ * 适合比较同一份配置下客户端参数（prefetch ，并发数，批量发送，确认）的相对差异，而不是测量 rabbitmq 本身的性能
+ */
+public class AmqpStubBroker implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AmqpStubBroker.class);
+
+    private static final byte[] PROTOCOL_HEADER = {'A', 'M', 'Q', 'P', 0, 0, 9, 1};
+
+    private static final int FRAME_METHOD = 1;
+
+    private static final int FRAME_HEADER = 2;
+
+    private static final int FRAME_BODY = 3;
+
+    private static final int FRAME_HEARTBEAT = 8;
+
+    private static final int FRAME_END = 0xCE;
+
+    private static final int FRAME_MAX = 128 * 1024;
+
+    private static final int CHANNEL_MAX = 2047;
+
+    private static final int NOT_FOUND = 404;
+
+    private static final int NO_ROUTE = 312;
+
+    private static final int COMMAND_INVALID = 503;
+
+    private final ServerSocket serverSocket;
+
+    private final Map<String, Exchange> exchanges = new HashMap<>();
+
+    private final Map<String, Queue> queues = new HashMap<>();
+
+    private final AtomicLong nameSequence = new AtomicLong();
+
+    private final AtomicLong publishCount = new AtomicLong();
+
+    private final AtomicLong deliverCount = new AtomicLong();
+
+    private final AtomicLong ackCount = new AtomicLong();
+
+    private final AtomicLong confirmCount = new AtomicLong();
+
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running = true;
+
+    public AmqpStubBroker() throws IOException {
+        this(0);
+    }
+
+    public AmqpStubBroker(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        exchanges.put("", new Exchange("", "direct"));
+        for (String type : List.of("direct", "topic", "fanout", "headers")) {
+            exchanges.put("amq." + type, new Exchange("amq." + type, type));
+        }
+
+        Thread acceptor = new Thread(this::accept, "amqp-stub-acceptor-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    /**
+     * 收到的 basic.publish 的次数，开启批量发送时多条消息合并为一次
+     */
+    public long getPublishCount() {
+        return publishCount.get();
+    }
+
+    public long getDeliverCount() {
+        return deliverCount.get();
+    }
+
+    /**
+     * 收到的 basic.ack 确认的投递数，multiple 时按照实际确认的投递数计算
+     */
+    public long getAckCount() {
+        return ackCount.get();
+    }
+
+    /**
+     * 发送给 publisher 的确认数
+     */
+    public long getConfirmCount() {
+        return confirmCount.get();
+    }
+
+    public synchronized int getMessageCount(String queueName) {
+        Queue queue = queues.get(queueName);
+        return queue == null ? 0 : queue.messages.size();
+    }
+
+    public synchronized int getConsumerCount(String queueName) {
+        Queue queue = queues.get(queueName);
+        return queue == null ? 0 : queue.consumers.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                // 使用平台线程，避免替身 broker 与被测的客户端竞争虚拟线程的载体线程
+                Thread.ofPlatform().daemon().name("amqp-stub-connection-" + socket.getPort()).start(() -> serve(socket));
+            } catch (IOException exception) {
+                // 关闭时 accept 抛出的异常是预期的
+                if (running) {
+                    logger.warn("Failed to accept connection on amqp stub broker [{}:{}].", getHost(), getPort(), exception);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Connection connection = null;
+        try (socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024)) {
+            byte[] header = in.readNBytes(PROTOCOL_HEADER.length);
+            if (!Arrays.equals(header, PROTOCOL_HEADER)) {
+                out.write(PROTOCOL_HEADER);
+                out.flush();
+                return;
+            }
+            connection = new Connection(out);
+            connection.start();
+            while (running && !connection.closed) {
+                int type = in.read();
+                if (type == -1) {
+                    return;
+                }
+                int channel = in.readUnsignedShort();
+                byte[] payload = in.readNBytes(in.readInt());
+                if (in.read() != FRAME_END) {
+                    throw new IOException("Invalid frame end");
+                }
+                connection.handle(type, channel, ByteBuffer.wrap(payload));
+            }
+        } catch (IOException exception) {
+            // 客户端断开连接
+        } finally {
+            sockets.remove(socket);
+            if (connection != null) {
+                synchronized (this) {
+                    connection.release();
+                }
+            }
+        }
+    }
+
+    private record Message(String exchange, String routingKey, byte[] properties, byte[] body, boolean redelivered) {
+
+        private Message redeliver() {
+            return new Message(exchange, routingKey, properties, body, true);
+        }
+    }
+
+    private record Binding(Queue queue, String routingKey) {
+    }
+
+    private record Unacked(Queue queue, Message message, Consumer consumer) {
+    }
+
+    private static final class Exchange {
+
+        private final String name;
+
+        private final String type;
+
+        private final List<Binding> bindings = new ArrayList<>();
+
+        private Exchange(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        private List<Queue> route(String routingKey, Map<String, Queue> queues) {
+            if (name.isEmpty()) {
+                Queue queue = queues.get(routingKey);
+                return queue == null ? List.of() : List.of(queue);
+            }
+            List<Queue> matched = new ArrayList<>();
+            for (Binding binding : bindings) {
+                boolean matches = switch (type) {
+                    case "fanout", "headers" -> true;
+                    case "topic" -> topicMatches(binding.routingKey().split("\\.", -1), 0, routingKey.split("\\.", -1), 0);
+                    default -> binding.routingKey().equals(routingKey);
+                };
+                if (matches && !matched.contains(binding.queue())) {
+                    matched.add(binding.queue());
+                }
+            }
+            return matched;
+        }
+
+        /**
+         * * 匹配一个单词，# 匹配零个或者多个单词
+         */
+        private static boolean topicMatches(String[] pattern, int p, String[] words, int w) {
+            if (p == pattern.length) {
+                return w == words.length;
+            }
+            if (pattern[p].equals("#")) {
+                for (int skip = w; skip <= words.length; skip++) {
+                    if (topicMatches(pattern, p + 1, words, skip)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (w == words.length) {
+                return false;
+            }
+            return (pattern[p].equals("*") || pattern[p].equals(words[w])) && topicMatches(pattern, p + 1, words, w + 1);
+        }
+    }
+
+    private static final class Queue {
+
+        private final String name;
+
+        private final Connection exclusiveOwner;
+
+        private final boolean autoDelete;
+
+        private final Deque<Message> messages = new ArrayDeque<>();
+
+        private final List<Consumer> consumers = new ArrayList<>();
+
+        private boolean hadConsumer;
+
+        private int nextConsumer;
+
+        private Queue(String name, Connection exclusiveOwner, boolean autoDelete) {
+            this.name = name;
+            this.exclusiveOwner = exclusiveOwner;
+            this.autoDelete = autoDelete;
+        }
+    }
+
+    private static final class Consumer {
+
+        private final Channel channel;
+
+        private final String tag;
+
+        private final Queue queue;
+
+        private final boolean noAck;
+
+        private int unacked;
+
+        private Consumer(Channel channel, String tag, Queue queue, boolean noAck) {
+            this.channel = channel;
+            this.tag = tag;
+            this.queue = queue;
+            this.noAck = noAck;
+        }
+
+        private boolean hasCapacity() {
+            return noAck || channel.prefetchCount == 0 || unacked < channel.prefetchCount;
+        }
+    }
+
+    private final class Channel {
+
+        private final Connection connection;
+
+        private final int number;
+
+        private final Map<String, Consumer> consumers = new LinkedHashMap<>();
+
+        private final Map<Long, Unacked> unacked = new LinkedHashMap<>();
+
+        private int prefetchCount;
+
+        private boolean confirm;
+
+        private long publishSequence;
+
+        private long deliveryTagSequence;
+
+        /**
+         * 已经收到 basic.publish ，正在等待其内容的消息
+         */
+        private String pendingExchange;
+
+        private String pendingRoutingKey;
+
+        private boolean pendingMandatory;
+
+        private byte[] pendingProperties;
+
+        private ByteArrayOutputStream pendingBody;
+
+        private long pendingBodySize;
+
+        /**
+         * broker 发送了 channel.close ，在收到 close-ok 之前忽略其他的帧
+         */
+        private boolean closing;
+
+        private Channel(Connection connection, int number) {
+            this.connection = connection;
+            this.number = number;
+        }
+
+        private void deliver(Consumer consumer, Message message) throws IOException {
+            long deliveryTag = ++deliveryTagSequence;
+            if (!consumer.noAck) {
+                unacked.put(deliveryTag, new Unacked(consumer.queue, message, consumer));
+                consumer.unacked++;
+            }
+            Payload method = new Payload(60, 60).shortStr(consumer.tag).longLong(deliveryTag).octet(message.redelivered() ? 1 : 0)
+                    .shortStr(message.exchange()).shortStr(message.routingKey());
+            connection.sendWithContent(number, method, message);
+            deliverCount.incrementAndGet();
+        }
+
+        /**
+         * basic.ack ，basic.nack 以及 basic.reject ，requeue 为 null 表示确认
+         */
+        private void settle(long deliveryTag, boolean multiple, Boolean requeue) throws IOException {
+            List<Unacked> settled = new ArrayList<>();
+            if (multiple) {
+                Iterator<Map.Entry<Long, Unacked>> iterator = unacked.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    Map.Entry<Long, Unacked> entry = iterator.next();
+                    if (deliveryTag != 0 && entry.getKey() > deliveryTag) {
+                        break;
+                    }
+                    settled.add(entry.getValue());
+                    iterator.remove();
+                }
+            } else {
+                Unacked entry = unacked.remove(deliveryTag);
+                if (entry == null) {
+                    connection.closeChannel(this, 406, "PRECONDITION_FAILED - unknown delivery tag " + deliveryTag, 60, 80);
+                    return;
+                }
+                settled.add(entry);
+            }
+
+            Set<Queue> touched = new LinkedHashSet<>();
+            for (Unacked entry : settled) {
+                if (entry.consumer() != null) {
+                    entry.consumer().unacked--;
+                }
+                if (requeue == null) {
+                    ackCount.incrementAndGet();
+                } else if (requeue) {
+                    entry.queue().messages.addFirst(entry.message().redeliver());
+                }
+                touched.add(entry.queue());
+            }
+            for (Queue queue : touched) {
+                dispatch(queue);
+            }
+        }
+
+        /**
+         * channel 关闭时取消所有的 consumer ，并将未确认的消息放回队列
+         */
+        private void release() {
+            for (Consumer consumer : consumers.values()) {
+                removeConsumer(consumer);
+            }
+            consumers.clear();
+            List<Unacked> pending = new ArrayList<>(unacked.values());
+            unacked.clear();
+            // 倒序放回头部，从而保持原来的顺序
+            for (int i = pending.size() - 1; i >= 0; i--) {
+                Unacked entry = pending.get(i);
+                if (queues.get(entry.queue().name) == entry.queue()) {
+                    entry.queue().messages.addFirst(entry.message().redeliver());
+                }
+            }
+            for (Unacked entry : pending) {
+                dispatch(entry.queue());
+            }
+        }
+    }
+
+    private final class Connection {
+
+        private final OutputStream out;
+
+        private final Map<Integer, Channel> channels = new HashMap<>();
+
+        private int frameMax = FRAME_MAX;
+
+        private volatile boolean closed;
+
+        /**
+         * 出错之后不再写入，由连接线程负责释放
+         */
+        private volatile boolean broken;
+
+        private Connection(OutputStream out) {
+            this.out = out;
+        }
+
+        private void start() throws IOException {
+            Map<String, Object> capabilities = new LinkedHashMap<>();
+            capabilities.put("publisher_confirms", true);
+            capabilities.put("basic.nack", true);
+            capabilities.put("consumer_cancel_notify", true);
+            capabilities.put("exchange_exchange_bindings", false);
+            capabilities.put("connection.blocked", false);
+            capabilities.put("authentication_failure_close", true);
+            Map<String, Object> serverProperties = new LinkedHashMap<>();
+            serverProperties.put("product", "AmqpStubBroker");
+            serverProperties.put("version", "0.9.1");
+            serverProperties.put("capabilities", capabilities);
+            send(0, new Payload(10, 10).octet(0).octet(9).table(serverProperties).longStr("PLAIN AMQPLAIN").longStr("en_US"));
+        }
+
+        private void handle(int type, int channelNumber, ByteBuffer payload) throws IOException {
+            if (type == FRAME_HEARTBEAT) {
+                return;
+            }
+            if (channelNumber == 0) {
+                handleConnectionMethod(payload);
+                return;
+            }
+            synchronized (AmqpStubBroker.this) {
+                Channel channel = channels.get(channelNumber);
+                if (type == FRAME_METHOD) {
+                    int classId = payload.getShort() & 0xFFFF;
+                    int methodId = payload.getShort() & 0xFFFF;
+                    if (channel == null) {
+                        if (classId == 20 && methodId == 10) {
+                            channels.put(channelNumber, new Channel(this, channelNumber));
+                            send(channelNumber, new Payload(20, 11).longStr(""));
+                        }
+                        return;
+                    }
+                    if (channel.closing) {
+                        if (classId == 20 && methodId == 41) {
+                            channels.remove(channelNumber);
+                        }
+                        return;
+                    }
+                    handleChannelMethod(channel, classId, methodId, payload);
+                } else if (channel != null && !channel.closing) {
+                    handleContent(channel, type, payload);
+                }
+            }
+        }
+
+        private void handleConnectionMethod(ByteBuffer payload) throws IOException {
+            int classId = payload.getShort() & 0xFFFF;
+            int methodId = payload.getShort() & 0xFFFF;
+            switch (classId * 1000 + methodId) {
+                // start-ok ，只支持 PLAIN ，不校验用户名以及密码
+                case 10011 -> send(0, new Payload(10, 30).shortInt(CHANNEL_MAX).longInt(FRAME_MAX).shortInt(0));
+                // tune-ok
+                case 10031 -> {
+                    payload.getShort();
+                    int requested = payload.getInt();
+                    frameMax = requested == 0 ? FRAME_MAX : Math.min(requested, FRAME_MAX);
+                }
+                // open
+                case 10040 -> send(0, new Payload(10, 41).shortStr(""));
+                // close
+                case 10050 -> {
+                    send(0, new Payload(10, 51));
+                    closed = true;
+                }
+                // close-ok
+                case 10051 -> closed = true;
+                default -> {
+                    // 其他的连接级别的方法不影响替身 broker 的行为，忽略即可
+                }
+            }
+        }
+
+        private void handleChannelMethod(Channel channel, int classId, int methodId, ByteBuffer args) throws IOException {
+            int number = channel.number;
+            switch (classId * 1000 + methodId) {
+                // channel.flow
+                case 20020 -> send(number, new Payload(20, 21).octet(args.get()));
+                // channel.close
+                case 20040 -> {
+                    channel.release();
+                    channels.remove(number);
+                    send(number, new Payload(20, 41));
+                }
+                // exchange.declare
+                case 40010 -> {
+                    args.getShort();
+                    String name = shortStr(args);
+                    String type = shortStr(args);
+                    int bits = args.get();
+                    boolean passive = (bits & 1) != 0;
+                    boolean noWait = (bits & 16) != 0;
+                    if (!exchanges.containsKey(name)) {
+                        if (passive) {
+                            closeChannel(channel, NOT_FOUND, "NOT_FOUND - no exchange '" + name + "'", classId, methodId);
+                            return;
+                        }
+                        exchanges.put(name, new Exchange(name, type));
+                    }
+                    if (!noWait) {
+                        send(number, new Payload(40, 11));
+                    }
+                }
+                // exchange.delete
+                case 40020 -> {
+                    args.getShort();
+                    String name = shortStr(args);
+                    boolean noWait = (args.get() & 2) != 0;
+                    exchanges.remove(name);
+                    if (!noWait) {
+                        send(number, new Payload(40, 21));
+                    }
+                }
+                // queue.declare
+                case 50010 -> {
+                    args.getShort();
+                    String name = shortStr(args);
+                    int bits = args.get();
+                    boolean passive = (bits & 1) != 0;
+                    boolean exclusive = (bits & 4) != 0;
+                    boolean autoDelete = (bits & 8) != 0;
+                    boolean noWait = (bits & 16) != 0;
+                    if (name.isEmpty()) {
+                        name = "amq.gen-" + nameSequence.incrementAndGet();
+                    }
+                    Queue queue = queues.get(name);
+                    if (queue == null) {
+                        if (passive) {
+                            closeChannel(channel, NOT_FOUND, "NOT_FOUND - no queue '" + name + "'", classId, methodId);
+                            return;
+                        }
+                        queue = new Queue(name, exclusive ? this : null, autoDelete);
+                        queues.put(name, queue);
+                    }
+                    if (!noWait) {
+                        send(number, new Payload(50, 11).shortStr(name).longInt(queue.messages.size()).longInt(queue.consumers.size()));
+                    }
+                }
+                // queue.bind
+                case 50020 -> {
+                    args.getShort();
+                    Queue queue = queues.get(shortStr(args));
+                    Exchange exchange = exchanges.get(shortStr(args));
+                    String routingKey = shortStr(args);
+                    boolean noWait = (args.get() & 1) != 0;
+                    if (queue == null || exchange == null) {
+                        closeChannel(channel, NOT_FOUND, "NOT_FOUND - no queue or exchange", classId, methodId);
+                        return;
+                    }
+                    Binding binding = new Binding(queue, routingKey);
+                    if (!exchange.bindings.contains(binding)) {
+                        exchange.bindings.add(binding);
+                    }
+                    if (!noWait) {
+                        send(number, new Payload(50, 21));
+                    }
+                }
+                // queue.purge
+                case 50030 -> {
+                    args.getShort();
+                    Queue queue = queues.get(shortStr(args));
+                    boolean noWait = (args.get() & 1) != 0;
+                    int count = queue == null ? 0 : queue.messages.size();
+                    if (queue != null) {
+                        queue.messages.clear();
+                    }
+                    if (!noWait) {
+                        send(number, new Payload(50, 31).longInt(count));
+                    }
+                }
+                // queue.delete
+                case 50040 -> {
+                    args.getShort();
+                    Queue queue = queues.get(shortStr(args));
+                    boolean noWait = (args.get() & 4) != 0;
+                    int count = queue == null ? 0 : queue.messages.size();
+                    if (queue != null) {
+                        deleteQueue(queue);
+                    }
+                    if (!noWait) {
+                        send(number, new Payload(50, 41).longInt(count));
+                    }
+                }
+                // queue.unbind
+                case 50050 -> {
+                    args.getShort();
+                    Queue queue = queues.get(shortStr(args));
+                    Exchange exchange = exchanges.get(shortStr(args));
+                    String routingKey = shortStr(args);
+                    if (exchange != null) {
+                        exchange.bindings.remove(new Binding(queue, routingKey));
+                    }
+                    send(number, new Payload(50, 51));
+                }
+                // basic.qos
+                case 60010 -> {
+                    args.getInt();
+                    channel.prefetchCount = args.getShort() & 0xFFFF;
+                    send(number, new Payload(60, 11));
+                    for (Consumer consumer : channel.consumers.values()) {
+                        dispatch(consumer.queue);
+                    }
+                }
+                // basic.consume
+                case 60020 -> {
+                    args.getShort();
+                    Queue queue = queues.get(shortStr(args));
+                    String tag = shortStr(args);
+                    int bits = args.get();
+                    boolean noAck = (bits & 2) != 0;
+                    boolean noWait = (bits & 8) != 0;
+                    if (queue == null) {
+                        closeChannel(channel, NOT_FOUND, "NOT_FOUND - no queue", classId, methodId);
+                        return;
+                    }
+                    if (tag.isEmpty()) {
+                        tag = "amq.ctag-" + nameSequence.incrementAndGet();
+                    }
+                    Consumer consumer = new Consumer(channel, tag, queue, noAck);
+                    channel.consumers.put(tag, consumer);
+                    queue.consumers.add(consumer);
+                    queue.hadConsumer = true;
+                    if (!noWait) {
+                        send(number, new Payload(60, 21).shortStr(tag));
+                    }
+                    dispatch(queue);
+                }
+                // basic.cancel
+                case 60030 -> {
+                    String tag = shortStr(args);
+                    boolean noWait = (args.get() & 1) != 0;
+                    Consumer consumer = channel.consumers.remove(tag);
+                    if (consumer != null) {
+                        removeConsumer(consumer);
+                    }
+                    if (!noWait) {
+                        send(number, new Payload(60, 31).shortStr(tag));
+                    }
+                }
+                // basic.publish ，等待之后的内容帧
+                case 60040 -> {
+                    args.getShort();
+                    channel.pendingExchange = shortStr(args);
+                    channel.pendingRoutingKey = shortStr(args);
+                    channel.pendingMandatory = (args.get() & 1) != 0;
+                }
+                // basic.get
+                case 60070 -> {
+                    args.getShort();
+                    Queue queue = queues.get(shortStr(args));
+                    boolean noAck = (args.get() & 1) != 0;
+                    if (queue == null) {
+                        closeChannel(channel, NOT_FOUND, "NOT_FOUND - no queue", classId, methodId);
+                        return;
+                    }
+                    Message message = queue.messages.pollFirst();
+                    if (message == null) {
+                        send(number, new Payload(60, 72).shortStr(""));
+                        return;
+                    }
+                    long deliveryTag = ++channel.deliveryTagSequence;
+                    if (!noAck) {
+                        channel.unacked.put(deliveryTag, new Unacked(queue, message, null));
+                    }
+                    Payload method = new Payload(60, 71).longLong(deliveryTag).octet(message.redelivered() ? 1 : 0)
+                            .shortStr(message.exchange()).shortStr(message.routingKey()).longInt(queue.messages.size());
+                    sendWithContent(number, method, message);
+                    deliverCount.incrementAndGet();
+                }
+                // basic.ack
+                case 60080 -> channel.settle(args.getLong(), (args.get() & 1) != 0, null);
+                // basic.reject
+                case 60090 -> channel.settle(args.getLong(), false, (args.get() & 1) != 0);
+                // basic.recover-async 以及 basic.recover
+                case 60100, 60110 -> {
+                    channel.settle(0, true, true);
+                    if (methodId == 110) {
+                        send(number, new Payload(60, 111));
+                    }
+                }
+                // basic.nack
+                case 60120 -> {
+                    long deliveryTag = args.getLong();
+                    int bits = args.get();
+                    channel.settle(deliveryTag, (bits & 1) != 0, (bits & 2) != 0);
+                }
+                // confirm.select
+                case 85010 -> {
+                    channel.confirm = true;
+                    if ((args.get() & 1) == 0) {
+                        send(number, new Payload(85, 11));
+                    }
+                }
+                default -> closeChannel(channel, COMMAND_INVALID, "COMMAND_INVALID - unsupported method " + classId + "." + methodId, classId, methodId);
+            }
+        }
+
+        private void handleContent(Channel channel, int type, ByteBuffer payload) throws IOException {
+            if (type == FRAME_HEADER) {
+                payload.getShort();
+                payload.getShort();
+                channel.pendingBodySize = payload.getLong();
+                channel.pendingProperties = new byte[payload.remaining()];
+                payload.get(channel.pendingProperties);
+                channel.pendingBody = new ByteArrayOutputStream((int) channel.pendingBodySize);
+            } else if (type == FRAME_BODY) {
+                channel.pendingBody.write(payload.array(), payload.position(), payload.remaining());
+            }
+            if (channel.pendingBody != null && channel.pendingBody.size() >= channel.pendingBodySize) {
+                Message message = new Message(channel.pendingExchange, channel.pendingRoutingKey, channel.pendingProperties,
+                        channel.pendingBody.toByteArray(), false);
+                boolean mandatory = channel.pendingMandatory;
+                channel.pendingBody = null;
+                channel.pendingProperties = null;
+                publish(channel, message, mandatory);
+            }
+        }
+
+        private void publish(Channel channel, Message message, boolean mandatory) throws IOException {
+            publishCount.incrementAndGet();
+            Exchange exchange = exchanges.get(message.exchange());
+            if (exchange == null) {
+                closeChannel(channel, NOT_FOUND, "NOT_FOUND - no exchange '" + message.exchange() + "'", 60, 40);
+                return;
+            }
+            List<Queue> targets = exchange.route(message.routingKey(), queues);
+            if (targets.isEmpty() && mandatory) {
+                Payload method = new Payload(60, 50).shortInt(NO_ROUTE).shortStr("NO_ROUTE")
+                        .shortStr(message.exchange()).shortStr(message.routingKey());
+                sendWithContent(channel.number, method, message);
+            }
+            // 与 rabbitmq 一样，无法路由的消息也会被确认
+            if (channel.confirm) {
+                send(channel.number, new Payload(60, 80).longLong(++channel.publishSequence).octet(0));
+                confirmCount.incrementAndGet();
+            }
+            for (Queue queue : targets) {
+                queue.messages.addLast(message);
+                dispatch(queue);
+            }
+        }
+
+        private void closeChannel(Channel channel, int code, String text, int classId, int methodId) throws IOException {
+            channel.release();
+            channel.closing = true;
+            send(channel.number, new Payload(20, 40).shortInt(code).shortStr(text).shortInt(classId).shortInt(methodId));
+        }
+
+        /**
+         * 连接断开时释放所有的 channel ，并删除该连接独占的队列
+         */
+        private void release() {
+            closed = true;
+            broken = true;
+            for (Channel channel : channels.values()) {
+                channel.release();
+            }
+            channels.clear();
+            for (Queue queue : new ArrayList<>(queues.values())) {
+                if (queue.exclusiveOwner == this) {
+                    deleteQueue(queue);
+                }
+            }
+        }
+
+        private void send(int channel, Payload method) throws IOException {
+            byte[] payload = method.toByteArray();
+            synchronized (out) {
+                if (broken) {
+                    return;
+                }
+                writeFrame(FRAME_METHOD, channel, payload, 0, payload.length);
+                out.flush();
+            }
+        }
+
+        /**
+         * 方法帧，内容头帧以及内容体帧必须连续地写入，中间不能插入同一个 channel 的其他帧
+         */
+        private void sendWithContent(int channel, Payload method, Message message) throws IOException {
+            byte[] methodPayload = method.toByteArray();
+            Payload header = new Payload(60, 0).longLong(message.body().length);
+            header.write(message.properties(), 0, message.properties().length);
+            byte[] headerPayload = header.toByteArray();
+            int maxBody = frameMax - 8;
+            synchronized (out) {
+                if (broken) {
+                    return;
+                }
+                try {
+                    writeFrame(FRAME_METHOD, channel, methodPayload, 0, methodPayload.length);
+                    writeFrame(FRAME_HEADER, channel, headerPayload, 0, headerPayload.length);
+                    for (int offset = 0; offset < message.body().length; offset += maxBody) {
+                        writeFrame(FRAME_BODY, channel, message.body(), offset, Math.min(maxBody, message.body().length - offset));
+                    }
+                    out.flush();
+                } catch (IOException exception) {
+                    broken = true;
+                    throw exception;
+                }
+            }
+        }
+
+        private void writeFrame(int type, int channel, byte[] payload, int offset, int length) throws IOException {
+            out.write(type);
+            out.write(channel >>> 8);
+            out.write(channel);
+            out.write(length >>> 24);
+            out.write(length >>> 16);
+            out.write(length >>> 8);
+            out.write(length);
+            out.write(payload, offset, length);
+            out.write(FRAME_END);
+        }
+    }
+
+    /**
+     * 在调用方持有锁的情况下，将队列中的消息轮流投递给还有 prefetch 余量的 consumer
+     */
+    private void dispatch(Queue queue) {
+        while (!queue.messages.isEmpty() && !queue.consumers.isEmpty()) {
+            Consumer consumer = null;
+            for (int i = 0; i < queue.consumers.size(); i++) {
+                Consumer candidate = queue.consumers.get((queue.nextConsumer + i) % queue.consumers.size());
+                if (candidate.hasCapacity()) {
+                    consumer = candidate;
+                    queue.nextConsumer = (queue.nextConsumer + i + 1) % queue.consumers.size();
+                    break;
+                }
+            }
+            if (consumer == null) {
+                return;
+            }
+            Message message = queue.messages.pollFirst();
+            try {
+                consumer.channel.deliver(consumer, message);
+            } catch (IOException exception) {
+                // consumer 的连接已经断开，不再向它投递，消息已经记录为未确认，由该连接的线程在释放时放回队列
+                queue.consumers.remove(consumer);
+            }
+        }
+    }
+
+    private void removeConsumer(Consumer consumer) {
+        Queue queue = consumer.queue;
+        queue.consumers.remove(consumer);
+        if (queue.autoDelete && queue.hadConsumer && queue.consumers.isEmpty()) {
+            deleteQueue(queue);
+        }
+    }
+
+    private void deleteQueue(Queue queue) {
+        queues.remove(queue.name, queue);
+        for (Exchange exchange : exchanges.values()) {
+            exchange.bindings.removeIf(binding -> binding.queue() == queue);
+        }
+    }
+
+    private static String shortStr(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.get() & 0xFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 方法帧的 payload ，以 class-id 以及 method-id 开头
+     */
+    private static final class Payload extends ByteArrayOutputStream {
+
+        private Payload(int classId, int methodId) {
+            super(64);
+            shortInt(classId);
+            shortInt(methodId);
+        }
+
+        private Payload octet(int value) {
+            write(value);
+            return this;
+        }
+
+        private Payload shortInt(int value) {
+            write(value >>> 8);
+            write(value);
+            return this;
+        }
+
+        private Payload longInt(int value) {
+            shortInt(value >>> 16);
+            return shortInt(value & 0xFFFF);
+        }
+
+        private Payload longLong(long value) {
+            longInt((int) (value >>> 32));
+            return longInt((int) value);
+        }
+
+        private Payload shortStr(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            write(bytes.length);
+            write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        private Payload longStr(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            longInt(bytes.length);
+            write(bytes, 0, bytes.length);
+            return this;
+        }
+
+        /**
+         * 只支持字符串，布尔值以及嵌套的表，足够用于 connection.start 的 server-properties
+         */
+        private Payload table(Map<String, Object> table) {
+            Payload fields = new Payload(0, 0);
+            fields.reset();
+            for (Map.Entry<String, Object> entry : table.entrySet()) {
+                fields.shortStr(entry.getKey());
+                Object value = entry.getValue();
+                if (value instanceof Boolean bool) {
+                    fields.octet('t').octet(bool ? 1 : 0);
+                } else if (value instanceof Map<?, ?> nested) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> nestedTable = (Map<String, Object>) nested;
+                    fields.octet('F').table(nestedTable);
+                } else {
+                    fields.octet('S').longStr(String.valueOf(value));
+                }
+            }
+            longInt(fields.size());
+            write(fields.buf, 0, fields.size());
+            return this;
+        }
+    }
+
+}
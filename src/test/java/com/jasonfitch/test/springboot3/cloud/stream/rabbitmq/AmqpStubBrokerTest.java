@@ -0,0 +1,187 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 不需要 rabbitmq ，只使用 amqp-client 校验替身 broker 自身的行为，rabbitmq binder 的测试以及基准测试依赖于它的正确性
+ */
+class AmqpStubBrokerTest {
+
+    @Test
+    void whenPublishingToTopicExchange_thenMatchingQueuesReceiveWithProperties() throws Exception {
+        try (AmqpStubBroker broker = new AmqpStubBroker();
+             Connection connection = connect(broker)) {
+            Channel channel = connection.createChannel();
+            channel.exchangeDeclare("logs", "topic", true);
+            channel.queueDeclare("logs.all", true, false, false, null);
+            channel.queueDeclare("logs.error", true, false, false, null);
+            channel.queueBind("logs.all", "logs", "#");
+            channel.queueBind("logs.error", "logs", "*.error");
+
+            AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder().contentType("text/plain").build();
+            channel.basicPublish("logs", "app.error", properties, "boom".getBytes(StandardCharsets.UTF_8));
+            channel.basicPublish("logs", "app.info", null, "fine".getBytes(StandardCharsets.UTF_8));
+            channel.basicPublish("logs", "app.sub.error", null, "deep".getBytes(StandardCharsets.UTF_8));
+
+            // basic.publish 没有响应，之后同一个 channel 上的同步方法返回时前面的消息已经被路由
+            assertThat(channel.queueDeclarePassive("logs.all").getMessageCount()).isEqualTo(3);
+            assertThat(broker.getMessageCount("logs.error")).isEqualTo(1);
+
+            GetResponse response = channel.basicGet("logs.error", true);
+            assertThat(new String(response.getBody(), StandardCharsets.UTF_8)).isEqualTo("boom");
+            assertThat(response.getProps().getContentType()).isEqualTo("text/plain");
+            assertThat(response.getEnvelope().getRoutingKey()).isEqualTo("app.error");
+            assertThat(channel.basicGet("logs.error", true)).isNull();
+        }
+    }
+
+    @Test
+    void whenConfirmsAreSelected_thenEveryPublishIsConfirmed() throws Exception {
+        try (AmqpStubBroker broker = new AmqpStubBroker();
+             Connection connection = connect(broker)) {
+            Channel channel = connection.createChannel();
+            channel.queueDeclare("confirmed", false, false, false, null);
+            channel.confirmSelect();
+            for (int i = 0; i < 100; i++) {
+                channel.basicPublish("", "confirmed", null, ("message-" + i).getBytes(StandardCharsets.UTF_8));
+            }
+
+            channel.waitForConfirmsOrDie(5000);
+            assertThat(broker.getConfirmCount()).isEqualTo(100);
+            assertThat(broker.getMessageCount("confirmed")).isEqualTo(100);
+        }
+    }
+
+    @Test
+    void whenPrefetchIsReached_thenDeliveryWaitsForAcks() throws Exception {
+        try (AmqpStubBroker broker = new AmqpStubBroker();
+             Connection connection = connect(broker)) {
+            Channel publisher = connection.createChannel();
+            publisher.queueDeclare("prefetched", false, false, false, null);
+            for (int i = 0; i < 10; i++) {
+                publisher.basicPublish("", "prefetched", null, new byte[]{(byte) i});
+            }
+
+            Channel consumerChannel = connection.createChannel();
+            consumerChannel.basicQos(3);
+            BlockingQueue<Long> deliveries = new LinkedBlockingQueue<>();
+            consumerChannel.basicConsume("prefetched", false, new DefaultConsumer(consumerChannel) {
+                @Override
+                public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+                    deliveries.add(envelope.getDeliveryTag());
+                }
+            });
+
+            for (int i = 0; i < 3; i++) {
+                assertThat(deliveries.poll(5, TimeUnit.SECONDS)).isNotNull();
+            }
+            assertThat(deliveries.poll(200, TimeUnit.MILLISECONDS)).isNull();
+            assertThat(broker.getMessageCount("prefetched")).isEqualTo(7);
+
+            // multiple 确认之后继续投递
+            consumerChannel.basicAck(3, true);
+            for (int i = 0; i < 3; i++) {
+                assertThat(deliveries.poll(5, TimeUnit.SECONDS)).isNotNull();
+            }
+            assertThat(broker.getAckCount()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void whenChannelClosesWithUnackedMessages_thenTheyAreRedelivered() throws Exception {
+        try (AmqpStubBroker broker = new AmqpStubBroker();
+             Connection connection = connect(broker)) {
+            Channel channel = connection.createChannel();
+            channel.queueDeclare("redelivered", false, false, false, null);
+            channel.basicPublish("", "redelivered", null, "first".getBytes(StandardCharsets.UTF_8));
+            channel.basicPublish("", "redelivered", null, "second".getBytes(StandardCharsets.UTF_8));
+
+            Channel consumer = connection.createChannel();
+            assertThat(consumer.basicGet("redelivered", false)).isNotNull();
+            consumer.close();
+
+            GetResponse first = channel.basicGet("redelivered", true);
+            assertThat(new String(first.getBody(), StandardCharsets.UTF_8)).isEqualTo("first");
+            assertThat(first.getEnvelope().isRedeliver()).isTrue();
+            assertThat(new String(channel.basicGet("redelivered", true).getBody(), StandardCharsets.UTF_8)).isEqualTo("second");
+        }
+    }
+
+    @Test
+    void whenBodyIsLargerThanFrameMax_thenItIsSplitAndReassembled() throws Exception {
+        try (AmqpStubBroker broker = new AmqpStubBroker();
+             Connection connection = connect(broker)) {
+            Channel channel = connection.createChannel();
+            channel.queueDeclare("large", false, false, false, null);
+            byte[] body = new byte[300 * 1024];
+            for (int i = 0; i < body.length; i++) {
+                body[i] = (byte) i;
+            }
+            channel.basicPublish("", "large", null, body);
+
+            assertThat(channel.basicGet("large", true).getBody()).isEqualTo(body);
+        }
+    }
+
+    @Test
+    void whenDeclaringMissingQueuePassively_thenChannelIsClosedWithNotFound() throws Exception {
+        try (AmqpStubBroker broker = new AmqpStubBroker();
+             Connection connection = connect(broker)) {
+            Channel channel = connection.createChannel();
+
+            IOException exception = assertThrows(IOException.class, () -> channel.queueDeclarePassive("missing"));
+
+            assertThat(exception.getCause().getMessage()).contains("404");
+            assertThat(channel.isOpen()).isFalse();
+            // 其他的 channel 不受影响
+            assertThat(connection.createChannel().queueDeclare().getQueue()).startsWith("amq.gen-");
+        }
+    }
+
+    @Test
+    void whenExclusiveQueueOwnerDisconnects_thenQueueIsDeleted() throws Exception {
+        try (AmqpStubBroker broker = new AmqpStubBroker()) {
+            String queue;
+            try (Connection connection = connect(broker)) {
+                queue = connection.createChannel().queueDeclare("", false, true, false, null).getQueue();
+                Channel channel = connection.createChannel();
+                channel.basicPublish("", queue, null, new byte[0]);
+                assertThat(channel.queueDeclarePassive(queue).getMessageCount()).isEqualTo(1);
+            }
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (broker.getConsumerCount(queue) + broker.getMessageCount(queue) > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            try (Connection connection = connect(broker)) {
+                assertThrows(IOException.class, () -> connection.createChannel().queueDeclarePassive(queue));
+            }
+        }
+    }
+
+    private static Connection connect(AmqpStubBroker broker) throws Exception {
+        ConnectionFactory factory = new ConnectionFactory();
+        factory.setHost(broker.getHost());
+        factory.setPort(broker.getPort());
+        factory.setRequestedHeartbeat(0);
+        return factory.newConnection();
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class AsciiCaseTest {
+
+    @Test
+    void whenUpperCasingAsciiOfAnyLength_thenScalarMatchesToUpperCase() {
+        Random random = new Random(42);
+        for (int length = 0; length < 300; length++) {
+            String text = randomAscii(random, length);
+            byte[] upper = AsciiCase.toUpperCaseScalar(text.getBytes(StandardCharsets.US_ASCII));
+            assertThat(new String(upper, StandardCharsets.US_ASCII)).isEqualTo(text.toUpperCase());
+        }
+    }
+
+    @Test
+    void whenUpperCasingAsciiOfAnyLength_thenVectorMatchesToUpperCase() {
+        assumeTrue(AsciiCase.VECTOR_AVAILABLE, "jdk.incubator.vector is not added");
+
+        Random random = new Random(42);
+        // 覆盖不足一个向量宽度，正好若干个向量宽度以及带有剩余部分的长度
+        for (int length = 0; length < 300; length++) {
+            String text = randomAscii(random, length);
+            byte[] upper = AsciiCaseVector.toUpperCase(text.getBytes(StandardCharsets.US_ASCII));
+            assertThat(new String(upper, StandardCharsets.US_ASCII)).isEqualTo(text.toUpperCase());
+        }
+    }
+
+    @Test
+    void whenBytesContainNonAscii_thenNullIsReturnedAtAnyPosition() {
+        byte[] ascii = "a".repeat(200).getBytes(StandardCharsets.US_ASCII);
+        for (int position = 0; position < ascii.length; position += 7) {
+            byte[] bytes = ascii.clone();
+            bytes[position] = (byte) 0xC3;
+            assertThat(AsciiCase.toUpperCaseScalar(bytes)).isNull();
+            assertThat(AsciiCase.toUpperCase(bytes)).isNull();
+        }
+    }
+
+    @Test
+    void whenThereIsNoLowerCase_thenInputIsReturnedAsIs() {
+        byte[] bytes = "2024-12-01 12:00:00.000 WARN [MAIN] C.J.T.LOGENRICHER - DISK FULL".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(AsciiCase.toUpperCaseScalar(bytes)).isSameAs(bytes);
+        assertThat(AsciiCase.toUpperCase(bytes)).isSameAs(bytes);
+    }
+
+    @Test
+    void whenUpperCasing_thenInputIsNotModified() {
+        byte[] bytes = "hello world, this message is longer than one vector".getBytes(StandardCharsets.US_ASCII);
+        byte[] copy = bytes.clone();
+
+        AsciiCase.toUpperCase(bytes);
+
+        assertThat(bytes).isEqualTo(copy);
+    }
+
+    @Test
+    void whenCharsetIsNotAsciiTransparent_thenFastPathIsNotApplicable() {
+        assertThat(AsciiCase.isApplicable(StandardCharsets.UTF_16)).isFalse();
+        assertThat(AsciiCase.isApplicable(Charset.forName("ISO-2022-JP"))).isFalse();
+    }
+
+    private static String randomAscii(Random random, int length) {
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append((char) (0x20 + random.nextInt(0x7F - 0x20)));
+        }
+        return text.toString();
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountMinSketchTest {
+
+    @Test
+    void whenAddingKeys_thenEstimatesNeverUnderCount() {
+        CountMinSketch sketch = new CountMinSketch(256, 4);
+        Map<String, Long> actual = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            // 少数 key 占大部分的次数
+            String key = "log-" + (random.nextInt(10) < 8 ? random.nextInt(5) : random.nextInt(1000));
+            sketch.add(key, 1);
+            actual.merge(key, 1L, Long::sum);
+        }
+
+        long errorBound = (long) Math.ceil(Math.E / 256 * sketch.getTotal());
+        for (Map.Entry<String, Long> entry : actual.entrySet()) {
+            assertThat(sketch.estimate(entry.getKey())).isBetween(entry.getValue(), entry.getValue() + errorBound);
+        }
+        assertThat(sketch.getTotal()).isEqualTo(10_000);
+    }
+
+    @Test
+    void whenKeysHaveSameHashCode_thenTheyDoNotCollideInEveryRow() {
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+        CountMinSketch sketch = new CountMinSketch(1024, 4);
+
+        sketch.add("Aa", 100);
+
+        assertThat(sketch.estimate("BB")).isZero();
+    }
+
+    @Test
+    void whenMerging_thenCountsAreSummed() {
+        CountMinSketch first = new CountMinSketch(64, 3);
+        CountMinSketch second = new CountMinSketch(64, 3);
+        first.add("a", 3);
+        second.add("a", 4);
+        second.add("b", 1);
+
+        first.merge(second);
+
+        assertThat(first.estimate("a")).isEqualTo(7);
+        assertThat(first.estimate("b")).isGreaterThanOrEqualTo(1);
+        assertThat(first.getTotal()).isEqualTo(8);
+
+        first.clear();
+        assertThat(first.estimate("a")).isZero();
+    }
+
+    @Test
+    void whenManyDistinctKeys_thenHeavyHitterIsKeptAsCandidate() {
+        HeavyHitters hitters = new HeavyHitters(8);
+        CountMinSketch sketch = new CountMinSketch(256, 4);
+        for (int i = 0; i < 1000; i++) {
+            String key = i % 4 == 0 ? "heavy" : "rare-" + i;
+            hitters.add(key);
+            sketch.add(key, 1);
+        }
+
+        assertThat(hitters.getCandidates()).hasSizeLessThanOrEqualTo(8).contains("heavy");
+        assertThat(HeavyHitters.top(hitters.getCandidates(), sketch, 1).get(0).getKey()).isEqualTo("heavy");
+    }
+
+}
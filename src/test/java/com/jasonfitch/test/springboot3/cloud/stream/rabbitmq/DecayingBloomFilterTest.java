@@ -0,0 +1,62 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DecayingBloomFilterTest {
+
+    @Test
+    void whenKeyIsAddedTwice_thenSecondIsDuplicate() {
+        DecayingBloomFilter filter = new DecayingBloomFilter(1000, 0.01);
+
+        assertThat(filter.putIfAbsent("hello")).isTrue();
+        assertThat(filter.putIfAbsent("hello")).isFalse();
+        assertThat(filter.putIfAbsent("world")).isTrue();
+    }
+
+    @Test
+    void whenKeysDifferOnlyInNonAsciiChars_thenTheyAreDistinct() {
+        DecayingBloomFilter filter = new DecayingBloomFilter(1000, 0.01);
+
+        assertThat(filter.putIfAbsent("处理日志")).isTrue();
+        assertThat(filter.putIfAbsent("处理日誌")).isTrue();
+        assertThat(filter.putIfAbsent("处理日志")).isFalse();
+    }
+
+    @Test
+    void whenTwoGenerationsPass_thenKeyExpires() {
+        DecayingBloomFilter filter = new DecayingBloomFilter(1000, 0.01);
+        filter.putIfAbsent("hello");
+
+        filter.rotate();
+        assertThat(filter.putIfAbsent("hello")).isFalse();
+
+        // 上一次查询将其刷新到了当前一代，所以再轮换一次仍然存在
+        filter.rotate();
+        assertThat(filter.putIfAbsent("hello")).isFalse();
+
+        filter.rotate();
+        filter.rotate();
+        assertThat(filter.putIfAbsent("hello")).isTrue();
+    }
+
+    @Test
+    void whenFilledToCapacity_thenFalsePositiveRateIsNearTarget() {
+        DecayingBloomFilter filter = new DecayingBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.putIfAbsent("inserted-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("absent-" + i)) {
+                falsePositives++;
+            }
+        }
+
+        assertThat(falsePositives).isLessThan(200);
+        assertThat(filter.mightContain("inserted-0")).isTrue();
+    }
+
+}
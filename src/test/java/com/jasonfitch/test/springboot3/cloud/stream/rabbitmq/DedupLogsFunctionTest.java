@@ -0,0 +1,78 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.cloud.stream.binder.test.EnableTestBinder;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * window 足够长，测试期间不会轮换，也不会输出摘要
+ */
+@EnableTestBinder
+@SpringBootTest(properties = {"spring.cloud.function.definition=dedupLogs;processLogs;enrichLogMessage", "log.dedup.window=1h"})
+class DedupLogsFunctionTest {
+
+    @Autowired
+    private InputDestination input;
+
+    @Autowired
+    private OutputDestination output;
+
+    @Autowired
+    private StreamBridge streamBridge;
+
+    @Test
+    void whenSameLogIsRepeated_thenOnlyOneCopyReachesProcessLogs() {
+        for (int i = 0; i < 50; i++) {
+            input.send(MessageBuilder.withPayload("hello duplicated log").build(), "queue.log.messages.raw");
+        }
+        input.send(MessageBuilder.withPayload("hello").build(), "queue.log.messages.raw");
+
+        Set<String> received = new HashSet<>();
+        for (int i = 0; i < 2; i++) {
+            Message<byte[]> message = output.receive(5000L, "queue.pretty.log.messages");
+            assertThat(message).isNotNull();
+            received.add(new String(message.getPayload(), StandardCharsets.UTF_8));
+        }
+
+        assertThat(received).containsExactlyInAnyOrder("[Baeldung] - hello duplicated log", "hello");
+        assertThat(output.receive(500L, "queue.pretty.log.messages")).isNull();
+    }
+
+    /**
+     * 使用独立的 {@link LogDeduplicator} ，window 很短，输入结束之后定时器也随之停止，函数返回的 Flux 能够结束
+     */
+    @Test
+    void whenInputCompletes_thenSummaryTimerStops() {
+        LogDeduplicator deduplicator = new LogDeduplicator(Duration.ofMillis(200), 10_000, 0.001,
+                "headers['source']", 0, 10, Map.of());
+        Flux<Message<String>> logs = Flux.just("hello", "hello", "hello")
+                .map(log -> MessageBuilder.withPayload(log).build())
+                .delayElements(Duration.ofMillis(150));
+
+        List<Message<String>> forwarded = new LogEnricherApplication().dedupLogs(deduplicator, streamBridge)
+                .apply(logs)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(forwarded).extracting(Message::getPayload).containsExactly("hello");
+        // 期间输出的摘要经过 processLogs 到达 queue.pretty.log.messages ，不影响其他的测试
+        output.clear();
+    }
+
+}
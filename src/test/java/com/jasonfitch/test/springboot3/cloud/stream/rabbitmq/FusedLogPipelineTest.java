@@ -0,0 +1,72 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binder.test.EnableTestBinder;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.function.Function;
+
+import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+
+/**
+ * 开启 log.pipeline.fused 之后，外部可见的行为应该与 {@link LogEnricherApplicationUnitTest} 中的完全相同
+ */
+@EnableTestBinder
+@SpringBootTest(properties = "log.pipeline.fused=true")
+class FusedLogPipelineTest {
+
+    @Autowired
+    private InputDestination input;
+
+    @Autowired
+    private OutputDestination output;
+
+    @Autowired
+    @Qualifier("processLogs")
+    private Function<String, Message<String>> processLogs;
+
+    @Test
+    void whenProcessingLongLogMessage_thenItsEnrichedWithoutAnotherHop() {
+        Message<String> routed = processLogs.apply("hello processLogs");
+
+        // 直接发送到 enrichLogMessage-out-0 的目的地，而不是 enrichLogMessage-in-0
+        assertThat(routed.getPayload()).isEqualTo("[Baeldung] - hello processLogs");
+        assertThat(routed.getHeaders().get(LogBatches.SEND_TO_DESTINATION)).isEqualTo("queue.pretty.log.messages");
+    }
+
+    @Test
+    void whenLevelRoutingIsNotConfigured_thenStructuredLogIsRoutedByLength() {
+        Message<String> routed = processLogs.apply("2024-12-01 12:00:00.000 INFO  [main] c.j.t.LogEnricher - processing log message");
+
+        assertThat(routed.getPayload()).startsWith("[Baeldung] - ");
+    }
+
+    @Test
+    void whenProcessingLongLogMessage_thenItsEnrichedWithPrefix() {
+        input.send(MessageBuilder.withPayload("hello processLogs").build(), "processLogs-in-0");
+
+        Message<byte[]> receiveMessage = output.receive(1000L, "queue.pretty.log.messages");
+
+        assertThat(receiveMessage.getPayload())
+                .asString()
+                .isEqualTo("[Baeldung] - hello processLogs");
+    }
+
+    @Test
+    void whenProcessingShortLogMessage_thenItsNotEnrichedWithPrefix() {
+        input.send(MessageBuilder.withPayload("hello").setHeader("contentType", "text/plain").build(), "processLogs-in-0");
+
+        Message<byte[]> receiveMessage = output.receive(1000L, "queue.pretty.log.messages");
+
+        assertThat(receiveMessage.getPayload())
+                .asString()
+                .isEqualTo("hello");
+    }
+
+}
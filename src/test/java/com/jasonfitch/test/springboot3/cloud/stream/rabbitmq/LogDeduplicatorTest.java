@@ -0,0 +1,73 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogDeduplicatorTest {
+
+    private final LogDeduplicator deduplicator = new LogDeduplicator(Duration.ofSeconds(10), 10_000, 0.001,
+            "headers['source']", 0, 2, Map.of("payments", 0.25));
+
+    @Test
+    void whenLogIsRepeated_thenOnlyTheFirstIsForwarded() {
+        int forwarded = send("disk full", null, 100);
+
+        assertThat(forwarded).isEqualTo(1);
+        assertThat(deduplicator.getSuppressedCount()).isEqualTo(99);
+    }
+
+    @Test
+    void whenKeyHasSamplingRate_thenThatShareOfDuplicatesIsForwarded() {
+        int forwarded = send("payment timeout", "payments", 101);
+
+        // 第一条不是重复，其余 100 条重复的日志中转发 25 条
+        assertThat(forwarded).isEqualTo(1 + 25);
+    }
+
+    @Test
+    void whenRotating_thenSummaryReportsSuppressedDuplicates() {
+        send("disk full", null, 100);
+        send("connection reset", null, 10);
+        send("rare", null, 2);
+
+        List<Message<String>> summaries = deduplicator.rotate();
+
+        assertThat(summaries).extracting(Message::getPayload).containsExactly(
+                "[suppressed 99 duplicates] disk full",
+                "[suppressed 9 duplicates] connection reset");
+        assertThat(summaries.get(0).getHeaders().get(LogDeduplicator.SUPPRESSED_COUNT_HEADER)).isEqualTo(99L);
+        assertThat(deduplicator.rotate()).isEmpty();
+    }
+
+    @Test
+    void whenUniqueLogsArrive_thenAllAreForwarded() {
+        int forwarded = 0;
+        for (int i = 0; i < 1000; i++) {
+            forwarded += send("unique " + i, null, 1);
+        }
+
+        assertThat(forwarded).isEqualTo(1000);
+    }
+
+    private int send(String log, String source, int times) {
+        int forwarded = 0;
+        for (int i = 0; i < times; i++) {
+            MessageBuilder<String> builder = MessageBuilder.withPayload(log);
+            if (source != null) {
+                builder.setHeader("source", source);
+            }
+            if (deduplicator.filter(builder.build()) != null) {
+                forwarded++;
+            }
+        }
+        return forwarded;
+    }
+
+}
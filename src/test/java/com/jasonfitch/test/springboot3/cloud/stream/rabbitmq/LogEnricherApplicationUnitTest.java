@@ -2,7 +2,9 @@ package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binder.BinderHeaders;
 import org.springframework.cloud.stream.binder.test.EnableTestBinder;
 import org.springframework.cloud.stream.binder.test.FunctionBindingTestUtils;
 import org.springframework.cloud.stream.binder.test.InputDestination;
@@ -11,10 +13,19 @@ import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.support.MessageBuilder;
 
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
 @EnableTestBinder
-@SpringBootTest
+@SpringBootTest(properties = {
+        "spring.cloud.function.definition=enrichLogMessage;enrichLogMessageBytes;processLogs;processLogsBytes;highlightLogs;enrichLogMessageBatch;processLogsBatch;highlightLogsBatch",
+        "log.routing.enrich-levels=WARN,ERROR,FATAL"
+})
 class LogEnricherApplicationUnitTest {
 
     @Autowired
@@ -23,6 +34,10 @@ class LogEnricherApplicationUnitTest {
     @Autowired
     private OutputDestination output;
 
+    @Autowired
+    @Qualifier("processLogsBytes")
+    private Function<LogMessage, Message<LogMessage>> processLogsBytes;
+
     /**
      * 关于这里为什么发送给 queue.log.messages 的消息能被 queue.pretty.log.messages 所接收的根本原因就是 spring cloud stream 内部处理了映射关系
      * 这里的核心就是将 InputDestination 对应 【enrichLogMessage-in-0】 ，将 OutputDestination 对应 【enrichLogMessage-out-0】
@@ -77,6 +92,54 @@ class LogEnricherApplicationUnitTest {
                 .isEqualTo("hello");
     }
 
+    @Test
+    void whenProcessingStructuredInfoLog_thenItsNotEnrichedRegardlessOfLength() {
+        String log = "2024-12-01 12:00:00.000 INFO  [main] c.j.t.LogEnricher - processing log message";
+        input.send(MessageBuilder.withPayload(log).build(), "processLogs-in-0");
+
+        Message<byte[]> receiveMessage = output.receive(1000L, "queue.pretty.log.messages");
+
+        assertThat(receiveMessage.getPayload())
+                .asString()
+                .isEqualTo(log);
+    }
+
+    @Test
+    void whenProcessingStructuredErrorLog_thenItsEnrichedWithPrefix() {
+        String log = "2024-12-01T12:00:00.000Z ERROR 15051 --- [app] [main] c.j.t.LogEnricher : failed";
+        input.send(MessageBuilder.withPayload(log).build(), "processLogs-in-0");
+
+        Message<byte[]> receiveMessage = output.receive(1000L, "queue.pretty.log.messages");
+
+        assertThat(receiveMessage.getPayload())
+                .asString()
+                .isEqualTo("[Baeldung] - " + log);
+    }
+
+    @Test
+    void whenRoutingStructuredBytes_thenTheyAreForwardedWithoutDecoding() {
+        byte[] bytes = "2024-12-01 12:00:00.000 INFO  [main] c.j.t.LogEnricher - processing log message".getBytes(StandardCharsets.UTF_8);
+        LogMessage log = LogMessage.ofBytes(bytes, StandardCharsets.UTF_8);
+
+        Message<LogMessage> routed = processLogsBytes.apply(log);
+
+        assertThat(routed.getPayload()).isSameAs(log);
+        assertThat(log.isDecoded()).isFalse();
+        assertThat(routed.getHeaders().get(LogBatches.SEND_TO_DESTINATION)).isEqualTo(LogEnricherApplication.PRETTY_DESTINATION);
+    }
+
+    @Test
+    void whenProcessingStructuredErrorLogBytes_thenItsEnrichedWithPrefix() {
+        String log = "2024-12-01T12:00:00.000Z ERROR 15051 --- [app] [main] c.j.t.LogEnricher : failed";
+        input.send(MessageBuilder.withPayload(log.getBytes(StandardCharsets.UTF_8)).build(), "processLogsBytes-in-0");
+
+        Message<byte[]> receiveMessage = output.receive(1000L, "queue.pretty.log.messages");
+
+        assertThat(receiveMessage.getPayload())
+                .asString()
+                .isEqualTo("[Baeldung] - " + log);
+    }
+
     @Test
     void whenHighlightingLogMessage_thenItsTransformedToUppercase() {
         Message<String> sendMessage = MessageBuilder.withPayload("hello")
@@ -90,4 +153,111 @@ class LogEnricherApplicationUnitTest {
                 .isEqualTo("HELLO");
     }
 
+    @Test
+    void whenHighlightingJsonLogMessage_thenItsReadAsLogMessage() {
+        Message<String> sendMessage = MessageBuilder.withPayload("{\"message\":\"hello json\"}")
+                .setHeader("contentType", "application/json")
+                .build();
+        input.send(sendMessage, "highlightLogs-in-0");
+
+        Message<byte[]> receiveMessage = output.receive(1000L, "highlightLogs-out-0");
+        assertThat(receiveMessage.getPayload())
+                .asString()
+                .isEqualTo("HELLO JSON");
+    }
+
+    @Test
+    void whenHighlightingLatin1LogMessage_thenItsDecodedWithHeaderCharset() {
+        byte[] latin1 = "caf\u00e9".getBytes(StandardCharsets.ISO_8859_1);
+        input.send(MessageBuilder.withPayload(latin1).setHeader("contentType", "text/plain;charset=ISO-8859-1").build(), "highlightLogs-in-0");
+
+        // 输出绑定声明的字符集为 UTF-8
+        Message<byte[]> receiveMessage = output.receive(1000L, "highlightLogs-out-0");
+        assertThat(new String(receiveMessage.getPayload(), StandardCharsets.UTF_8)).isEqualTo("CAF\u00c9");
+    }
+
+    @Test
+    void whenHighlightingAsciiAndNonAsciiBytes_thenResultEqualsToUpperCase() {
+        // \u7b2c\u4e00\u6761\u8d70 ascii \u5feb\u901f\u8def\u5f84\uff0c\u7b2c\u4e8c\u6761\u5305\u542b\u975e ascii \u5b57\u7b26\uff0c\u9000\u56de\u5230 String#toUpperCase
+        for (String log : List.of("2024-12-01 12:00:00.000 warn [main] disk almost full", "stra\u00dfe caf\u00e9 \u00e5ngstr\u00f6m")) {
+            input.send(MessageBuilder.withPayload(log.getBytes(StandardCharsets.UTF_8)).setHeader("contentType", "text/plain;charset=UTF-8").build(), "highlightLogs-in-0");
+
+            Message<byte[]> receiveMessage = output.receive(1000L, "highlightLogs-out-0");
+            assertThat(new String(receiveMessage.getPayload(), StandardCharsets.UTF_8)).isEqualTo(log.toUpperCase());
+        }
+    }
+
+    @Test
+    void whenSendingLogBytes_thenPrefixIsPrependedWithoutDecoding() {
+        // ISO-8859-1 兼容 ascii ，所以 payload 中的字节被原样保留
+        byte[] latin1 = "caf\u00e9".getBytes(StandardCharsets.ISO_8859_1);
+        input.send(MessageBuilder.withPayload(latin1).setHeader("contentType", "text/plain;charset=ISO-8859-1").build(), "queue.log.messages.bytes");
+
+        Message<byte[]> receiveMessage = output.receive(1000L, "queue.pretty.log.messages");
+
+        assertThat(new String(receiveMessage.getPayload(), StandardCharsets.ISO_8859_1)).isEqualTo("[Baeldung] - caf\u00e9");
+        assertThat(String.valueOf(receiveMessage.getHeaders().get("contentType"))).isEqualTo("text/plain;charset=ISO-8859-1");
+    }
+
+    @Test
+    void whenSendingNonAsciiCompatibleLogBytes_thenItsReEncodedInSameCharset() {
+        byte[] utf16 = "hello \u4e16\u754c".getBytes(StandardCharsets.UTF_16);
+        input.send(MessageBuilder.withPayload(utf16).setHeader("contentType", "text/plain;charset=UTF-16").build(), "queue.log.messages.bytes");
+
+        Message<byte[]> receiveMessage = output.receive(1000L, "queue.pretty.log.messages");
+
+        assertThat(new String(receiveMessage.getPayload(), StandardCharsets.UTF_16)).isEqualTo("[Baeldung] - hello \u4e16\u754c");
+    }
+
+    /**
+     * 批量消费时 binder 会将一批消息合并为一条 payload 为 List 的消息，每条消息各自的 header 放在 {@link BinderHeaders#BATCH_HEADERS} 中，
+     * 这里直接发送这样一条合并后的消息来模拟 binder 的行为
+     */
+    @Test
+    void whenSendingLogBatch_thenEachMessageIsEnrichedWithItsOwnHeaders() {
+        input.send(batch(List.of("hello", "world"), List.of(Map.of("traceId", "t-1"), Map.of("traceId", "t-2"))), "queue.log.messages.batch");
+
+        Message<byte[]> first = output.receive(1000L, "queue.pretty.log.messages");
+        Message<byte[]> second = output.receive(1000L, "queue.pretty.log.messages");
+
+        assertThat(first.getPayload()).asString().isEqualTo("[Baeldung] - hello");
+        assertThat(first.getHeaders().get("traceId")).isEqualTo("t-1");
+        assertThat(second.getPayload()).asString().isEqualTo("[Baeldung] - world");
+        assertThat(second.getHeaders().get("traceId")).isEqualTo("t-2");
+        assertThat(first.getHeaders().containsKey(BinderHeaders.BATCH_HEADERS)).isFalse();
+    }
+
+    @Test
+    void whenProcessingLogBatch_thenEachMessageIsRoutedIndividually() {
+        input.send(batch(List.of("hello processLogs", "hello"), List.of(Map.of("traceId", "t-1"), Map.of("traceId", "t-2"))), "processLogsBatch-in-0");
+
+        // 两条消息经过不同的路径到达 queue.pretty.log.messages ，所以按照 header 区分
+        Map<Object, String> received = new HashMap<>();
+        for (int i = 0; i < 2; i++) {
+            Message<byte[]> message = output.receive(1000L, "queue.pretty.log.messages");
+            received.put(message.getHeaders().get("traceId"), new String(message.getPayload(), StandardCharsets.UTF_8));
+        }
+
+        assertThat(received.get("t-1")).isEqualTo("[Baeldung] - hello processLogs");
+        assertThat(received.get("t-2")).isEqualTo("hello");
+    }
+
+    @Test
+    void whenHighlightingLogBatch_thenEachIsTransformedToUppercase() {
+        input.send(batch(List.of("hello", "world"), null), "highlightLogsBatch-in-0");
+
+        assertThat(output.receive(1000L, "highlightLogsBatch-out-0").getPayload()).asString().isEqualTo("HELLO");
+        assertThat(output.receive(1000L, "highlightLogsBatch-out-0").getPayload()).asString().isEqualTo("WORLD");
+    }
+
+    private static Message<List<byte[]>> batch(List<String> logs, List<Map<String, Object>> batchHeaders) {
+        List<byte[]> payloads = logs.stream().map(log -> log.getBytes(StandardCharsets.UTF_8)).toList();
+        MessageBuilder<List<byte[]>> builder = MessageBuilder.withPayload(payloads)
+                .setHeader("contentType", "text/plain");
+        if (batchHeaders != null) {
+            builder.setHeader(BinderHeaders.BATCH_HEADERS, batchHeaders);
+        }
+        return builder.build();
+    }
+
 }
@@ -0,0 +1,39 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 没有显式声明 content-type 的 binding 使用 application/json ，LogMessage 的 json 格式需要与原来的 record 保持一致
+ */
+class LogMessageJsonTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @Test
+    void whenSerializing_thenOnlyMessageIsWritten() throws Exception {
+        assertThat(objectMapper.writeValueAsString(new LogMessage("hello"))).isEqualTo("{\"message\":\"hello\"}");
+    }
+
+    @Test
+    void whenSerializingUndecodedBytes_thenMessageIsDecoded() throws Exception {
+        LogMessage message = LogMessage.ofBytes("café".getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1);
+
+        assertThat(objectMapper.writeValueAsString(message)).isEqualTo("{\"message\":\"café\"}");
+    }
+
+    @Test
+    void whenRoundTripping_thenMessageIsPreserved() throws Exception {
+        LogMessage message = new LogMessage("hello json");
+
+        LogMessage read = objectMapper.readValue(objectMapper.writeValueAsString(message), LogMessage.class);
+
+        assertThat(read).isEqualTo(message);
+        assertThat(read.isDecoded()).isTrue();
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LogViewTest {
+
+    @Test
+    void whenParsingLogbackLine_thenAllPartsAreFound() {
+        LogView view = LogView.of("2024-12-01 12:00:00.000 INFO  [main] c.j.t.LogEnricher - processing log message");
+
+        assertThat(view.isStructured()).isTrue();
+        assertThat(view.level()).isEqualTo(LogView.Level.INFO);
+        assertThat(view.timestamp()).isEqualTo("2024-12-01 12:00:00.000");
+        assertThat(view.logger()).isEqualTo("c.j.t.LogEnricher");
+        assertThat(view.body()).isEqualTo("processing log message");
+    }
+
+    @Test
+    void whenParsingSpringBootLine_thenPidAndBracketsAreSkipped() {
+        LogView view = LogView.of("2024-12-01T12:00:00.000Z  WARN 15051 --- [app] [main] c.j.t.LogEnricher        : disk - almost full");
+
+        assertThat(view.level()).isEqualTo(LogView.Level.WARN);
+        assertThat(view.timestamp()).isEqualTo("2024-12-01T12:00:00.000Z");
+        assertThat(view.logger()).isEqualTo("c.j.t.LogEnricher");
+        assertThat(view.body()).isEqualTo("disk - almost full");
+    }
+
+    @Test
+    void whenParsingLineWithoutLogger_thenBodyFollowsLevel() {
+        LogView view = LogView.of("ERROR something went wrong");
+
+        assertThat(view.level()).isEqualTo(LogView.Level.ERROR);
+        assertThat(view.hasTimestamp()).isFalse();
+        assertThat(view.logger()).isNull();
+        assertThat(view.body()).isEqualTo("something went wrong");
+    }
+
+    @Test
+    void whenParsingUnstructuredLine_thenWholeLineIsBody() {
+        LogView view = LogView.of("12345 hello world");
+
+        assertThat(view.isStructured()).isFalse();
+        assertThat(view.level()).isNull();
+        assertThat(view.timestamp()).isNull();
+        assertThat(view.body()).isEqualTo("12345 hello world");
+    }
+
+    @Test
+    void whenViewingUtf8Bytes_thenOffsetsAreByteOffsetsAndMessageIsNotDecoded() {
+        String log = "12:00:00.000 INFO [主线程] c.j.t.LogEnricher - 你好 world";
+        byte[] bytes = log.getBytes(StandardCharsets.UTF_8);
+        LogMessage message = LogMessage.ofBytes(bytes, StandardCharsets.UTF_8);
+
+        LogView view = message.view();
+
+        assertThat(message.isDecoded()).isFalse();
+        assertThat(view.level()).isEqualTo(LogView.Level.INFO);
+        assertThat(view.logger()).isEqualTo("c.j.t.LogEnricher");
+        assertThat(view.body()).isEqualTo("你好 world");
+        assertThat(view.length()).isEqualTo(bytes.length);
+        assertThat(view.bodyStart()).isEqualTo(bytes.length - "你好 world".getBytes(StandardCharsets.UTF_8).length);
+        assertThat(message.view()).isSameAs(view);
+    }
+
+    /**
+     * Shift_JIS 中 ゾ 的第二个字节为 0x5D ，即 ] ，不能直接在字节上扫描
+     */
+    @Test
+    void whenViewingShiftJisBytes_thenItsParsedFromDecodedMessage() {
+        Charset shiftJis = Charset.forName("Shift_JIS");
+        String log = "12:00:00.000 INFO [ゾーン] c.j.t.LogEnricher - 余白 world";
+        LogMessage message = LogMessage.ofBytes(log.getBytes(shiftJis), shiftJis);
+
+        LogView view = message.view();
+
+        assertThat(view.level()).isEqualTo(LogView.Level.INFO);
+        assertThat(view.logger()).isEqualTo("c.j.t.LogEnricher");
+        assertThat(view.body()).isEqualTo("余白 world");
+        assertThatThrownBy(() -> LogView.of(log.getBytes(shiftJis), shiftJis)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+}
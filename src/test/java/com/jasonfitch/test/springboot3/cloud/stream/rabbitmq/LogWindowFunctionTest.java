@@ -0,0 +1,73 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.cloud.stream.binder.test.EnableTestBinder;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 使用很短的窗口，从而在测试中能够等到窗口关闭
+ */
+@EnableTestBinder
+@SpringBootTest(properties = {"spring.cloud.function.definition=aggregateLogs", "log.window.size=400ms", "log.window.slide=200ms"})
+class LogWindowFunctionTest {
+
+    @Autowired
+    private InputDestination input;
+
+    @Autowired
+    private OutputDestination output;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private StreamBridge streamBridge;
+
+    @Test
+    void whenWindowCloses_thenSummaryIsSentToSeparateDestination() throws IOException {
+        input.send(MessageBuilder.withPayload("hello").build(), "queue.log.messages");
+        input.send(MessageBuilder.withPayload("hello").build(), "queue.log.messages");
+        input.send(MessageBuilder.withPayload("world").build(), "queue.log.messages");
+
+        // 三条消息可能落在相邻的两个 pane 中，覆盖两个 pane 的滑动窗口一定包含全部的消息
+        LogWindowSummary summary = null;
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline && (summary == null || summary.count() < 3)) {
+            Message<byte[]> message = output.receive(1_000L, "queue.log.summaries");
+            if (message != null) {
+                summary = objectMapper.readValue(message.getPayload(), LogWindowSummary.class);
+            }
+        }
+
+        assertThat(summary).isNotNull();
+        assertThat(summary.count()).isEqualTo(3);
+        assertThat(summary.windowEnd() - summary.windowStart()).isEqualTo(400);
+        assertThat(summary.topMessages()).startsWith(new LogWindowSummary.TopMessage("hello", 2));
+    }
+
+    /**
+     * 使用独立的 {@link LogWindows} ，输入结束之后定时器也随之停止，函数返回的 Mono 能够结束
+     */
+    @Test
+    void whenInputCompletes_thenSummaryTimerStops() {
+        LogWindows windows = new LogWindows(Duration.ofMillis(400), Duration.ofMillis(200), 2, 256, 4);
+        Flux<String> logs = Flux.just("hello", "world").delayElements(Duration.ofMillis(300));
+
+        new LogEnricherApplication().aggregateLogs(windows, streamBridge).apply(logs).block(Duration.ofSeconds(5));
+    }
+
+}
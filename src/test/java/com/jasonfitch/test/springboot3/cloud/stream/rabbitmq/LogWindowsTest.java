@@ -0,0 +1,116 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 窗口长度 60s ，步长 20s ，所以每个滑动窗口由 3 个 pane 组成，时间由测试直接指定
+ */
+class LogWindowsTest {
+
+    private final LogWindows windows = new LogWindows(Duration.ofSeconds(60), Duration.ofSeconds(20), 2, 256, 4);
+
+    @Test
+    void whenPaneCloses_thenSlidingSummaryIsEmitted() {
+        add("a", 5, 1_000);
+        add("b", 3, 2_000);
+        add("c", 1, 3_000);
+
+        assertThat(windows.advance(19_999)).isEmpty();
+        List<LogWindowSummary> summaries = windows.advance(20_000);
+
+        assertThat(summaries).hasSize(1);
+        LogWindowSummary sliding = summaries.get(0);
+        assertThat(sliding.type()).isEqualTo(LogWindowSummary.Type.SLIDING);
+        assertThat(sliding.windowStart()).isEqualTo(-40_000);
+        assertThat(sliding.windowEnd()).isEqualTo(20_000);
+        assertThat(sliding.count()).isEqualTo(9);
+        assertThat(sliding.topMessages()).containsExactly(
+                new LogWindowSummary.TopMessage("a", 5),
+                new LogWindowSummary.TopMessage("b", 3));
+    }
+
+    @Test
+    void whenWindowBoundaryIsReached_thenTumblingSummaryCoversWholeWindow() {
+        add("a", 2, 1_000);
+        add("b", 1, 25_000);
+        add("a", 1, 45_000);
+
+        List<LogWindowSummary> summaries = windows.advance(60_000);
+
+        // 20s 以及 40s 时各一个滑动窗口，60s 时一个滑动窗口以及一个滚动窗口
+        assertThat(summaries).extracting(LogWindowSummary::type).containsExactly(
+                LogWindowSummary.Type.SLIDING, LogWindowSummary.Type.SLIDING,
+                LogWindowSummary.Type.SLIDING, LogWindowSummary.Type.TUMBLING);
+        LogWindowSummary tumbling = summaries.get(3);
+        assertThat(tumbling.windowStart()).isZero();
+        assertThat(tumbling.windowEnd()).isEqualTo(60_000);
+        assertThat(tumbling.count()).isEqualTo(4);
+        assertThat(tumbling.topMessages().get(0)).isEqualTo(new LogWindowSummary.TopMessage("a", 3));
+    }
+
+    @Test
+    void whenPanesSlideOut_thenOldMessagesAreNoLongerCounted() {
+        add("a", 2, 1_000);
+        windows.advance(60_000);
+        add("b", 4, 61_000);
+
+        List<LogWindowSummary> summaries = windows.advance(80_000);
+
+        assertThat(summaries).hasSize(1);
+        assertThat(summaries.get(0).windowStart()).isEqualTo(20_000);
+        assertThat(summaries.get(0).count()).isEqualTo(4);
+        assertThat(summaries.get(0).topMessages()).containsExactly(new LogWindowSummary.TopMessage("b", 4));
+    }
+
+    @Test
+    void whenIdleForLong_thenOnlyOneWindowOfEmptyPanesIsClosed() {
+        add("a", 1, 1_000);
+
+        List<LogWindowSummary> summaries = windows.advance(10_000_000);
+
+        // 20s 40s 60s 的滑动窗口以及 60s 的滚动窗口包含这条消息，之后的窗口都是空的
+        assertThat(summaries).hasSize(4).allSatisfy(summary -> assertThat(summary.count()).isEqualTo(1));
+
+        // 之后的 pane 重新对齐到当前时间， 10020s 同时也是滚动窗口的边界
+        add("b", 1, 10_000_001);
+        assertThat(windows.advance(10_020_000)).hasSize(2).allSatisfy(summary -> {
+            assertThat(summary.windowEnd()).isEqualTo(10_020_000);
+            assertThat(summary.count()).isEqualTo(1);
+        });
+    }
+
+    @Test
+    void whenIdleSlidesPass_thenEmptyWindowsAreNotEmitted() {
+        add("a", 1, 1_000);
+        assertThat(windows.advance(60_000)).hasSize(4);
+
+        for (int i = 1; i <= 12; i++) {
+            assertThat(windows.advance(60_000 + i * 20_000L)).isEmpty();
+        }
+    }
+
+    @Test
+    void whenNoMessageArrivedYet_thenNothingIsEmitted() {
+        assertThat(windows.advance(20_000)).isEmpty();
+        assertThat(windows.advance(200_000)).isEmpty();
+    }
+
+    @Test
+    void whenSizeIsNotMultipleOfSlide_thenItsRejected() {
+        assertThatThrownBy(() -> new LogWindows(Duration.ofSeconds(50), Duration.ofSeconds(20), 10, 256, 4))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void add(String message, int times, long now) {
+        for (int i = 0; i < times; i++) {
+            windows.add(message, now);
+        }
+    }
+
+}
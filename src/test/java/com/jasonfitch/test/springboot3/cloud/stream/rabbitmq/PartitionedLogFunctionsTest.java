@@ -0,0 +1,162 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binder.test.EnableTestBinder;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 分区执行的结果是在 lane 线程上异步发送的，所以这里按照 traceId 将收到的消息分组，只检查每个 key 内部的顺序
+ */
+@EnableTestBinder
+@SpringBootTest(properties = "spring.cloud.function.definition=enrichLogMessage;enrichLogMessagePartitioned;processLogsPartitioned;highlightLogsPartitioned")
+class PartitionedLogFunctionsTest {
+
+    private static final int MESSAGES_PER_KEY = 20;
+
+    @Autowired
+    private InputDestination input;
+
+    @Autowired
+    private OutputDestination output;
+
+    @Autowired
+    private LogLanes lanes;
+
+    @Test
+    void whenEnrichingPartitionedLogs_thenOrderIsKeptWithinEachKey() {
+        List<String> keys = List.of("t-1", "t-2", "t-3", "t-4", "t-5");
+        for (int i = 0; i < MESSAGES_PER_KEY; i++) {
+            for (String key : keys) {
+                input.send(log(key, key + " #" + i), "queue.log.messages.partitioned");
+            }
+        }
+
+        Map<Object, List<String>> received = receive(keys.size() * MESSAGES_PER_KEY, "queue.pretty.log.messages");
+
+        assertThat(received.keySet()).containsExactlyInAnyOrderElementsOf(keys);
+        for (String key : keys) {
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < MESSAGES_PER_KEY; i++) {
+                expected.add("[Baeldung] - " + key + " #" + i);
+            }
+            assertThat(received.get(key)).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void whenProcessingPartitionedLogs_thenEachIsRoutedAsProcessLogsDoes() {
+        input.send(log("t-1", "hello processLogs"), "processLogsPartitioned-in-0");
+        input.send(log("t-2", "hello"), "processLogsPartitioned-in-0");
+
+        Map<Object, List<String>> received = receive(2, "queue.pretty.log.messages");
+
+        assertThat(received.get("t-1")).containsExactly("[Baeldung] - hello processLogs");
+        assertThat(received.get("t-2")).containsExactly("hello");
+    }
+
+    @Test
+    void whenHighlightingPartitionedLogs_thenEachIsTransformedToUppercase() {
+        input.send(log("t-1", "hello"), "highlightLogsPartitioned-in-0");
+
+        Message<byte[]> message = output.receive(1000L, "highlightLogsPartitioned-out-0");
+
+        assertThat(new String(message.getPayload(), StandardCharsets.UTF_8)).isEqualTo("HELLO");
+        assertThat(message.getHeaders().get("traceId")).isEqualTo("t-1");
+    }
+
+    @Test
+    void whenKeysDiffer_thenTheyRunOnDifferentLanesInParallel() throws InterruptedException {
+        // 找到两个落在不同 lane 上的 key
+        String first = "k-0";
+        String second = null;
+        for (int i = 1; second == null; i++) {
+            if (lanes.laneOf("k-" + i) != lanes.laneOf(first)) {
+                second = "k-" + i;
+            }
+        }
+
+        // 第一个 key 的任务阻塞其 lane ，直到第二个 key 的任务在另一条 lane 上执行，串行执行时会超时
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        CountDownLatch firstFinished = new CountDownLatch(1);
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        lanes.execute(log(first, "first"), () -> {
+            threads.add(Thread.currentThread().getName());
+            try {
+                if (secondStarted.await(5, TimeUnit.SECONDS)) {
+                    firstFinished.countDown();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        lanes.execute(log(second, "second"), () -> {
+            threads.add(Thread.currentThread().getName());
+            secondStarted.countDown();
+        });
+
+        assertThat(firstFinished.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(threads).hasSize(2).allMatch(name -> name.startsWith("log-lane-"));
+    }
+
+    @Test
+    void whenLaneTaskFails_thenMessageIsSentToErrorDestination() {
+        long failures = lanes.getFailureCount();
+
+        lanes.execute(log("t-1", "broken"), () -> {
+            throw new IllegalStateException("lane failure");
+        });
+
+        Message<byte[]> message = output.receive(5000L, "queue.log.messages.partitioned.errors");
+        assertThat(message).isNotNull();
+        assertThat(new String(message.getPayload(), StandardCharsets.UTF_8)).isEqualTo("broken");
+        assertThat(message.getHeaders().get("traceId")).isEqualTo("t-1");
+        assertThat(message.getHeaders().get(LogLanes.EXCEPTION_MESSAGE_HEADER)).isEqualTo("lane failure");
+        assertThat(message.getHeaders().get(LogLanes.EXCEPTION_TYPE_HEADER)).isEqualTo(IllegalStateException.class.getName());
+        assertThat(lanes.getFailureCount()).isEqualTo(failures + 1);
+    }
+
+    @Test
+    void whenKeyIsMissing_thenMessageGoesToFirstLane() {
+        Message<String> message = MessageBuilder.withPayload("hello").build();
+
+        assertThat(lanes.keyOf(message)).isNull();
+        assertThat(lanes.laneOf(lanes.keyOf(message))).isZero();
+        assertThat(lanes.laneOf("t-1")).isEqualTo(lanes.laneOf("t-1")).isBetween(0, lanes.getLaneCount() - 1);
+    }
+
+    private static Message<String> log(String traceId, String log) {
+        return MessageBuilder.withPayload(log)
+                .setHeader("contentType", "text/plain")
+                .setHeader("traceId", traceId)
+                .build();
+    }
+
+    private Map<Object, List<String>> receive(int count, String destination) {
+        Map<Object, List<String>> received = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Message<byte[]> message = output.receive(5000L, destination);
+            assertThat(message).as("message %d of %d", i + 1, count).isNotNull();
+            received.computeIfAbsent(message.getHeaders().get("traceId"), key -> new ArrayList<>())
+                    .add(new String(message.getPayload(), StandardCharsets.UTF_8));
+        }
+        return received;
+    }
+
+}
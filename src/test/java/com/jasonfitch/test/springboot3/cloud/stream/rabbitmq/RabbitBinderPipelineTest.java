@@ -0,0 +1,120 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.batch.SimpleBatchingStrategy;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 使用 rabbit profile 中的 binder 配置，经过进程内的 {@link AmqpStubBroker} ，
+ * 从 queue.log.messages 到 enrichLogMessage 再到 queue.pretty.log.messages 的端到端测试，不需要真实的 rabbitmq
+ */
+@SpringBootTest(properties = {
+        "spring.cloud.function.definition=enrichLogMessage",
+        "spring.rabbitmq.requested-heartbeat=0"
+})
+@ActiveProfiles("rabbit")
+@DirtiesContext
+class RabbitBinderPipelineTest {
+
+    private static final int MESSAGES = 2000;
+
+    private static AmqpStubBroker broker;
+
+    @Autowired
+    private RabbitTemplate rabbitTemplate;
+
+    @Autowired
+    private AmqpAdmin amqpAdmin;
+
+    @BeforeAll
+    static void startBroker() throws Exception {
+        broker = new AmqpStubBroker();
+    }
+
+    @AfterAll
+    static void stopBroker() throws Exception {
+        if (broker != null) {
+            broker.close();
+        }
+    }
+
+    @DynamicPropertySource
+    static void rabbitProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.rabbitmq.host", () -> broker.getHost());
+        registry.add("spring.rabbitmq.port", () -> broker.getPort());
+    }
+
+    @Test
+    void whenPublishingLogMessages_thenEachArrivesEnrichedOnPrettyExchange() throws Exception {
+        // binder 为输出的目的地声明了 topic exchange ，这里再绑定一个队列用于接收
+        Queue pretty = new Queue(LogEnricherApplication.PRETTY_DESTINATION + ".receiver", false, false, false);
+        amqpAdmin.declareQueue(pretty);
+        TopicExchange prettyExchange = new TopicExchange(LogEnricherApplication.PRETTY_DESTINATION);
+        amqpAdmin.declareExchange(prettyExchange);
+        amqpAdmin.declareBinding(BindingBuilder.bind(pretty).to(prettyExchange).with("#"));
+
+        long publishesBefore = broker.getPublishCount();
+        long start = System.nanoTime();
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < MESSAGES; i++) {
+            String log = "log message " + i;
+            expected.add("[Baeldung] - " + log);
+            MessageProperties properties = new MessageProperties();
+            properties.setContentType("text/plain");
+            rabbitTemplate.send("queue.log.messages", "queue.log.messages", new Message(log.getBytes(StandardCharsets.UTF_8), properties));
+        }
+
+        Set<String> received = new HashSet<>();
+        SimpleBatchingStrategy batching = new SimpleBatchingStrategy(0, 0, 0);
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (received.size() < MESSAGES && System.nanoTime() < deadline) {
+            // 不指定超时时间时使用 basic.get ，一次往返
+            Message message = rabbitTemplate.receive(pretty.getName());
+            if (message == null) {
+                Thread.sleep(1);
+                continue;
+            }
+            // 开启了 batching-enabled ，多条输出消息被合并为一条 amqp 消息
+            List<Message> fragments = new ArrayList<>();
+            if (batching.canDebatch(message.getMessageProperties())) {
+                batching.deBatch(message, fragments::add);
+            } else {
+                fragments.add(message);
+            }
+            for (Message fragment : fragments) {
+                received.add(new String(fragment.getBody(), StandardCharsets.UTF_8));
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        long outputPublishes = broker.getPublishCount() - publishesBefore - MESSAGES;
+        System.out.printf("messages=%d, elapsed=%dms, throughput=%.0f msg/s, output publishes=%d, confirms=%d, acks=%d%n",
+                MESSAGES, elapsedNanos / 1_000_000, MESSAGES * 1e9 / elapsedNanos, outputPublishes, broker.getConfirmCount(), broker.getAckCount());
+
+        assertThat(received).isEqualTo(expected);
+        // 输出端批量发送，basic.publish 的次数少于消息数
+        assertThat(outputPublishes).isPositive().isLessThan(MESSAGES);
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.binder.test.EnableTestBinder;
+import org.springframework.cloud.stream.binder.test.InputDestination;
+import org.springframework.cloud.stream.binder.test.OutputDestination;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@EnableTestBinder
+@SpringBootTest(properties = "spring.cloud.function.definition=enrichLogMessage;enrichLogMessageReactive;processLogsReactive;highlightLogsReactive")
+class ReactiveLogFunctionsTest {
+
+    @Autowired
+    private InputDestination input;
+
+    @Autowired
+    private OutputDestination output;
+
+    @Test
+    void whenSendingLogMessage_thenItsEnrichedWithPrefix() {
+        input.send(MessageBuilder.withPayload("hello world").build(), "queue.log.messages.reactive");
+
+        Message<byte[]> receiveMessage = output.receive(5000L, "queue.pretty.log.messages");
+
+        assertThat(new String(receiveMessage.getPayload(), StandardCharsets.UTF_8)).isEqualTo("[Baeldung] - hello world");
+    }
+
+    @Test
+    void whenProcessingLogs_thenEachIsRoutedAsProcessLogsDoes() {
+        input.send(MessageBuilder.withPayload("hello processLogs").build(), "processLogsReactive-in-0");
+        input.send(MessageBuilder.withPayload("hello").setHeader("contentType", "text/plain").build(), "processLogsReactive-in-0");
+
+        Set<String> received = new HashSet<>();
+        for (int i = 0; i < 2; i++) {
+            Message<byte[]> message = output.receive(5000L, "queue.pretty.log.messages");
+            assertThat(message).isNotNull();
+            received.add(new String(message.getPayload(), StandardCharsets.UTF_8));
+        }
+
+        assertThat(received).containsExactlyInAnyOrder("[Baeldung] - hello processLogs", "hello");
+    }
+
+    @Test
+    void whenHighlightingLogMessage_thenItsTransformedToUppercase() {
+        input.send(MessageBuilder.withPayload("hello").setHeader("contentType", "text/plain").build(), "highlightLogsReactive-in-0");
+
+        Message<byte[]> receiveMessage = output.receive(5000L, "highlightLogsReactive-out-0");
+
+        assertThat(new String(receiveMessage.getPayload(), StandardCharsets.UTF_8)).isEqualTo("HELLO");
+    }
+
+}
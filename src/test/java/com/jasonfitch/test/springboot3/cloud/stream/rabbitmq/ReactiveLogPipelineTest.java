@@ -0,0 +1,133 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveLogPipelineTest {
+
+    private static final int CONCURRENCY = 4;
+
+    private static final int BUFFER_SIZE = 8;
+
+    private static final int MESSAGES = 1000;
+
+    private ReactiveLogPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        pipeline.destroy();
+    }
+
+    @Test
+    void whenSinkIsSlowWithBlock_thenSourceOnlyProducesWhatIsRequested() throws InterruptedException {
+        pipeline = new ReactiveLogPipeline(CONCURRENCY, BUFFER_SIZE, ReactiveLogPipeline.Overflow.BLOCK);
+        AtomicInteger produced = new AtomicInteger();
+        Flux<Integer> source = Flux.range(0, MESSAGES).doOnNext(i -> produced.incrementAndGet());
+
+        SlowSubscriber subscriber = new SlowSubscriber();
+        pipeline.apply(source, i -> i).subscribe(subscriber);
+        subscriber.request(2);
+        subscriber.awaitReceived(2);
+        Thread.sleep(100);
+
+        // 已经产生但是还没有被下游接收的，只有缓冲区以及正在处理的消息，没有被丢弃的消息
+        assertThat(produced.get() - subscriber.received.size()).isLessThanOrEqualTo(BUFFER_SIZE + CONCURRENCY);
+        assertThat(produced.get()).isLessThan(MESSAGES);
+        assertThat(pipeline.getDroppedCount()).isZero();
+
+        subscriber.request(Long.MAX_VALUE);
+        subscriber.awaitCompletion();
+        assertThat(subscriber.received).containsExactlyElementsOf(IntStream.range(0, MESSAGES).boxed().toList());
+    }
+
+    @Test
+    void whenSourceIgnoresBackpressureWithBuffer_thenNewestAreDropped() throws InterruptedException {
+        pipeline = new ReactiveLogPipeline(CONCURRENCY, BUFFER_SIZE, ReactiveLogPipeline.Overflow.BUFFER);
+
+        List<Integer> received = overflow();
+
+        assertThat(received.size()).isLessThanOrEqualTo(BUFFER_SIZE + CONCURRENCY);
+        assertThat(received).containsExactlyElementsOf(IntStream.range(0, received.size()).boxed().toList());
+        assertThat(pipeline.getDroppedCount()).isEqualTo(MESSAGES - received.size());
+    }
+
+    @Test
+    void whenSourceIgnoresBackpressureWithDropOldest_thenLatestAreKept() throws InterruptedException {
+        pipeline = new ReactiveLogPipeline(CONCURRENCY, BUFFER_SIZE, ReactiveLogPipeline.Overflow.DROP_OLDEST);
+
+        List<Integer> received = overflow();
+
+        assertThat(received.size()).isLessThanOrEqualTo(BUFFER_SIZE + CONCURRENCY);
+        assertThat(received).containsSubsequence(IntStream.range(MESSAGES - BUFFER_SIZE, MESSAGES).boxed().toList());
+        assertThat(received).isSorted();
+        assertThat(pipeline.getDroppedCount()).isEqualTo(MESSAGES - received.size());
+    }
+
+    /**
+     * 上游在订阅时一次性推送所有消息，不理会下游的需求，下游在推送完成之后才开始请求
+     */
+    private List<Integer> overflow() throws InterruptedException {
+        Flux<Integer> source = Flux.create(sink -> {
+            for (int i = 0; i < MESSAGES; i++) {
+                sink.next(i);
+            }
+            sink.complete();
+        }, FluxSink.OverflowStrategy.IGNORE);
+
+        SlowSubscriber subscriber = new SlowSubscriber();
+        pipeline.apply(source, i -> i).subscribe(subscriber);
+        subscriber.request(Long.MAX_VALUE);
+        subscriber.awaitCompletion();
+        return subscriber.received;
+    }
+
+    /**
+     * 只在调用 request 时才向上游请求，模拟一个慢速的下游
+     */
+    private static class SlowSubscriber extends BaseSubscriber<Integer> {
+
+        private final List<Integer> received = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+        }
+
+        @Override
+        protected void hookOnNext(Integer value) {
+            received.add(value);
+        }
+
+        @Override
+        protected void hookFinally(reactor.core.publisher.SignalType type) {
+            completed.countDown();
+        }
+
+        void awaitReceived(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+            while (received.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+
+        void awaitCompletion() throws InterruptedException {
+            assertThat(completed.await(5, TimeUnit.SECONDS)).isTrue();
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.jasonfitch.test.springboot3.cloud.stream.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextPlainMessageConverterTest {
+
+    private final TextPlainMessageConverter converter = new TextPlainMessageConverter();
+
+    @Test
+    void whenReadingBytes_thenDecodingIsDeferredAndUsesHeaderCharset() {
+        byte[] latin1 = "café".getBytes(StandardCharsets.ISO_8859_1);
+        Message<byte[]> message = MessageBuilder.withPayload(latin1)
+                .setHeader(MessageHeaders.CONTENT_TYPE, "text/plain;charset=ISO-8859-1")
+                .build();
+
+        LogMessage logMessage = (LogMessage) converter.fromMessage(message, LogMessage.class);
+
+        assertThat(logMessage.isDecoded()).isFalse();
+        assertThat(logMessage.encodedLength()).isEqualTo(4);
+        assertThat(logMessage.message()).isEqualTo("café");
+        assertThat(logMessage.isDecoded()).isTrue();
+        assertThat(logMessage.message()).isSameAs(logMessage.message());
+    }
+
+    @Test
+    void whenReadingBytesWithoutCharset_thenUtf8IsUsed() {
+        byte[] utf8 = "世界".getBytes(StandardCharsets.UTF_8);
+        Message<byte[]> message = MessageBuilder.withPayload(utf8)
+                .setHeader(MessageHeaders.CONTENT_TYPE, "text/plain")
+                .build();
+
+        assertThat(((LogMessage) converter.fromMessage(message, LogMessage.class)).message()).isEqualTo("世界");
+    }
+
+    @Test
+    void whenWritingInSameCharset_thenOriginalBytesArePassedThrough() {
+        byte[] latin1 = "café".getBytes(StandardCharsets.ISO_8859_1);
+        LogMessage logMessage = LogMessage.ofBytes(latin1, StandardCharsets.ISO_8859_1);
+
+        Message<?> message = converter.toMessage(logMessage, new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, "text/plain;charset=ISO-8859-1")));
+
+        assertThat(message.getPayload()).isSameAs(latin1);
+        assertThat(logMessage.isDecoded()).isFalse();
+    }
+
+    @Test
+    void whenWritingInOtherCharset_thenItsReEncoded() {
+        LogMessage logMessage = LogMessage.ofBytes("café".getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.ISO_8859_1);
+
+        Message<?> message = converter.toMessage(logMessage, new MessageHeaders(Map.of(MessageHeaders.CONTENT_TYPE, "text/plain;charset=UTF-8")));
+
+        assertThat((byte[]) message.getPayload()).isEqualTo("café".getBytes(StandardCharsets.UTF_8));
+    }
+
+}
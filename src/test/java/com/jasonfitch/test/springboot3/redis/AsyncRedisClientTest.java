@@ -0,0 +1,94 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SpringBootTest(properties = "spring.data.redis.async.max-in-flight=4")
+public class AsyncRedisClientTest {
+
+    private static final String TEST_KEY = "async-test-key";
+
+    @Autowired
+    private AsyncRedisClient asyncRedisClient;
+
+    @Autowired
+    private NativeJedisClient nativeJedisClient;
+
+    @Test
+    public void testFanOut() {
+        asyncRedisClient.set(TEST_KEY, "async-value").join();
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(asyncRedisClient.get(TEST_KEY));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        for (CompletableFuture<String> future : futures) {
+            Assertions.assertEquals("async-value", future.join());
+        }
+        Assertions.assertEquals(0, asyncRedisClient.getInFlight());
+    }
+
+    @Test
+    public void testInFlightLimit() {
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(asyncRedisClient.withJedis(0, jedis -> {
+                maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                try {
+                    return jedis.ping();
+                } finally {
+                    sleep(20);
+                    concurrent.decrementAndGet();
+                }
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        System.out.println("maxConcurrent=" + maxConcurrent.get());
+        Assertions.assertTrue(maxConcurrent.get() <= asyncRedisClient.getMaxInFlight());
+    }
+
+    @Test
+    public void testTimeoutInterruptsCall() throws InterruptedException {
+        // BLPOP 在一个不存在的 list 上会阻塞 5 秒，而调用的超时时间只有 200 毫秒
+        CompletableFuture<List<String>> future = asyncRedisClient.submit(() -> {
+            try (Jedis jedis = nativeJedisClient.getJedis()) {
+                return jedis.blpop(5, TEST_KEY + "-empty-list");
+            }
+        }, Duration.ofMillis(200));
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, future::get);
+        Assertions.assertInstanceOf(TimeoutException.class, exception.getCause());
+
+        // 被中断的调用需要释放其占用的 in-flight 许可
+        for (int i = 0; i < 50 && asyncRedisClient.getInFlight() > 0; i++) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals(0, asyncRedisClient.getInFlight());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import redis.clients.jedis.CommandObjects;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.ConnectionPool;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * 在本机启动一个由三个 master 组成的 redis cluster ，每个节点都是独立的 redis-server 进程
+ */
+@SpringBootTest
+public class ClusterPipelineTest {
+
+    private static final int[] PORTS = {17001, 17002, 17003};
+
+    private static LocalRedisServers servers;
+
+    @Autowired
+    private SimpleRedisClient simpleRedisClient;
+
+    @BeforeAll
+    public static void startServers() throws Exception {
+        Assumptions.assumeTrue(LocalRedisServers.isAvailable(), "redis-server is not available");
+        servers = new LocalRedisServers();
+        servers.startCluster(PORTS);
+    }
+
+    @AfterAll
+    public static void stopServers() throws Exception {
+        if (servers != null) {
+            servers.close();
+        }
+    }
+
+    @DynamicPropertySource
+    public static void redisProperties(DynamicPropertyRegistry registry) {
+        List<String> nodes = IntStream.of(PORTS).mapToObj(port -> LocalRedisServers.HOST + ":" + port).toList();
+        registry.add("spring.data.redis.cluster.nodes", () -> String.join(",", nodes));
+        registry.add("spring.data.redis.password", () -> LocalRedisServers.PASSWORD);
+    }
+
+    @Test
+    public void testBulkOperationsGroupedByNode() {
+        // 使用超过 chunk-size 的 key 数量，以覆盖多个 chunk 的场景，key 会被分散到所有的 slot 上
+        int size = simpleRedisClient.getPipelineChunkSize() * 2 + 7;
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            entries.put("cluster-test-key-" + i, "value-" + i);
+        }
+        List<String> keys = new ArrayList<>(entries.keySet());
+        List<String> missingKeys = List.of("cluster-test-missing-1", "cluster-test-missing-2");
+
+        long[] setsBefore = commandCalls("set");
+        simpleRedisClient.multiSet(entries, Duration.ofMinutes(1));
+        long[] setsAfter = commandCalls("set");
+
+        // 每个节点都收到了属于自己的那部分 key ，并且没有 key 被发送到错误的节点上，否则会得到 MOVED 错误
+        long total = 0;
+        for (int i = 0; i < PORTS.length; i++) {
+            long sets = setsAfter[i] - setsBefore[i];
+            System.out.println("node=" + PORTS[i] + ", sets=" + sets);
+            Assertions.assertTrue(sets > 0);
+            total += sets;
+        }
+        Assertions.assertEquals(size, total);
+
+        List<String> getKeys = new ArrayList<>(keys);
+        getKeys.addAll(missingKeys);
+        List<String> values = simpleRedisClient.multiGet(getKeys);
+        Assertions.assertEquals(getKeys.size(), values.size());
+        for (int i = 0; i < size; i++) {
+            Assertions.assertEquals(entries.get(keys.get(i)), values.get(i));
+        }
+        Assertions.assertNull(values.get(size));
+        Assertions.assertNull(values.get(size + 1));
+
+        List<Boolean> exists = simpleRedisClient.hasKeys(getKeys);
+        Assertions.assertTrue(exists.subList(0, size).stream().allMatch(Boolean::booleanValue));
+        Assertions.assertFalse(exists.get(size));
+
+        Assertions.assertEquals(size, simpleRedisClient.delete(getKeys));
+        Assertions.assertTrue(simpleRedisClient.hasKeys(keys).stream().noneMatch(Boolean::booleanValue));
+    }
+
+    @Test
+    public void testReadRoutingIsIgnoredForCluster() {
+        RedisReadRouter readRouter = simpleRedisClient.getReadRouter();
+        Assertions.assertEquals(RedisReadRouter.ReadFrom.PRIMARY, readRouter.getReadFrom());
+
+        simpleRedisClient.set("cluster-test-single-key", "single");
+        Assertions.assertEquals("single", simpleRedisClient.get("cluster-test-single-key"));
+        Assertions.assertTrue(simpleRedisClient.hasKey("cluster-test-single-key"));
+    }
+
+    /**
+     * 第二个节点没有连接池时，第一个节点的命令已经发送出去，其连接中残留着未读取的回复，不能被归还之后再次借出
+     */
+    @Test
+    public void testConnectionIsNotReusedAfterLaterNodeFails() throws Exception {
+        GenericObjectPoolConfig<Connection> config = new GenericObjectPoolConfig<>();
+        config.setMaxTotal(1);
+        try (RespStubServer server = new RespStubServer(Duration.ZERO);
+             ConnectionPool pool = new ConnectionPool(new HostAndPort(server.getHost(), server.getPort()),
+                     DefaultJedisClientConfig.builder().password(LocalRedisServers.PASSWORD).build(), config)) {
+            server.flushAll();
+            Map<String, List<Integer>> indexesByNode = new LinkedHashMap<>();
+            indexesByNode.put("first:1", List.of(0));
+            indexesByNode.put("second:2", List.of(1));
+            CommandObjects commandObjects = new CommandObjects();
+
+            Assertions.assertThrows(IllegalStateException.class, () -> ClusterPipeline.execute(
+                    Map.of("first:1", pool), indexesByNode, List.of("cluster-test-dirty-1", "cluster-test-dirty-2"), commandObjects::get));
+
+            Assertions.assertEquals(1, pool.getDestroyedCount());
+            try (Connection connection = pool.getResource()) {
+                Assertions.assertTrue(connection.ping());
+            }
+        }
+    }
+
+    private long[] commandCalls(String command) {
+        long[] calls = new long[PORTS.length];
+        for (int i = 0; i < PORTS.length; i++) {
+            calls[i] = servers.commandCalls(PORTS[i], command);
+        }
+        return calls;
+    }
+
+}
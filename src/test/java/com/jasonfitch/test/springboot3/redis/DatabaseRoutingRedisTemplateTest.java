@@ -0,0 +1,86 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@SpringBootTest
+public class DatabaseRoutingRedisTemplateTest {
+
+    private static final String TEST_KEY = "routing-test-key";
+
+    @Autowired
+    private DatabaseRoutingRedisTemplate databaseRoutingRedisTemplate;
+
+    @Test
+    public void testRouteByDatabase() {
+        for (int database = 1; database <= 3; database++) {
+            databaseRoutingRedisTemplate.opsForValue(database).set(TEST_KEY, "value-of-db-" + database);
+        }
+
+        for (int database = 1; database <= 3; database++) {
+            int expectedDB = database;
+            Integer currentDB = databaseRoutingRedisTemplate.execute(database, (RedisCallback<Integer>) this::currentDB);
+
+            Assertions.assertEquals(expectedDB, currentDB);
+            Assertions.assertEquals("value-of-db-" + database, databaseRoutingRedisTemplate.opsForValue(database).get(TEST_KEY));
+        }
+    }
+
+    @Test
+    public void testSelectNotLeakBetweenBorrowers() {
+        // 借用者在回调中切换了 database 并且没有切换回来
+        databaseRoutingRedisTemplate.execute(2, (RedisCallback<Void>) connection -> {
+            connection.select(9);
+            Assertions.assertEquals(9, currentDB(connection));
+            return null;
+        });
+
+        // 下一个借用者拿到的连接仍然是该 template 对应的 database
+        for (int i = 0; i < 10; i++) {
+            Integer currentDB = databaseRoutingRedisTemplate.execute(2, (RedisCallback<Integer>) this::currentDB);
+            Assertions.assertEquals(2, currentDB);
+        }
+    }
+
+    @Test
+    public void testSelectNotLeakBetweenConcurrentBorrowers() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int database = 1 + i % 4;
+                futures.add(executorService.submit(() -> {
+                    databaseRoutingRedisTemplate.execute(database, (RedisCallback<Void>) connection -> {
+                        Assertions.assertEquals(database, currentDB(connection));
+                        // 模拟污染连接的借用者
+                        connection.select(10 + database);
+                        return null;
+                    });
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private Integer currentDB(RedisConnection connection) {
+        Jedis jedis = (Jedis) connection.getNativeConnection();
+        return jedis.getDB();
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import redis.clients.jedis.Response;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 使用 lettuce 驱动时，{@link SimpleRedisClient} 的行为与 jedis 驱动时一致
+ */
+@SpringBootTest(properties = "spring.data.redis.client-type=lettuce")
+public class LettuceDriverTest {
+
+    private static final String TEST_KEY = "lettuce-test-key";
+
+    @Autowired
+    private SimpleRedisClient simpleRedisClient;
+
+    @Autowired
+    private AsyncRedisClient asyncRedisClient;
+
+    @Autowired
+    private DatabaseRoutingRedisTemplate databaseRoutingRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testDriverSelectedByProperty() {
+        System.out.println("connectionFactory=" + simpleRedisClient.getTemplate().getConnectionFactory());
+        Assertions.assertInstanceOf(LettuceConnectionFactory.class, simpleRedisClient.getTemplate().getConnectionFactory());
+    }
+
+    @Test
+    public void testBasicAndBulkOperations() {
+        simpleRedisClient.set(TEST_KEY, "lettuce-value");
+        Assertions.assertTrue(simpleRedisClient.hasKey(TEST_KEY));
+        Assertions.assertEquals("lettuce-value", simpleRedisClient.get(TEST_KEY));
+
+        int size = simpleRedisClient.getPipelineChunkSize() + 3;
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            entries.put(TEST_KEY + "-" + i, "value-" + i);
+        }
+        simpleRedisClient.multiSet(entries, Duration.ofMinutes(1));
+
+        List<String> keys = new ArrayList<>(entries.keySet());
+        Assertions.assertEquals(new ArrayList<>(entries.values()), simpleRedisClient.multiGet(keys));
+        try (Stream<String> scanned = simpleRedisClient.scan(TEST_KEY + "-*", 100)) {
+            Assertions.assertEquals(entries.keySet(), scanned.collect(Collectors.toSet()));
+        }
+        Assertions.assertEquals(size, simpleRedisClient.delete(keys));
+        Assertions.assertFalse(simpleRedisClient.hasKeys(keys).contains(true));
+    }
+
+    @Test
+    public void testTransactions() {
+        simpleRedisClient.delete(List.of(TEST_KEY));
+
+        Long counter = simpleRedisClient.transaction(transaction -> {
+            Response<Long> value = transaction.incrBy(TEST_KEY, 5);
+            return value::get;
+        });
+        Assertions.assertEquals(5L, counter);
+
+        Long doubled = simpleRedisClient.transaction(List.of(TEST_KEY), 3, (watchedValues, transaction) -> {
+            Response<Long> value = transaction.incrBy(TEST_KEY, Long.parseLong(watchedValues.get(TEST_KEY)));
+            return value::get;
+        });
+        Assertions.assertEquals(10L, doubled);
+        Assertions.assertEquals("10", simpleRedisClient.get(TEST_KEY));
+    }
+
+    @Test
+    public void testConcurrentCallersShareConnection() {
+        simpleRedisClient.set(TEST_KEY, "shared");
+
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(asyncRedisClient.get(TEST_KEY));
+        }
+        for (CompletableFuture<String> future : futures) {
+            Assertions.assertEquals("shared", future.join());
+        }
+    }
+
+    @Test
+    public void testRouteByDatabase() {
+        databaseRoutingRedisTemplate.opsForValue(5).set(TEST_KEY, "value-of-db-5");
+        Assertions.assertEquals("value-of-db-5", databaseRoutingRedisTemplate.opsForValue(5).get(TEST_KEY));
+        Assertions.assertInstanceOf(LettuceConnectionFactory.class, databaseRoutingRedisTemplate.getConnectionFactories().get(5));
+    }
+
+    @Test
+    public void testTemplatePoolMetrics() {
+        // 事务需要独占连接，会从 lettuce 的连接池中借用，归还之后成为空闲连接，其他组件可能长期持有连接，所以不检查借出数
+        simpleRedisClient.transaction(transaction -> {
+            transaction.get(TEST_KEY);
+            return null;
+        });
+
+        Gauge active = meterRegistry.get("redis.pool.active").tags("client", RedisMetrics.CLIENT_TEMPLATE, "database", "0").gauge();
+        Gauge idle = meterRegistry.get("redis.pool.idle").tags("client", RedisMetrics.CLIENT_TEMPLATE, "database", "0").gauge();
+        System.out.println("lettuce pool active=" + active.value() + ", idle=" + idle.value());
+        Assertions.assertFalse(Double.isNaN(active.value()));
+        Assertions.assertTrue(idle.value() >= 1);
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClientConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * 在本机的不同端口上启动多个 redis-server 进程，用于测试主从以及 cluster 拓扑，要求 PATH 中存在 redis-server
+ * <p>
+ * 所有的进程都关闭了持久化，数据以及 cluster 的配置文件都位于一个临时目录中，{@link #close()} 时一起清理
+ */
+public class LocalRedisServers implements Closeable {
+
+    public static final String HOST = "127.0.0.1";
+
+    public static final String PASSWORD = "123456";
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Path directory;
+
+    private final Map<Integer, Process> processes = new ConcurrentHashMap<>();
+
+    public LocalRedisServers() throws IOException {
+        this.directory = Files.createTempDirectory("local-redis-servers");
+    }
+
+    public static boolean isAvailable() {
+        try {
+            Process process = new ProcessBuilder("redis-server", "--version")
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            return process.waitFor(5, TimeUnit.SECONDS) && process.exitValue() == 0;
+        } catch (IOException exception) {
+            return false;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void startPrimary(int port) throws Exception {
+        start(port);
+    }
+
+    public void startReplica(int port, int primaryPort) throws Exception {
+        start(port, "--replicaof", HOST, String.valueOf(primaryPort), "--masterauth", PASSWORD);
+        awaitReplicationLink(port);
+    }
+
+    /**
+     * 启动 ports 对应的 cluster 节点，将 16384 个 slot 平均分配给这些节点，并等待集群状态变为 ok
+     */
+    public void startCluster(int... ports) throws Exception {
+        for (int port : ports) {
+            start(port, "--cluster-enabled", "yes", "--cluster-config-file", "nodes-" + port + ".conf", "--cluster-node-timeout", "5000");
+        }
+
+        int slotsPerNode = 16384 / ports.length;
+        for (int i = 0; i < ports.length; i++) {
+            int from = i * slotsPerNode;
+            int to = i == ports.length - 1 ? 16384 : from + slotsPerNode;
+            try (Jedis jedis = connect(ports[i])) {
+                jedis.clusterAddSlots(IntStream.range(from, to).toArray());
+                if (i > 0) {
+                    jedis.clusterMeet(HOST, ports[0]);
+                }
+            }
+        }
+
+        for (int port : ports) {
+            await(port, jedis -> {
+                String info = jedis.clusterInfo();
+                return info.contains("cluster_state:ok") && info.contains("cluster_known_nodes:" + ports.length);
+            });
+        }
+    }
+
+    public void start(int port, String... arguments) throws Exception {
+        List<String> command = new ArrayList<>(List.of("redis-server",
+                "--port", String.valueOf(port),
+                "--bind", HOST,
+                "--requirepass", PASSWORD,
+                "--dir", directory.toString(),
+                "--dbfilename", "dump-" + port + ".rdb",
+                "--save", "",
+                "--appendonly", "no"));
+        command.addAll(List.of(arguments));
+
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(directory.resolve("redis-" + port + ".log").toFile())
+                .start();
+        processes.put(port, process);
+        await(port, jedis -> "PONG".equals(jedis.ping()));
+    }
+
+    public void stop(int port) throws InterruptedException {
+        Process process = processes.remove(port);
+        if (process != null) {
+            process.destroy();
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    public Jedis connect(int port) {
+        JedisClientConfig clientConfig = DefaultJedisClientConfig.builder().password(PASSWORD).build();
+        return new Jedis(new HostAndPort(HOST, port), clientConfig);
+    }
+
+    /**
+     * @return INFO commandstats 中 command 被执行的次数
+     */
+    public long commandCalls(int port, String command) {
+        try (Jedis jedis = connect(port)) {
+            for (String line : jedis.info("commandstats").split("\r\n")) {
+                if (line.startsWith("cmdstat_" + command + ":calls=")) {
+                    String calls = line.substring(line.indexOf('=') + 1, line.indexOf(','));
+                    return Long.parseLong(calls);
+                }
+            }
+            return 0;
+        }
+    }
+
+    private void awaitReplicationLink(int port) throws InterruptedException {
+        await(port, jedis -> jedis.info("replication").contains("master_link_status:up"));
+    }
+
+    private void await(int port, Predicate<Jedis> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + STARTUP_TIMEOUT.toNanos();
+        RuntimeException lastError = null;
+        while (System.nanoTime() < deadline) {
+            try (Jedis jedis = connect(port)) {
+                if (condition.test(jedis)) {
+                    return;
+                }
+            } catch (RuntimeException exception) {
+                lastError = exception;
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        throw new IllegalStateException("Redis server on port " + port + " is not ready in " + STARTUP_TIMEOUT, lastError);
+    }
+
+    @Override
+    public void close() throws IOException {
+        Set<Integer> ports = new HashSet<>(processes.keySet());
+        for (int port : ports) {
+            try {
+                stop(port);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try (var paths = Files.walk(directory)) {
+            paths.sorted((left, right) -> right.compareTo(left)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+}
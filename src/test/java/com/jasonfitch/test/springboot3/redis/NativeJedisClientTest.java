@@ -5,6 +5,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.time.Duration;
 
 @SpringBootTest
 public class NativeJedisClientTest {
@@ -28,4 +31,75 @@ public class NativeJedisClientTest {
         }
     }
 
+    @Test
+    public void testPooledPing() {
+        try (Jedis jedis = nativeJedisClient.getJedis()) {
+            String ping = jedis.ping();
+            int db = jedis.getDB();
+
+            System.out.println("jedis=" + jedis);
+            System.out.println("ping=" + ping);
+            System.out.println("db=" + db);
+
+            Assertions.assertEquals("PONG", ping);
+            Assertions.assertEquals(nativeJedisClient.getDatabase(), db);
+        }
+    }
+
+    @Test
+    public void testPooledConnectionReused() {
+        JedisPool pool = nativeJedisClient.getPool(nativeJedisClient.getDatabase());
+
+        Jedis borrowed;
+        try (Jedis jedis = nativeJedisClient.getJedis()) {
+            borrowed = jedis;
+            jedis.ping();
+        }
+
+        // 归还后的连接仍然保持着已经认证的状态，连接池默认是 lifo 的，所以再次借用时拿到的是同一个连接，而不是新建一个 tcp 连接
+        try (Jedis jedis = nativeJedisClient.getJedis()) {
+            System.out.println("pool.numIdle=" + pool.getNumIdle());
+            System.out.println("pool.createdCount=" + pool.getCreatedCount());
+            Assertions.assertSame(borrowed, jedis);
+            Assertions.assertEquals("PONG", jedis.ping());
+        }
+    }
+
+    @Test
+    public void testPooledSelectNotLeak() {
+        // 借用者在使用期间切换了 database ，归还后再次借出的连接也必须重新回到该连接池对应的 database 上
+        try (Jedis jedis = nativeJedisClient.getJedis(5)) {
+            Assertions.assertEquals(5, jedis.getDB());
+            jedis.select(6);
+            Assertions.assertEquals(6, jedis.getDB());
+        }
+
+        try (Jedis jedis = nativeJedisClient.getJedis(5)) {
+            Assertions.assertEquals(5, jedis.getDB());
+            Assertions.assertEquals("PONG", jedis.ping());
+        }
+    }
+
+    @Test
+    public void testLeakReportedButNotReclaimed() {
+        Duration threshold = nativeJedisClient.getPoolLeakDetectionThreshold();
+        JedisPool pool = nativeJedisClient.getPool(7);
+        try (Jedis jedis = nativeJedisClient.getJedis(7)) {
+            nativeJedisClient.setPoolLeakDetectionThreshold(Duration.ofNanos(1));
+            jedis.ping();
+
+            // 借出的连接被报告，但是仍然属于借用者，可以继续使用
+            // 只统计 database 7 的连接池，其他测试借出的连接不影响结果
+            Assertions.assertEquals(1, nativeJedisClient.detectLeaks(pool));
+            Assertions.assertEquals(1, pool.getNumActive());
+            Assertions.assertEquals("PONG", jedis.ping());
+
+            // 同一次借出只报告一次
+            Assertions.assertEquals(0, nativeJedisClient.detectLeaks(pool));
+        } finally {
+            nativeJedisClient.setPoolLeakDetectionThreshold(threshold);
+        }
+        Assertions.assertEquals(0, pool.getNumActive());
+    }
+
 }
@@ -0,0 +1,88 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+
+import java.util.Arrays;
+import java.util.List;
+
+@SpringBootTest(properties = {
+        // 所有的命令都会被当作慢命令
+        "spring.data.redis.metrics.slow-command-threshold=0ms",
+})
+public class RedisMetricsTest {
+
+    private static final String TEST_KEY = "metrics-test-key";
+
+    @Autowired
+    private SimpleRedisClient simpleRedisClient;
+
+    @Autowired
+    private NativeJedisClient nativeJedisClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testSimpleClientCommandTimer() {
+        simpleRedisClient.set(TEST_KEY, "value");
+        for (int i = 0; i < 10; i++) {
+            simpleRedisClient.get(TEST_KEY);
+        }
+        simpleRedisClient.multiGet(List.of(TEST_KEY, TEST_KEY + "-missing"));
+
+        Timer timer = meterRegistry.get("redis.command").tags("client", RedisMetrics.CLIENT_SIMPLE, "command", "get").timer();
+        Assertions.assertTrue(timer.count() >= 10);
+        ValueAtPercentile[] percentiles = timer.takeSnapshot().percentileValues();
+        System.out.println(Arrays.toString(percentiles));
+        Assertions.assertEquals(3, percentiles.length);
+
+        Assertions.assertTrue(meterRegistry.get("redis.command").tags("command", "multiGet").timer().count() >= 1);
+
+        Counter database = meterRegistry.get("redis.command.database")
+                .tags("client", RedisMetrics.CLIENT_SIMPLE, "database", "0", "outcome", "success").counter();
+        Assertions.assertTrue(database.count() >= 12);
+
+        Counter slow = meterRegistry.get("redis.command.slow").tags("client", RedisMetrics.CLIENT_SIMPLE, "command", "get").counter();
+        Assertions.assertTrue(slow.count() >= 10);
+    }
+
+    @Test
+    public void testNativeClientCommandAndPoolMetrics() {
+        try (Jedis jedis = nativeJedisClient.getJedis(3)) {
+            jedis.set(TEST_KEY, "value");
+            Assertions.assertEquals("value", jedis.get(TEST_KEY));
+
+            Gauge active = meterRegistry.get("redis.pool.active").tags("client", RedisMetrics.CLIENT_NATIVE, "database", "3").gauge();
+            Assertions.assertEquals(1, active.value());
+        }
+
+        Timer timer = meterRegistry.get("redis.command").tags("client", RedisMetrics.CLIENT_NATIVE, "command", "GET").timer();
+        Assertions.assertTrue(timer.count() >= 1);
+        Assertions.assertTrue(meterRegistry.get("redis.command.database")
+                .tags("client", RedisMetrics.CLIENT_NATIVE, "database", "3").counter().count() >= 2);
+
+        Gauge active = meterRegistry.get("redis.pool.active").tags("client", RedisMetrics.CLIENT_NATIVE, "database", "3").gauge();
+        Gauge idle = meterRegistry.get("redis.pool.idle").tags("client", RedisMetrics.CLIENT_NATIVE, "database", "3").gauge();
+        Assertions.assertEquals(0, active.value());
+        Assertions.assertTrue(idle.value() >= 1);
+    }
+
+    @Test
+    public void testTemplatePoolMetrics() {
+        simpleRedisClient.get(TEST_KEY);
+
+        Gauge idle = meterRegistry.get("redis.pool.idle").tags("client", RedisMetrics.CLIENT_TEMPLATE, "database", "0").gauge();
+        System.out.println("template pool idle=" + idle.value());
+        Assertions.assertTrue(idle.value() >= 1);
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 开启近端缓存的同时从 replica 读取，replica 为一个不会收到任何复制数据的 {@link RespStubServer} ，即一个一直落后的 replica
+ */
+@SpringBootTest(properties = {
+        "spring.data.redis.near-cache.enabled=true",
+        "spring.data.redis.near-cache.prefixes=near-cache-replica-test-",
+        "spring.data.redis.read-routing.read-from=REPLICA_PREFERRED"
+})
+public class RedisNearCacheReplicaTest {
+
+    private static final String CACHED_KEY = "near-cache-replica-test-key";
+
+    private static final String UNCACHED_KEY = "uncached-replica-test-key";
+
+    private static RespStubServer laggingReplica;
+
+    @Autowired
+    private SimpleRedisClient simpleRedisClient;
+
+    @BeforeAll
+    public static void startReplica() throws Exception {
+        laggingReplica = new RespStubServer(Duration.ZERO);
+        try (Jedis jedis = new Jedis(laggingReplica.getHost(), laggingReplica.getPort())) {
+            jedis.set(CACHED_KEY, "stale");
+            jedis.set(UNCACHED_KEY, "replica");
+        }
+    }
+
+    @AfterAll
+    public static void stopReplica() throws Exception {
+        if (laggingReplica != null) {
+            laggingReplica.close();
+        }
+    }
+
+    @DynamicPropertySource
+    public static void redisProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.read-routing.replicas", () -> laggingReplica.getHost() + ":" + laggingReplica.getPort());
+    }
+
+    @Test
+    public void testNearCacheNeverLoadsFromLaggingReplica() {
+        RedisNearCache nearCache = simpleRedisClient.getNearCache();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(nearCache::isSubscribed);
+
+        long messages = nearCache.getStats().invalidationMessages();
+        simpleRedisClient.set(CACHED_KEY, "fresh");
+        // 等待写入的失效消息被消费之后再读取，此时序列号已经无法识别出从 replica 读到的旧值
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> nearCache.getStats().invalidationMessages() > messages);
+
+        // replica 上只有旧值，第一次读取加载并缓存的必须是 primary 上的新值
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("fresh", simpleRedisClient.get(CACHED_KEY));
+        }
+        Assertions.assertEquals(1, nearCache.getStats().size());
+
+        // 不会被缓存的 key 仍然从 replica 读取，primary 上没有这个 key
+        Assertions.assertEquals("replica", simpleRedisClient.get(UNCACHED_KEY));
+
+        simpleRedisClient.delete(List.of(CACHED_KEY));
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+import java.util.List;
+
+@SpringBootTest(properties = {
+        "spring.data.redis.near-cache.enabled=true",
+        "spring.data.redis.near-cache.max-size=4",
+        "spring.data.redis.near-cache.prefixes=near-cache-test-"
+})
+public class RedisNearCacheTest {
+
+    private static final String TEST_KEY = "near-cache-test-key";
+    private static final String TEST_VALUE = "near-cache-test-value";
+
+    @Autowired
+    private SimpleRedisClient simpleRedisClient;
+
+    @Autowired
+    private NativeJedisClient nativeJedisClient;
+
+    @BeforeEach
+    public void beforeTestMethod() {
+        RedisNearCache nearCache = simpleRedisClient.getNearCache();
+        Assertions.assertNotNull(nearCache);
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(nearCache::isSubscribed);
+
+        // TRACKING 模式下只有 key 真正被删除时才会推送失效消息，PUBSUB 模式下每个 key 都会发布一条
+        long messages = nearCache.getStats().invalidationMessages();
+        long deleted = simpleRedisClient.delete(List.of(TEST_KEY));
+        awaitInvalidations(messages, nearCache.getMode() == RedisNearCache.Mode.PUBSUB ? 1 : deleted);
+        nearCache.clear();
+    }
+
+    @Test
+    public void testHitAfterFirstRead() {
+        RedisNearCache nearCache = simpleRedisClient.getNearCache();
+        long messages = nearCache.getStats().invalidationMessages();
+        simpleRedisClient.set(TEST_KEY, TEST_VALUE);
+        awaitInvalidations(messages, 1);
+
+        RedisNearCache.Stats before = nearCache.getStats();
+        Assertions.assertEquals(TEST_VALUE, simpleRedisClient.get(TEST_KEY));
+        Assertions.assertEquals(TEST_VALUE, simpleRedisClient.get(TEST_KEY));
+        RedisNearCache.Stats after = nearCache.getStats();
+
+        System.out.println("stats=" + after);
+        Assertions.assertEquals(before.misses() + 1, after.misses());
+        Assertions.assertEquals(before.hits() + 1, after.hits());
+    }
+
+    @Test
+    public void testInvalidatedByOtherClient() {
+        RedisNearCache nearCache = simpleRedisClient.getNearCache();
+        simpleRedisClient.set(TEST_KEY, TEST_VALUE);
+        Assertions.assertEquals(TEST_VALUE, simpleRedisClient.get(TEST_KEY));
+
+        // 绕过 SimpleRedisClient 直接修改 key ，本地缓存只能依赖服务端推送的失效消息来感知
+        try (Jedis jedis = nativeJedisClient.getJedis()) {
+            jedis.set(TEST_KEY, "changed-by-other-client");
+        }
+
+        if (nearCache.getMode() == RedisNearCache.Mode.TRACKING) {
+            Awaitility.await()
+                    .atMost(Duration.ofSeconds(5))
+                    .until(() -> "changed-by-other-client".equals(simpleRedisClient.get(TEST_KEY)));
+        }
+    }
+
+    @Test
+    public void testEvictionWhenExceedMaxSize() {
+        RedisNearCache nearCache = simpleRedisClient.getNearCache();
+        long evictions = nearCache.getStats().evictions();
+
+        long messages = nearCache.getStats().invalidationMessages();
+        for (int i = 0; i < 6; i++) {
+            simpleRedisClient.set(TEST_KEY + "-" + i, TEST_VALUE);
+        }
+        awaitInvalidations(messages, 6);
+        for (int i = 0; i < 6; i++) {
+            simpleRedisClient.get(TEST_KEY + "-" + i);
+        }
+
+        RedisNearCache.Stats stats = nearCache.getStats();
+        System.out.println("stats=" + stats);
+        Assertions.assertEquals(4, stats.size());
+        Assertions.assertEquals(evictions + 2, stats.evictions());
+    }
+
+    /**
+     * 写入产生的失效消息是异步推送的，如果在读取之后才到达，会把刚刚缓存的条目失效掉，
+     * 所以写入之后先等待订阅连接收到这些写入对应的失效消息，每个被修改的 key 对应一条
+     */
+    private void awaitInvalidations(long before, long expected) {
+        RedisNearCache nearCache = simpleRedisClient.getNearCache();
+        Awaitility.await()
+                .atMost(Duration.ofSeconds(5))
+                .until(() -> nearCache.getStats().invalidationMessages() >= before + expected);
+    }
+
+}
@@ -0,0 +1,190 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import redis.clients.jedis.Jedis;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 在本机启动一个 primary 以及两个 replica ，每个都是独立的 redis-server 进程
+ */
+@SpringBootTest(properties = {
+        "spring.data.redis.read-routing.read-from=REPLICA_PREFERRED",
+        "spring.data.redis.read-routing.probe-interval=200ms"
+})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class RedisReadRouterTest {
+
+    private static final int PRIMARY_PORT = 16379;
+
+    private static final int REPLICA_PORT_1 = 16380;
+
+    private static final int REPLICA_PORT_2 = 16381;
+
+    private static LocalRedisServers servers;
+
+    @Autowired
+    private SimpleRedisClient simpleRedisClient;
+
+    @Autowired
+    private NativeJedisClient nativeJedisClient;
+
+    @Autowired
+    private RedisReadRouter readRouter;
+
+    @Autowired
+    private StringRedisTemplate template;
+
+    @BeforeAll
+    public static void startServers() throws Exception {
+        Assumptions.assumeTrue(LocalRedisServers.isAvailable(), "redis-server is not available");
+        servers = new LocalRedisServers();
+        servers.startPrimary(PRIMARY_PORT);
+        servers.startReplica(REPLICA_PORT_1, PRIMARY_PORT);
+        servers.startReplica(REPLICA_PORT_2, PRIMARY_PORT);
+    }
+
+    @AfterAll
+    public static void stopServers() throws Exception {
+        if (servers != null) {
+            servers.close();
+        }
+    }
+
+    @DynamicPropertySource
+    public static void redisProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.redis.host", () -> LocalRedisServers.HOST);
+        registry.add("spring.data.redis.port", () -> PRIMARY_PORT);
+        registry.add("spring.data.redis.database", () -> 0);
+        registry.add("spring.data.redis.password", () -> LocalRedisServers.PASSWORD);
+        registry.add("spring.data.redis.read-routing.replicas",
+                () -> LocalRedisServers.HOST + ":" + REPLICA_PORT_1 + "," + LocalRedisServers.HOST + ":" + REPLICA_PORT_2);
+    }
+
+    @Test
+    @Order(1)
+    public void testWritesGoToPrimaryAndReadsGoToReplicas() {
+        System.out.println("nodes=" + readRouter.getNodes());
+        Assertions.assertEquals(RedisReadRouter.ReadFrom.REPLICA_PREFERRED, readRouter.getReadFrom());
+        Assertions.assertEquals(2, readRouter.getReplicas().size());
+
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            entries.put("replica-test-key-" + i, "value-" + i);
+        }
+        // replica 是只读的，如果写命令被发送到了 replica 会得到 READONLY 错误
+        simpleRedisClient.multiSet(entries, Duration.ofMinutes(1));
+        simpleRedisClient.set("replica-test-key-single", "single");
+        awaitReplication();
+
+        long primaryGets = servers.commandCalls(PRIMARY_PORT, "get");
+        long replicaGets = servers.commandCalls(REPLICA_PORT_1, "get") + servers.commandCalls(REPLICA_PORT_2, "get");
+
+        List<String> keys = List.copyOf(entries.keySet());
+        Assertions.assertEquals(List.copyOf(entries.values()), simpleRedisClient.multiGet(keys));
+        Assertions.assertTrue(simpleRedisClient.hasKeys(keys).stream().allMatch(Boolean::booleanValue));
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals("single", simpleRedisClient.get("replica-test-key-single"));
+        }
+
+        // 读命令全部落在 replica 上，并且被两个 replica 分摊
+        Assertions.assertEquals(primaryGets, servers.commandCalls(PRIMARY_PORT, "get"));
+        Assertions.assertEquals(replicaGets + 100 + 10,
+                servers.commandCalls(REPLICA_PORT_1, "get") + servers.commandCalls(REPLICA_PORT_2, "get"));
+        Assertions.assertEquals(0, readRouter.getPrimary().getReadCount());
+        for (RedisReadRouter.Node replica : readRouter.getReplicas()) {
+            Assertions.assertTrue(replica.getReadCount() > 0, replica.toString());
+        }
+    }
+
+    @Test
+    @Order(2)
+    public void testNativeClientReadsFromReplica() {
+        template.opsForValue().set("replica-test-native-key", "native");
+        awaitReplication();
+
+        try (Jedis jedis = nativeJedisClient.getReadJedis()) {
+            Assertions.assertTrue(jedis.info("replication").contains("role:slave"));
+            Assertions.assertEquals("native", jedis.get("replica-test-native-key"));
+        }
+        try (Jedis jedis = nativeJedisClient.getJedis()) {
+            Assertions.assertTrue(jedis.info("replication").contains("role:master"));
+        }
+        Assertions.assertEquals(1, nativeJedisClient.getReplicaPools().size());
+    }
+
+    @Test
+    @Order(3)
+    public void testRoundRobinAndNearestPolicies() throws Exception {
+        List<String> replicas = List.of(LocalRedisServers.HOST + ":" + REPLICA_PORT_1, LocalRedisServers.HOST + ":" + REPLICA_PORT_2);
+
+        RedisReadRouter roundRobin = new RedisReadRouter(template, RedisReadRouter.ReadFrom.ROUND_ROBIN, replicas, Duration.ofSeconds(5));
+        try {
+            Map<Integer, Integer> selected = new HashMap<>();
+            for (int i = 0; i < 30; i++) {
+                selected.merge(roundRobin.selectReadNode().getTemplate().hashCode(), 1, Integer::sum);
+            }
+            // 三个节点被均匀地轮询，包括 primary
+            Assertions.assertEquals(3, selected.size());
+            selected.values().forEach(count -> Assertions.assertEquals(10, count));
+        } finally {
+            roundRobin.destroy();
+        }
+
+        RedisReadRouter nearest = new RedisReadRouter(template, RedisReadRouter.ReadFrom.NEAREST, replicas, Duration.ofSeconds(5));
+        try {
+            RedisReadRouter.Node node = nearest.selectReadNode();
+            System.out.println("nearest=" + node + ", nodes=" + nearest.getNodes());
+            for (RedisReadRouter.Node candidate : nearest.getNodes()) {
+                Assertions.assertTrue(node.getLatency().compareTo(candidate.getLatency()) <= 0);
+            }
+        } finally {
+            nearest.destroy();
+        }
+    }
+
+    @Test
+    @Order(4)
+    public void testFallbackWhenReplicasAreDown() throws Exception {
+        template.opsForValue().set("replica-test-fallback-key", "fallback");
+        awaitReplication();
+
+        servers.stop(REPLICA_PORT_1);
+        readRouter.probe();
+        Assertions.assertFalse(readRouter.getReplicas().get(0).isAvailable());
+        for (int i = 0; i < 10; i++) {
+            Assertions.assertEquals(REPLICA_PORT_2, readRouter.selectReadNode().getAddress().getPort());
+            Assertions.assertEquals("fallback", simpleRedisClient.get("replica-test-fallback-key"));
+        }
+
+        // 所有的 replica 都不可用时退回到 primary
+        servers.stop(REPLICA_PORT_2);
+        readRouter.probe();
+        Assertions.assertTrue(readRouter.selectReadNode().isPrimary());
+        Assertions.assertEquals("fallback", simpleRedisClient.get("replica-test-fallback-key"));
+    }
+
+    private void awaitReplication() {
+        try (Jedis jedis = servers.connect(PRIMARY_PORT)) {
+            long acknowledged = jedis.waitReplicas(2, 2000);
+            Assertions.assertEquals(2, acknowledged);
+        }
+    }
+
+}
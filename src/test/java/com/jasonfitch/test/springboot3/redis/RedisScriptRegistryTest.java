@@ -0,0 +1,164 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+@SpringBootTest
+public class RedisScriptRegistryTest {
+
+    private static final String CAS_KEY = "script-test-cas-key";
+
+    private static final String WINDOW_KEY = "script-test-window-key";
+
+    @Autowired
+    private SimpleRedisClient simpleRedisClient;
+
+    @Autowired
+    private RedisScriptRegistry scriptRegistry;
+
+    @Autowired
+    private StringRedisTemplate template;
+
+    @BeforeEach
+    public void cleanUp() {
+        template.delete(List.of(CAS_KEY, WINDOW_KEY, "script-test-get-or-set-1", "script-test-get-or-set-2", "script-test-get-or-set-3"));
+    }
+
+    @Test
+    public void testScriptsLoadedAtStartup() {
+        Assertions.assertTrue(scriptRegistry.getScriptNames().containsAll(List.of(
+                RedisScriptRegistry.COMPARE_AND_SET, RedisScriptRegistry.SLIDING_WINDOW_COUNTER, RedisScriptRegistry.GET_OR_SET)));
+
+        String[] sha1s = scriptRegistry.getScriptNames().stream().map(scriptRegistry::getSha1).toArray(String[]::new);
+        List<Boolean> exists = template.execute((RedisCallback<List<Boolean>>) connection -> connection.scriptingCommands().scriptExists(sha1s));
+        System.out.println("scripts=" + scriptRegistry.getScriptNames() + ", exists=" + exists);
+        Assertions.assertTrue(exists.stream().allMatch(Boolean::booleanValue));
+    }
+
+    @Test
+    public void testReloadAfterScriptFlush() {
+        template.execute((RedisCallback<Void>) connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        });
+
+        long reloads = scriptRegistry.getReloadCount();
+        Assertions.assertTrue(simpleRedisClient.compareAndSet(CAS_KEY, null, "v1", null));
+        Assertions.assertEquals(reloads + 1, scriptRegistry.getReloadCount());
+
+        // 重新加载之后不再出现 NOSCRIPT
+        Assertions.assertTrue(simpleRedisClient.compareAndSet(CAS_KEY, "v1", "v2", null));
+        Assertions.assertEquals(reloads + 1, scriptRegistry.getReloadCount());
+    }
+
+    @Test
+    public void testCompareAndSet() {
+        // 期望不存在
+        Assertions.assertTrue(simpleRedisClient.compareAndSet(CAS_KEY, null, "v1", Duration.ofMinutes(1)));
+        Assertions.assertFalse(simpleRedisClient.compareAndSet(CAS_KEY, null, "v1-again", null));
+        Assertions.assertEquals("v1", template.opsForValue().get(CAS_KEY));
+        Assertions.assertTrue(template.getExpire(CAS_KEY) > 0);
+
+        // 期望值不一致时不修改
+        Assertions.assertFalse(simpleRedisClient.compareAndSet(CAS_KEY, "other", "v2", null));
+        Assertions.assertTrue(simpleRedisClient.compareAndSet(CAS_KEY, "v1", "v2", null));
+        Assertions.assertEquals("v2", template.opsForValue().get(CAS_KEY));
+        Assertions.assertEquals(-1, template.getExpire(CAS_KEY));
+
+        // 条件删除
+        Assertions.assertFalse(simpleRedisClient.compareAndSet(CAS_KEY, "v1", null, null));
+        Assertions.assertTrue(simpleRedisClient.compareAndSet(CAS_KEY, "v2", null, null));
+        Assertions.assertFalse(template.hasKey(CAS_KEY));
+    }
+
+    @Test
+    public void testConcurrentCompareAndSetIncrement() throws Exception {
+        template.opsForValue().set(CAS_KEY, "0");
+
+        int threads = 8;
+        int incrementsPerThread = 50;
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < incrementsPerThread; j++) {
+                        while (true) {
+                            String current = template.opsForValue().get(CAS_KEY);
+                            String next = String.valueOf(Long.parseLong(current) + 1);
+                            if (simpleRedisClient.compareAndSet(CAS_KEY, current, next, null)) {
+                                break;
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        Assertions.assertEquals(String.valueOf(threads * incrementsPerThread), template.opsForValue().get(CAS_KEY));
+    }
+
+    @Test
+    public void testSlidingWindowCounter() throws InterruptedException {
+        Duration window = Duration.ofMillis(500);
+        for (int i = 1; i <= 5; i++) {
+            SimpleRedisClient.WindowCount count = simpleRedisClient.slidingWindowIncrement(WINDOW_KEY, window, 5);
+            Assertions.assertTrue(count.accepted());
+            Assertions.assertEquals(i, count.count());
+        }
+
+        // 达到上限之后被拒绝，并且被拒绝的事件不计入窗口
+        SimpleRedisClient.WindowCount rejected = simpleRedisClient.slidingWindowIncrement(WINDOW_KEY, window, 5);
+        Assertions.assertFalse(rejected.accepted());
+        Assertions.assertEquals(5, rejected.count());
+        Assertions.assertEquals(5, template.opsForZSet().zCard(WINDOW_KEY));
+        Assertions.assertTrue(template.getExpire(WINDOW_KEY) >= 0);
+
+        // 窗口滑过之后重新开始计数
+        Thread.sleep(window.toMillis() + 100);
+        SimpleRedisClient.WindowCount count = simpleRedisClient.slidingWindowIncrement(WINDOW_KEY, window, 5);
+        Assertions.assertTrue(count.accepted());
+        Assertions.assertEquals(1, count.count());
+    }
+
+    @Test
+    public void testGetOrSet() {
+        template.opsForValue().set("script-test-get-or-set-2", "existing");
+
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("script-test-get-or-set-1", "default-1");
+        defaults.put("script-test-get-or-set-2", "default-2");
+        defaults.put("script-test-get-or-set-3", "default-3");
+
+        List<String> values = simpleRedisClient.getOrSet(defaults, Duration.ofMinutes(1));
+        Assertions.assertEquals(List.of("default-1", "existing", "default-3"), values);
+        Assertions.assertEquals("default-1", template.opsForValue().get("script-test-get-or-set-1"));
+        Assertions.assertTrue(template.getExpire("script-test-get-or-set-1") > 0);
+        // 已经存在的 key 不会被修改，也不会被设置过期时间
+        Assertions.assertEquals(-1, template.getExpire("script-test-get-or-set-2"));
+
+        defaults.replaceAll((key, value) -> "changed");
+        Assertions.assertEquals(values, simpleRedisClient.getOrSet(defaults, null));
+    }
+
+}
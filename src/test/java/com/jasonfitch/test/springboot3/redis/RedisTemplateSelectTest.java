@@ -70,6 +70,9 @@ public class RedisTemplateSelectTest {
                 RedisConnectionFactory connectionFactory = template.getRequiredConnectionFactory();
                 RedisConnection redisConnection = RedisConnectionUtils.doGetConnection(connectionFactory, false, false, false);
                 assertSelectDB(redisConnection, 4);
+                // 这里拿到的是 SessionCallback 绑定到当前线程上的连接，doGetConnection 增加了其引用计数，
+                // 如果不释放，SessionCallback 结束后该连接会一直绑定在当前线程上，被同一线程中后续的测试误用
+                RedisConnectionUtils.releaseConnection(redisConnection, connectionFactory);
                 return value;
             }
         });
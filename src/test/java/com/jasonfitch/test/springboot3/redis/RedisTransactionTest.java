@@ -0,0 +1,129 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Response;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@SpringBootTest
+public class RedisTransactionTest {
+
+    private static final String TEST_KEY = "transaction-test-key";
+    private static final String COUNTER_KEY = "transaction-test-counter";
+
+    @Autowired
+    private SimpleRedisClient simpleRedisClient;
+
+    @Autowired
+    private NativeJedisClient nativeJedisClient;
+
+    @BeforeEach
+    public void beforeTestMethod() {
+        simpleRedisClient.delete(List.of(TEST_KEY, COUNTER_KEY));
+    }
+
+    @Test
+    public void testTypedResults() {
+        // 与 SessionCallbackGenericTypeTest 相比，这里不再需要 raw type 或者强制类型转换
+        record Result(String value, Long counter, Boolean exists) {
+        }
+
+        Result result = simpleRedisClient.transaction(transaction -> {
+            transaction.set(TEST_KEY, "test-value");
+            Response<String> value = transaction.get(TEST_KEY);
+            Response<Long> counter = transaction.incrBy(COUNTER_KEY, 5);
+            Response<Boolean> exists = transaction.exists(COUNTER_KEY);
+            return () -> new Result(value.get(), counter.get(), exists.get());
+        });
+
+        System.out.println("result=" + result);
+        Assertions.assertEquals(new Result("test-value", 5L, true), result);
+    }
+
+    @Test
+    public void testWatchRetryWhenModifiedConcurrently() {
+        simpleRedisClient.set(COUNTER_KEY, "10");
+        AtomicInteger attempts = new AtomicInteger();
+
+        Long counter = simpleRedisClient.transaction(List.of(COUNTER_KEY), 3, (watchedValues, transaction) -> {
+            // 第一次尝试时模拟其他客户端在 WATCH 之后修改了 key ，导致 EXEC 返回 null 并重试
+            if (attempts.incrementAndGet() == 1) {
+                try (Jedis jedis = nativeJedisClient.getJedis()) {
+                    jedis.set(COUNTER_KEY, "20");
+                }
+            }
+            long current = Long.parseLong(watchedValues.get(COUNTER_KEY));
+            transaction.set(COUNTER_KEY, String.valueOf(current * 2));
+            return () -> current * 2;
+        });
+
+        Assertions.assertEquals(2, attempts.get());
+        Assertions.assertEquals(40L, counter);
+        Assertions.assertEquals("40", simpleRedisClient.get(COUNTER_KEY));
+    }
+
+    @Test
+    public void testWatchRetryExhausted() {
+        simpleRedisClient.set(COUNTER_KEY, "0");
+
+        Assertions.assertThrows(OptimisticLockingFailureException.class, () ->
+                simpleRedisClient.transaction(List.of(COUNTER_KEY), 2, (watchedValues, transaction) -> {
+                    try (Jedis jedis = nativeJedisClient.getJedis()) {
+                        jedis.incr(COUNTER_KEY);
+                    }
+                    transaction.set(COUNTER_KEY, "never-applied");
+                    return null;
+                }));
+
+        Assertions.assertEquals("3", simpleRedisClient.get(COUNTER_KEY));
+    }
+
+    @Test
+    public void testSubSecondTtlIsKept() {
+        simpleRedisClient.transaction(transaction -> {
+            transaction.set(TEST_KEY, "test-value", Duration.ofMillis(800));
+            transaction.set(COUNTER_KEY, "0");
+            transaction.expire(COUNTER_KEY, Duration.ofMillis(800));
+            return null;
+        });
+
+        // 按秒截断时 EXPIRE 0 会立即删除 key ，这里两个 key 都应该还在，并且剩余时间不超过 800 ms
+        try (Jedis jedis = nativeJedisClient.getJedis()) {
+            long keyTtl = jedis.pttl(TEST_KEY);
+            long counterTtl = jedis.pttl(COUNTER_KEY);
+            Assertions.assertTrue(keyTtl > 0 && keyTtl <= 800, "keyTtl=" + keyTtl);
+            Assertions.assertTrue(counterTtl > 0 && counterTtl <= 800, "counterTtl=" + counterTtl);
+        }
+        Assertions.assertEquals("test-value", simpleRedisClient.get(TEST_KEY));
+        Assertions.assertEquals("0", simpleRedisClient.get(COUNTER_KEY));
+    }
+
+    @Test
+    public void testNonPositiveTtlIsRejected() {
+        simpleRedisClient.set(COUNTER_KEY, "0");
+
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                simpleRedisClient.transaction(transaction -> {
+                    transaction.set(TEST_KEY, "test-value", Duration.ZERO);
+                    return null;
+                }));
+        Assertions.assertThrows(IllegalArgumentException.class, () ->
+                simpleRedisClient.transaction(transaction -> {
+                    transaction.expire(COUNTER_KEY, Duration.ofSeconds(-1));
+                    return null;
+                }));
+
+        // 抛出异常的事务没有被发送，key 不受影响
+        Assertions.assertNull(simpleRedisClient.get(TEST_KEY));
+        Assertions.assertEquals("0", simpleRedisClient.get(COUNTER_KEY));
+    }
+
+}
@@ -0,0 +1,474 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+/**
+ * 进程内的 RESP2 替身服务器，只实现了 redis 访问路径中使用到的命令，用于在没有真实 redis 的环境中离线地执行基准测试
+ * <p>
+ * 注入的延迟模拟的是网络往返时间，每当服务端处理完输入缓冲区中已经到达的所有命令，准备将响应刷新到 socket 之前等待一次，
+ * 所以 pipeline 中的多个命令只承担一次延迟，而逐个发送的命令每个都要承担一次延迟，这与真实网络下的行为是一致的
+ * <p>
+ * 数据没有过期时间，并且所有的连接共享同一份数据，WATCH 基于每个 key 的修改版本号实现
+ */
+public class RespStubServer implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(RespStubServer.class);
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private static final Object NULL_BULK = new Object();
+
+    private static final Object NULL_ARRAY = new Object();
+
+    private final ServerSocket serverSocket;
+
+    private final long latencyNanos;
+
+    private final Map<Integer, Map<String, byte[]>> databases = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    private final AtomicLong versionSequence = new AtomicLong();
+
+    private final AtomicLong clientIdSequence = new AtomicLong();
+
+    private final AtomicLong commandCount = new AtomicLong();
+
+    private final AtomicLong roundTripCount = new AtomicLong();
+
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean running = true;
+
+    public RespStubServer(Duration latency) throws IOException {
+        this(0, latency);
+    }
+
+    public RespStubServer(int port, Duration latency) throws IOException {
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        this.latencyNanos = latency.toNanos();
+
+        Thread acceptor = new Thread(this::accept, "resp-stub-acceptor-" + getPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public long getCommandCount() {
+        return commandCount.get();
+    }
+
+    public long getRoundTripCount() {
+        return roundTripCount.get();
+    }
+
+    public void flushAll() {
+        databases.clear();
+        versions.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+                // 使用平台线程，避免替身服务器与被测的客户端竞争虚拟线程的载体线程
+                Thread.ofPlatform().daemon().name("resp-stub-connection-" + socket.getPort()).start(() -> serve(socket));
+            } catch (IOException exception) {
+                if (running) {
+                    logger.warn("Failed to accept connection on resp stub server [{}:{}].", getHost(), getPort(), exception);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Session session = new Session(clientIdSequence.incrementAndGet());
+        try (socket;
+             InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024)) {
+            while (running) {
+                List<byte[]> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                commandCount.incrementAndGet();
+                writeReply(out, session.dispatch(command));
+
+                // 输入缓冲区中已经没有待处理的命令了，即一次往返结束，此时注入延迟并刷新响应
+                if (in.available() == 0) {
+                    roundTripCount.incrementAndGet();
+                    if (latencyNanos > 0) {
+                        LockSupport.parkNanos(latencyNanos);
+                    }
+                    out.flush();
+                }
+                if (session.closed) {
+                    out.flush();
+                    return;
+                }
+            }
+        } catch (IOException exception) {
+            // 客户端断开连接
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            throw new IOException("Only RESP array commands are supported, but got type " + (char) type);
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<byte[]> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Only bulk string arguments are supported");
+            }
+            int length = Integer.parseInt(readLine(in));
+            byte[] arg = in.readNBytes(length);
+            in.skipNBytes(2);
+            args.add(arg);
+        }
+        return args;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c == -1) {
+                throw new EOFException();
+            }
+            line.append((char) c);
+        }
+        in.read();
+        return line.toString();
+    }
+
+    private static void writeReply(OutputStream out, Object reply) throws IOException {
+        if (reply == NULL_BULK) {
+            out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply == NULL_ARRAY) {
+            out.write("*-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof Status status) {
+            out.write(('+' + status.value()).getBytes(StandardCharsets.UTF_8));
+            out.write(CRLF);
+        } else if (reply instanceof Error error) {
+            out.write(('-' + error.value()).getBytes(StandardCharsets.UTF_8));
+            out.write(CRLF);
+        } else if (reply instanceof Long number) {
+            out.write((":" + number).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+        } else if (reply instanceof byte[] bulk) {
+            out.write(("$" + bulk.length).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            out.write(bulk);
+            out.write(CRLF);
+        } else if (reply instanceof List<?> array) {
+            out.write(("*" + array.size()).getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            for (Object element : array) {
+                writeReply(out, element);
+            }
+        } else {
+            throw new IllegalStateException("Unsupported reply " + reply);
+        }
+    }
+
+    private record Status(String value) {
+    }
+
+    private record Error(String value) {
+    }
+
+    private static final Status OK = new Status("OK");
+
+    private final class Session {
+
+        private final long clientId;
+
+        private int database;
+
+        private List<List<byte[]>> queued;
+
+        private Map<String, Long> watched;
+
+        private boolean closed;
+
+        private Session(long clientId) {
+            this.clientId = clientId;
+        }
+
+        private Object dispatch(List<byte[]> command) {
+            String name = string(command.get(0)).toUpperCase(Locale.ROOT);
+            if (queued != null && !Set.of("EXEC", "DISCARD", "MULTI", "WATCH").contains(name)) {
+                queued.add(command);
+                return new Status("QUEUED");
+            }
+
+            switch (name) {
+                case "MULTI":
+                    if (queued != null) {
+                        return new Error("ERR MULTI calls can not be nested");
+                    }
+                    queued = new ArrayList<>();
+                    return OK;
+                case "EXEC":
+                    return exec();
+                case "DISCARD":
+                    queued = null;
+                    watched = null;
+                    return OK;
+                case "WATCH":
+                    if (watched == null) {
+                        watched = new HashMap<>();
+                    }
+                    for (int i = 1; i < command.size(); i++) {
+                        String key = versionKey(string(command.get(i)));
+                        watched.put(key, versions.getOrDefault(key, 0L));
+                    }
+                    return OK;
+                case "UNWATCH":
+                    watched = null;
+                    return OK;
+                default:
+                    return execute(name, command);
+            }
+        }
+
+        private Object exec() {
+            if (queued == null) {
+                return new Error("ERR EXEC without MULTI");
+            }
+            List<List<byte[]>> commands = queued;
+            queued = null;
+
+            Map<String, byte[]> data = data();
+            synchronized (data) {
+                Map<String, Long> watchedVersions = watched;
+                watched = null;
+                if (watchedVersions != null) {
+                    for (Map.Entry<String, Long> entry : watchedVersions.entrySet()) {
+                        if (!versions.getOrDefault(entry.getKey(), 0L).equals(entry.getValue())) {
+                            return NULL_ARRAY;
+                        }
+                    }
+                }
+
+                List<Object> results = new ArrayList<>(commands.size());
+                for (List<byte[]> command : commands) {
+                    results.add(execute(string(command.get(0)).toUpperCase(Locale.ROOT), command));
+                }
+                return results;
+            }
+        }
+
+        private Object execute(String name, List<byte[]> command) {
+            Map<String, byte[]> data = data();
+            switch (name) {
+                case "PING":
+                    return command.size() > 1 ? command.get(1) : new Status("PONG");
+                case "ECHO":
+                    return command.get(1);
+                case "AUTH":
+                    return OK;
+                case "SELECT":
+                    database = Integer.parseInt(string(command.get(1)));
+                    return OK;
+                case "QUIT":
+                    closed = true;
+                    return OK;
+                case "CLIENT":
+                    return client(command);
+                case "GET": {
+                    byte[] value = data.get(string(command.get(1)));
+                    return value == null ? NULL_BULK : value;
+                }
+                case "SET": {
+                    String key = string(command.get(1));
+                    synchronized (data) {
+                        boolean exists = data.containsKey(key);
+                        for (int i = 3; i < command.size(); i++) {
+                            String option = string(command.get(i)).toUpperCase(Locale.ROOT);
+                            if (("NX".equals(option) && exists) || ("XX".equals(option) && !exists)) {
+                                return NULL_BULK;
+                            }
+                        }
+                        put(data, key, command.get(2));
+                    }
+                    return OK;
+                }
+                case "SETEX":
+                case "PSETEX":
+                    put(data, string(command.get(1)), command.get(3));
+                    return OK;
+                case "MGET": {
+                    List<Object> values = new ArrayList<>();
+                    for (int i = 1; i < command.size(); i++) {
+                        byte[] value = data.get(string(command.get(i)));
+                        values.add(value == null ? NULL_BULK : value);
+                    }
+                    return values;
+                }
+                case "MSET":
+                    for (int i = 1; i + 1 < command.size(); i += 2) {
+                        put(data, string(command.get(i)), command.get(i + 1));
+                    }
+                    return OK;
+                case "EXISTS": {
+                    long count = 0;
+                    for (int i = 1; i < command.size(); i++) {
+                        count += data.containsKey(string(command.get(i))) ? 1 : 0;
+                    }
+                    return count;
+                }
+                case "DEL":
+                case "UNLINK": {
+                    long count = 0;
+                    for (int i = 1; i < command.size(); i++) {
+                        String key = string(command.get(i));
+                        if (data.remove(key) != null) {
+                            touch(key);
+                            count++;
+                        }
+                    }
+                    return count;
+                }
+                case "INCR":
+                    return incrBy(data, string(command.get(1)), 1);
+                case "DECR":
+                    return incrBy(data, string(command.get(1)), -1);
+                case "INCRBY":
+                    return incrBy(data, string(command.get(1)), Long.parseLong(string(command.get(2))));
+                case "EXPIRE":
+                case "PEXPIRE":
+                    return data.containsKey(string(command.get(1))) ? 1L : 0L;
+                case "TTL":
+                case "PTTL":
+                    return data.containsKey(string(command.get(1))) ? -1L : -2L;
+                case "DBSIZE":
+                    return (long) data.size();
+                case "FLUSHDB":
+                    for (String key : data.keySet()) {
+                        touch(key);
+                    }
+                    data.clear();
+                    return OK;
+                case "SCAN":
+                    return scan(data, command);
+                default:
+                    return new Error("ERR unknown command '" + name + "'");
+            }
+        }
+
+        private Object client(List<byte[]> command) {
+            String subcommand = string(command.get(1)).toUpperCase(Locale.ROOT);
+            return switch (subcommand) {
+                case "ID" -> clientId;
+                case "SETNAME", "SETINFO" -> OK;
+                default -> new Error("ERR unknown subcommand '" + subcommand + "'");
+            };
+        }
+
+        /**
+         * 只返回一个批次，游标总是 0 ，对于基准测试中的小数据集已经足够
+         */
+        private Object scan(Map<String, byte[]> data, List<byte[]> command) {
+            Pattern pattern = null;
+            for (int i = 2; i + 1 < command.size(); i += 2) {
+                if ("MATCH".equalsIgnoreCase(string(command.get(i)))) {
+                    pattern = Pattern.compile(string(command.get(i + 1)).replace("?", ".").replace("*", ".*"));
+                }
+            }
+            List<Object> keys = new ArrayList<>();
+            for (String key : data.keySet()) {
+                if (pattern == null || pattern.matcher(key).matches()) {
+                    keys.add(key.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return List.of("0".getBytes(StandardCharsets.US_ASCII), keys);
+        }
+
+        private Object incrBy(Map<String, byte[]> data, String key, long increment) {
+            synchronized (data) {
+                byte[] current = data.get(key);
+                long value;
+                try {
+                    value = (current == null ? 0 : Long.parseLong(string(current))) + increment;
+                } catch (NumberFormatException exception) {
+                    return new Error("ERR value is not an integer or out of range");
+                }
+                put(data, key, String.valueOf(value).getBytes(StandardCharsets.US_ASCII));
+                return value;
+            }
+        }
+
+        private void put(Map<String, byte[]> data, String key, byte[] value) {
+            data.put(key, value);
+            touch(key);
+        }
+
+        private void touch(String key) {
+            versions.put(versionKey(key), versionSequence.incrementAndGet());
+        }
+
+        private String versionKey(String key) {
+            return database + ":" + key;
+        }
+
+        private Map<String, byte[]> data() {
+            return databases.computeIfAbsent(database, unused -> new ConcurrentHashMap<>());
+        }
+    }
+
+    private static String string(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.jasonfitch.test.springboot3.redis;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Transaction;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 不需要 redis ，只校验替身服务器自身的行为，基准测试的结论依赖于它的正确性
+ */
+public class RespStubServerTest {
+
+    @Test
+    public void testBasicCommands() throws Exception {
+        try (RespStubServer server = new RespStubServer(Duration.ZERO);
+             Jedis jedis = new Jedis(server.getHost(), server.getPort())) {
+            jedis.auth("123456");
+            Assertions.assertEquals("PONG", jedis.ping());
+
+            jedis.set("stub-key", "stub-value");
+            Assertions.assertEquals("stub-value", jedis.get("stub-key"));
+            Assertions.assertTrue(jedis.exists("stub-key"));
+            Assertions.assertEquals(List.of("stub-value", "null"), jedis.mget("stub-key", "stub-missing").stream().map(String::valueOf).toList());
+            Assertions.assertEquals(2, jedis.incrBy("stub-counter", 2));
+
+            jedis.select(1);
+            Assertions.assertNull(jedis.get("stub-key"));
+            jedis.select(0);
+            Assertions.assertEquals(2, jedis.del("stub-key", "stub-counter", "stub-missing"));
+        }
+    }
+
+    @Test
+    public void testTransactionWatch() throws Exception {
+        try (RespStubServer server = new RespStubServer(Duration.ZERO);
+             Jedis jedis = new Jedis(server.getHost(), server.getPort());
+             Jedis other = new Jedis(server.getHost(), server.getPort())) {
+            jedis.watch("stub-watched");
+            Transaction transaction = jedis.multi();
+            Response<Long> counter = transaction.incr("stub-watched");
+            Assertions.assertEquals(1, transaction.exec().size());
+            Assertions.assertEquals(1, counter.get());
+
+            jedis.watch("stub-watched");
+            other.set("stub-watched", "changed");
+            transaction = jedis.multi();
+            transaction.incr("stub-watched");
+            Assertions.assertNull(transaction.exec());
+        }
+    }
+
+    @Test
+    public void testLatencyIsInjectedPerRoundTrip() throws Exception {
+        Duration latency = Duration.ofMillis(20);
+        try (RespStubServer server = new RespStubServer(latency);
+             Jedis jedis = new Jedis(server.getHost(), server.getPort())) {
+            long start = System.nanoTime();
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<String>> responses = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                responses.add(pipeline.get("stub-key-" + i));
+            }
+            pipeline.sync();
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            System.out.println("pipeline elapsed=" + elapsed + ", roundTrips=" + server.getRoundTripCount());
+
+            Assertions.assertEquals(50, responses.size());
+            Assertions.assertTrue(server.getRoundTripCount() < 50);
+            Assertions.assertTrue(elapsed.compareTo(latency.multipliedBy(50)) < 0);
+        }
+    }
+
+}
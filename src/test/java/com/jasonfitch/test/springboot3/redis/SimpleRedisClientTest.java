@@ -6,6 +6,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.redis.core.StringRedisTemplate;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 @SpringBootTest
 public class SimpleRedisClientTest {
 
@@ -23,4 +32,80 @@ public class SimpleRedisClientTest {
         Assertions.assertFalse(hasKey);
     }
 
+    @Test
+    public void testBulkOperations() {
+        // 使用超过 chunk-size 的 key 数量，以覆盖多个 pipeline 分批发送的场景
+        int size = simpleRedisClient.getPipelineChunkSize() * 2 + 7;
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            entries.put("bulk-test-key-" + i, "bulk-test-value-" + i);
+        }
+        List<String> keys = new ArrayList<>(entries.keySet());
+        keys.add(1, "bulk-test-non-exist-key");
+
+        simpleRedisClient.delete(keys);
+        simpleRedisClient.multiSet(entries, Duration.ofMinutes(1));
+
+        List<Boolean> hasKeys = simpleRedisClient.hasKeys(keys);
+        List<String> values = simpleRedisClient.multiGet(keys);
+
+        Assertions.assertEquals(keys.size(), hasKeys.size());
+        Assertions.assertEquals(keys.size(), values.size());
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            Assertions.assertEquals(entries.containsKey(key), hasKeys.get(i), key);
+            Assertions.assertEquals(entries.get(key), values.get(i), key);
+        }
+
+        Long ttl = simpleRedisClient.getTemplate().getExpire(keys.get(0));
+        Assertions.assertTrue(ttl > 0 && ttl <= 60, "ttl=" + ttl);
+
+        long deleted = simpleRedisClient.delete(keys);
+        Assertions.assertEquals(entries.size(), deleted);
+        Assertions.assertFalse(simpleRedisClient.hasKeys(keys).contains(true));
+    }
+
+    @Test
+    public void testScan() {
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 1200; i++) {
+            entries.put("scan-test-key-" + i, "scan-test-value-" + i);
+        }
+        simpleRedisClient.multiSet(entries, Duration.ofMinutes(1));
+
+        StringRedisTemplate template = simpleRedisClient.getTemplate();
+        template.delete(List.of("scan-test-hash", "scan-test-set"));
+        template.opsForHash().putAll("scan-test-hash", Map.of("field-1", "value-1", "field-2", "value-2", "other", "value-3"));
+        template.opsForSet().add("scan-test-set", "member-1", "member-2", "other");
+
+        try (Stream<String> keys = simpleRedisClient.scan("scan-test-key-*", 100)) {
+            // SCAN 可能会返回重复的 key ，这里需要去重
+            Assertions.assertEquals(entries.keySet(), keys.collect(Collectors.toSet()));
+        }
+        try (Stream<String> keys = simpleRedisClient.scanParallel("scan-test-key-*", 100)) {
+            Assertions.assertEquals(entries.keySet(), keys.collect(Collectors.toSet()));
+        }
+        try (Stream<Map.Entry<String, String>> fields = simpleRedisClient.hscan("scan-test-hash", "field-*", 10)) {
+            Assertions.assertEquals(Map.of("field-1", "value-1", "field-2", "value-2"),
+                    fields.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+        }
+        try (Stream<String> members = simpleRedisClient.sscan("scan-test-set", "member-*", 10)) {
+            Assertions.assertEquals(Set.of("member-1", "member-2"), members.collect(Collectors.toSet()));
+        }
+
+        simpleRedisClient.delete(entries.keySet());
+    }
+
+    @Test
+    public void testScanStreamCloseReleasesConnection() {
+        // 打开并关闭远多于连接池大小的未消费完的 stream ，如果关闭时没有归还连接，后续借用连接时会超时
+        for (int i = 0; i < 100; i++) {
+            try (Stream<String> keys = simpleRedisClient.scan(null, 10)) {
+                keys.limit(1).forEach(key -> {
+                });
+            }
+        }
+        Assertions.assertFalse(simpleRedisClient.hasKey("dummy-non-exist-key"));
+    }
+
 }
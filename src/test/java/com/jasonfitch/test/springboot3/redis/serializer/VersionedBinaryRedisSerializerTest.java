@@ -0,0 +1,122 @@
+package com.jasonfitch.test.springboot3.redis.serializer;
+
+import com.jasonfitch.test.springboot3.cloud.stream.rabbitmq.LogMessage;
+import com.jasonfitch.test.springboot3.mq.stomp.entity.Greeting;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+
+@SpringBootTest
+public class VersionedBinaryRedisSerializerTest {
+
+    private static final String TEST_KEY = "binary-serializer-test-key";
+
+    @Autowired
+    private RedisTemplate<String, LogMessage> logMessageRedisTemplate;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Test
+    public void testRoundTrip() {
+        LogMessageRedisSerializer serializer = new LogMessageRedisSerializer(1024);
+
+        LogMessage logMessage = new LogMessage("hello 世界");
+        byte[] bytes = serializer.serialize(logMessage);
+
+        System.out.println("bytes.length=" + bytes.length);
+        // 2 个字节的头部，1 个字节的长度，以及 UTF-8 编码的内容
+        Assertions.assertEquals(2 + 1 + "hello 世界".getBytes(StandardCharsets.UTF_8).length, bytes.length);
+        Assertions.assertEquals(logMessage, serializer.deserialize(bytes));
+
+        GreetingRedisSerializer greetingSerializer = new GreetingRedisSerializer(1024);
+        Greeting greeting = greetingSerializer.deserialize(greetingSerializer.serialize(new Greeting(null)));
+        Assertions.assertNull(greeting.getContent());
+    }
+
+    @Test
+    public void testCompressAboveThreshold() {
+        LogMessageRedisSerializer serializer = new LogMessageRedisSerializer(64);
+
+        LogMessage small = new LogMessage("short message");
+        LogMessage large = new LogMessage("2024-01-01 INFO repeated log line ".repeat(100));
+
+        byte[] smallBytes = serializer.serialize(small);
+        byte[] largeBytes = serializer.serialize(large);
+
+        System.out.println("largeBytes.length=" + largeBytes.length);
+        Assertions.assertEquals(0, smallBytes[1]);
+        Assertions.assertEquals(1, largeBytes[1]);
+        Assertions.assertTrue(largeBytes.length < large.message().length() / 4);
+        Assertions.assertEquals(small, serializer.deserialize(smallBytes));
+        Assertions.assertEquals(large, serializer.deserialize(largeBytes));
+    }
+
+    @Test
+    public void testRejectNewerVersion() {
+        LogMessageRedisSerializer serializer = new LogMessageRedisSerializer(1024);
+        byte[] bytes = serializer.serialize(new LogMessage("from the future"));
+        bytes[0] = 2;
+
+        Assertions.assertThrows(SerializationException.class, () -> serializer.deserialize(bytes));
+    }
+
+    @Test
+    public void testReadOlderVersion() {
+        // 模拟滚动升级，版本 2 新增了 level 字段，仍然可以读取版本 1 写入的数据
+        VersionedBinaryRedisSerializer<String[]> v1 = new LevelSerializer(1);
+        VersionedBinaryRedisSerializer<String[]> v2 = new LevelSerializer(2);
+
+        byte[] bytes = v1.serialize(new String[]{"message", "ignored"});
+        Assertions.assertArrayEquals(new String[]{"message", "INFO"}, v2.deserialize(bytes));
+        Assertions.assertArrayEquals(new String[]{"message", "WARN"}, v2.deserialize(v2.serialize(new String[]{"message", "WARN"})));
+    }
+
+    @Test
+    public void testWithRedisTemplate() {
+        LogMessage logMessage = new LogMessage("stored as binary");
+        logMessageRedisTemplate.opsForValue().set(TEST_KEY, logMessage);
+
+        // key 仍然是可读的字符串
+        Assertions.assertEquals(Boolean.TRUE, stringRedisTemplate.hasKey(TEST_KEY));
+        Assertions.assertEquals(logMessage, logMessageRedisTemplate.opsForValue().get(TEST_KEY));
+        logMessageRedisTemplate.delete(TEST_KEY);
+    }
+
+    private static class LevelSerializer extends VersionedBinaryRedisSerializer<String[]> {
+
+        private final int version;
+
+        private LevelSerializer(int version) {
+            super(0);
+            this.version = version;
+        }
+
+        @Override
+        protected int version() {
+            return version;
+        }
+
+        @Override
+        protected void write(String[] value, Output output) {
+            output.writeString(value[0]);
+            if (version >= 2) {
+                output.writeString(value[1]);
+            }
+        }
+
+        @Override
+        protected String[] read(int version, Input input) {
+            String message = input.readString();
+            String level = version >= 2 ? input.readString() : "INFO";
+            return new String[]{message, level};
+        }
+    }
+
+}